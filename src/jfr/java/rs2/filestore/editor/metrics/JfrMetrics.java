@@ -0,0 +1,201 @@
+package rs2.filestore.editor.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A {@link FileStoreMetrics} that emits custom Java Flight Recorder events, so file store activity shows up alongside
+ * GC and I/O in a recording. Chunk chain events are numerous, so are disabled unless enabled in the recording settings.
+ * <p>
+ * Each event is committed once the operation it describes has finished, so the event's own duration is zero; the time
+ * the operation took is in its latency field. Flight Recorder events need Java 11, so this class is compiled apart
+ * from the Java 8 sources and created through {@link Metrics#jfr()}.
+ */
+public final class JfrMetrics implements FileStoreMetrics {
+
+	@Override
+	public void fileStoreLoaded(int indexCount, long nanos) {
+		FileStoreLoadEvent event = new FileStoreLoadEvent();
+		if (event.isEnabled()) {
+			event.indexCount = indexCount;
+			event.latency = nanos;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void indexDecoded(int indexId, int entryCount, long bytes, long nanos) {
+		IndexDecodeEvent event = new IndexDecodeEvent();
+		if (event.isEnabled()) {
+			event.indexId = indexId;
+			event.entryCount = entryCount;
+			event.bytes = bytes;
+			event.latency = nanos;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void chainRead(int indexId, int chunks, int bytes, int fragmentedHops) {
+		ChunkChainEvent event = new ChunkChainEvent();
+		if (event.isEnabled()) {
+			event.indexId = indexId;
+			event.chunks = chunks;
+			event.bytes = bytes;
+			event.fragmentedHops = fragmentedHops;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void archiveDecoded(int entryCount, int bytes, long nanos) {
+		commitArchive(false, entryCount, bytes, nanos);
+	}
+
+	@Override
+	public void archiveEncoded(int entryCount, int bytes, long nanos) {
+		commitArchive(true, entryCount, bytes, nanos);
+	}
+
+	@Override
+	public void inflated(int compressedBytes, int decompressedBytes, long nanos) {
+		commitCompression(false, compressedBytes, decompressedBytes, nanos);
+	}
+
+	@Override
+	public void deflated(int decompressedBytes, int compressedBytes, long nanos) {
+		commitCompression(true, compressedBytes, decompressedBytes, nanos);
+	}
+
+	private static void commitArchive(boolean encode, int entryCount, int bytes, long nanos) {
+		ArchiveCodecEvent event = new ArchiveCodecEvent();
+		if (event.isEnabled()) {
+			event.encode = encode;
+			event.entryCount = entryCount;
+			event.bytes = bytes;
+			event.latency = nanos;
+			event.commit();
+		}
+	}
+
+	private static void commitCompression(boolean compress, int compressedBytes, int decompressedBytes, long nanos) {
+		CompressionEvent event = new CompressionEvent();
+		if (event.isEnabled()) {
+			event.compress = compress;
+			event.compressedBytes = compressedBytes;
+			event.decompressedBytes = decompressedBytes;
+			event.latency = nanos;
+			event.commit();
+		}
+	}
+
+	@Name("rs2.filestore.FileStoreLoad")
+	@Label("File Store Load")
+	@Category("RS2 File Store")
+	static final class FileStoreLoadEvent extends Event {
+
+		@Label("Index Count")
+		int indexCount;
+
+		@Label("Latency")
+		@Description("The time the operation took, measured by the caller")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+
+	}
+
+	@Name("rs2.filestore.IndexDecode")
+	@Label("Index Decode")
+	@Category("RS2 File Store")
+	static final class IndexDecodeEvent extends Event {
+
+		@Label("Index")
+		int indexId;
+
+		@Label("Entry Count")
+		int entryCount;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+
+		@Label("Latency")
+		@Description("The time the operation took, measured by the caller")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+
+	}
+
+	@Name("rs2.filestore.ChunkChain")
+	@Label("Chunk Chain Read")
+	@Category("RS2 File Store")
+	@Enabled(false)
+	static final class ChunkChainEvent extends Event {
+
+		@Label("Index")
+		int indexId;
+
+		@Label("Chunks")
+		int chunks;
+
+		@Label("Bytes")
+		@DataAmount
+		int bytes;
+
+		@Label("Fragmented Hops")
+		int fragmentedHops;
+
+	}
+
+	@Name("rs2.filestore.ArchiveCodec")
+	@Label("Archive Codec")
+	@Category("RS2 File Store")
+	static final class ArchiveCodecEvent extends Event {
+
+		@Label("Encode")
+		boolean encode;
+
+		@Label("Entry Count")
+		int entryCount;
+
+		@Label("Bytes")
+		@DataAmount
+		int bytes;
+
+		@Label("Latency")
+		@Description("The time the operation took, measured by the caller")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+
+	}
+
+	@Name("rs2.filestore.Compression")
+	@Label("Compression")
+	@Category("RS2 File Store")
+	static final class CompressionEvent extends Event {
+
+		@Label("Compress")
+		boolean compress;
+
+		@Label("Compressed Bytes")
+		@DataAmount
+		int compressedBytes;
+
+		@Label("Decompressed Bytes")
+		@DataAmount
+		int decompressedBytes;
+
+		@Label("Latency")
+		@Description("The time the operation took, measured by the caller")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+
+	}
+
+}
@@ -0,0 +1,204 @@
+package rs2.filestore.editor.bench;
+
+import rs2.filestore.editor.cache.archive.Archive;
+import rs2.filestore.editor.cache.archive.ArchiveCodec;
+import rs2.filestore.editor.cache.fs.index.DataChunk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates deterministic synthetic file stores and archives, so benchmarks need no proprietary data files. The same
+ * seed and sizes always produce byte-identical output.
+ */
+public final class SyntheticCache {
+
+	/**
+	 * The seed used unless one is specified.
+	 */
+	public static final long DEFAULT_SEED = 317;
+
+	/**
+	 * The size of an index entry in bytes.
+	 */
+	private static final int INDEX_ENTRY_SIZE = 6;
+
+	private final Random random;
+
+	public SyntheticCache(long seed) {
+		this.random = new Random(seed);
+	}
+
+	public SyntheticCache() {
+		this(DEFAULT_SEED);
+	}
+
+	/**
+	 * Writes a file store of the given size to a new temporary directory. Chunk chains are laid out sequentially.
+	 *
+	 * @param indexCount the number of indices.
+	 * @param filesPerIndex the number of files in each index.
+	 * @param maxFileSize the maximum size of each file, in bytes; file sizes are uniformly distributed up to this.
+	 * @return the directory the file store was written to.
+	 * @throws IOException if the file store cannot be written.
+	 */
+	public Path writeFileStore(int indexCount, int filesPerIndex, int maxFileSize) throws IOException {
+		Path directory = Files.createTempDirectory("synthetic-cache");
+
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		data.write(new byte[DataChunk.DATA_CHUNK_SIZE]);
+		int nextChunk = 1;
+
+		for (int indexId = 0; indexId < indexCount; indexId++) {
+			ByteArrayOutputStream index = new ByteArrayOutputStream(filesPerIndex * INDEX_ENTRY_SIZE);
+
+			for (int fileId = 0; fileId < filesPerIndex; fileId++) {
+				byte[] payload = randomBytes(1 + random.nextInt(maxFileSize));
+
+				write24(index, payload.length);
+				write24(index, nextChunk);
+
+				int chunkCount = (payload.length + DataChunk.DATA_CHUNK_BODY_SIZE - 1) / DataChunk.DATA_CHUNK_BODY_SIZE;
+				for (int chunkId = 0; chunkId < chunkCount; chunkId++, nextChunk++) {
+					int next = chunkId + 1 == chunkCount ? 0 : nextChunk + 1;
+					int offset = chunkId * DataChunk.DATA_CHUNK_BODY_SIZE;
+					int length = Math.min(DataChunk.DATA_CHUNK_BODY_SIZE, payload.length - offset);
+
+					data.write(fileId >> 8);
+					data.write(fileId);
+					data.write(chunkId >> 8);
+					data.write(chunkId);
+					write24(data, next);
+					data.write(indexId + 1);
+					data.write(payload, offset, length);
+					data.write(new byte[DataChunk.DATA_CHUNK_BODY_SIZE - length]);
+				}
+			}
+
+			Files.write(directory.resolve("main_file_cache.idx" + indexId), index.toByteArray());
+		}
+
+		Files.write(directory.resolve("main_file_cache.dat"), data.toByteArray());
+		return directory;
+	}
+
+	/**
+	 * Creates an encoded JAG archive of random entries, named "entry0", "entry1" and so on.
+	 *
+	 * @param entryCount the number of entries.
+	 * @param entrySize the size of each entry, in bytes.
+	 * @return the encoded archive.
+	 * @throws IOException if the archive cannot be encoded.
+	 */
+	public byte[] archive(int entryCount, int entrySize) throws IOException {
+		Archive archive = new Archive(new LinkedHashSet<>(), false, 0, 0);
+		for (int entry = 0; entry < entryCount; entry++) {
+			archive.addEntry("entry" + entry, compressibleBytes(entrySize));
+		}
+		return ArchiveCodec.encode(archive);
+	}
+
+	/**
+	 * Creates an encoded JAG archive holding a sprite group, named "sprite", of square sprites along with the
+	 * "index.dat" describing them, as read by the SpriteUnpacker.
+	 *
+	 * @param spriteCount the number of sprites in the group.
+	 * @param dimension the width and height of each sprite.
+	 * @return the encoded archive.
+	 * @throws IOException if the archive cannot be encoded.
+	 */
+	public byte[] spriteArchive(int spriteCount, int dimension) throws IOException {
+		int colourCount = 64;
+
+		ByteArrayOutputStream meta = new ByteArrayOutputStream();
+		writeShort(meta, dimension);
+		writeShort(meta, dimension);
+		meta.write(colourCount);
+		for (int colour = 1; colour < colourCount; colour++) {
+			write24(meta, random.nextInt(0xFFFFFF) + 1);
+		}
+
+		ByteArrayOutputStream image = new ByteArrayOutputStream();
+		writeShort(image, 0);
+
+		for (int sprite = 0; sprite < spriteCount; sprite++) {
+			meta.write(0);
+			meta.write(0);
+			writeShort(meta, dimension);
+			writeShort(meta, dimension);
+			meta.write(sprite & 1);
+
+			for (int pixel = 0; pixel < dimension * dimension; pixel++) {
+				image.write(random.nextInt(colourCount));
+			}
+		}
+
+		Archive archive = new Archive(new LinkedHashSet<>(), false, 0, 0);
+		archive.addEntry("sprite.dat", image.toByteArray());
+		archive.addEntry("index.dat", meta.toByteArray());
+		return ArchiveCodec.encode(archive);
+	}
+
+	/**
+	 * Creates random bytes with a small alphabet, so that they compress roughly as well as real file data.
+	 *
+	 * @param length the number of bytes.
+	 * @return the bytes.
+	 */
+	public byte[] compressibleBytes(int length) {
+		byte[] bytes = new byte[length];
+		for (int index = 0; index < length; index++) {
+			bytes[index] = (byte) random.nextInt(16);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Creates uniformly random bytes.
+	 *
+	 * @param length the number of bytes.
+	 * @return the bytes.
+	 */
+	public byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Deletes a directory written by {@link #writeFileStore(int, int, int)}.
+	 *
+	 * @param directory the directory to delete.
+	 * @throws IOException if the directory cannot be listed.
+	 */
+	public static void delete(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+				try {
+					Files.delete(path);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+	}
+
+	private static void writeShort(ByteArrayOutputStream out, int value) {
+		out.write(value >> 8);
+		out.write(value);
+	}
+
+	private static void write24(ByteArrayOutputStream out, int value) {
+		out.write(value >> 16);
+		out.write(value >> 8);
+		out.write(value);
+	}
+
+}
@@ -0,0 +1,57 @@
+package rs2.filestore.editor.cache.archive;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rs2.filestore.editor.bench.SyntheticCache;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ArchiveCodec} decoding and encoding of an archive whose entries are compressed individually.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArchiveCodecBenchmark {
+
+	@Param({"16"})
+	private int entryCount;
+
+	@Param({"1024", "65536"})
+	private int entrySize;
+
+	private byte[] encoded;
+
+	private Archive archive;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		encoded = new SyntheticCache().archive(entryCount, entrySize);
+		archive = ArchiveCodec.decode(encoded);
+	}
+
+	@Benchmark
+	public Archive decode() throws IOException {
+		return ArchiveCodec.decode(encoded);
+	}
+
+	@Benchmark
+	public byte[] encode() throws IOException {
+		return ArchiveCodec.encode(archive);
+	}
+
+}
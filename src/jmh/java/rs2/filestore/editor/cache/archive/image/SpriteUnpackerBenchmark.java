@@ -0,0 +1,54 @@
+package rs2.filestore.editor.cache.archive.image;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rs2.filestore.editor.bench.SyntheticCache;
+import rs2.filestore.editor.cache.archive.Archive;
+import rs2.filestore.editor.cache.archive.ArchiveCodec;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SpriteUnpacker#unpackSprite(Archive, String, int)} of the last sprite in a group, which has to skip
+ * every sprite before it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SpriteUnpackerBenchmark {
+
+	@Param({"8"})
+	private int spriteCount;
+
+	@Param({"32", "256"})
+	private int dimension;
+
+	private final SpriteUnpacker unpacker = new SpriteUnpacker();
+
+	private Archive archive;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		archive = ArchiveCodec.decode(new SyntheticCache().spriteArchive(spriteCount, dimension));
+	}
+
+	@Benchmark
+	public Sprite unpackSprite() {
+		return unpacker.unpackSprite(archive, "sprite", spriteCount - 1);
+	}
+
+}
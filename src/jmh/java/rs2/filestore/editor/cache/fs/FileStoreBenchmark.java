@@ -0,0 +1,64 @@
+package rs2.filestore.editor.cache.fs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import rs2.filestore.editor.bench.SyntheticCache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FileStore#load(Path)} and {@link FileStore#loadCompact(Path)} of a whole synthetic file store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileStoreBenchmark {
+
+	@Param({"5"})
+	private int indexCount;
+
+	@Param({"1000", "10000"})
+	private int filesPerIndex;
+
+	@Param({"4096"})
+	private int maxFileSize;
+
+	private Path directory;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		directory = new SyntheticCache().writeFileStore(indexCount, filesPerIndex, maxFileSize);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		SyntheticCache.delete(directory);
+	}
+
+	@Benchmark
+	public FileStore load() throws IOException {
+		return FileStore.load(directory);
+	}
+
+	@Benchmark
+	public FileStore loadCompact() throws IOException {
+		return FileStore.loadCompact(directory);
+	}
+
+}
@@ -0,0 +1,72 @@
+package rs2.filestore.editor.cache.fs.index;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import rs2.filestore.editor.bench.SyntheticCache;
+import rs2.filestore.editor.io.ReadOnlyBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decoding and encoding of a single full {@link DataChunk}, encoding both into a new array and into a reused
+ * direct buffer with {@link ChunkEncoder}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DataChunkBenchmark {
+
+	private Path directory;
+
+	private ByteBuffer dataBuffer;
+
+	private DataChunk chunk;
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(DataChunk.DATA_CHUNK_SIZE);
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		directory = new SyntheticCache().writeFileStore(1, 1, DataChunk.DATA_CHUNK_BODY_SIZE * 2);
+		dataBuffer = ReadOnlyBuffer.fromPath(directory.resolve("main_file_cache.dat")).asByteBuffer();
+		chunk = decode();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		SyntheticCache.delete(directory);
+	}
+
+	@Benchmark
+	public DataChunk decode() {
+		return DataChunk.decode(dataBuffer, 1, 0, DataChunk.DATA_CHUNK_BODY_SIZE * 2, 0, 0);
+	}
+
+	@Benchmark
+	public byte[] encode() throws IOException {
+		return chunk.encode();
+	}
+
+	@Benchmark
+	public ByteBuffer encodeInto() {
+		buffer.clear();
+		ChunkEncoder.encode(buffer, chunk);
+		return buffer;
+	}
+
+}
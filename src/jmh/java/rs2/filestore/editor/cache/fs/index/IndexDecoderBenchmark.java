@@ -0,0 +1,74 @@
+package rs2.filestore.editor.cache.fs.index;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import rs2.filestore.editor.bench.SyntheticCache;
+import rs2.filestore.editor.io.ReadOnlyBuffer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link IndexDecoder#decode(int, ReadOnlyBuffer)} of a single index, with the data file already in memory,
+ * against {@link ChainReader#decode(int, ReadOnlyBuffer)} reading the data file from disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IndexDecoderBenchmark {
+
+	@Param({"1000", "10000"})
+	private int files;
+
+	@Param({"4096"})
+	private int maxFileSize;
+
+	private Path directory;
+
+	private IndexDecoder decoder;
+
+	private byte[] index;
+
+	private ChainReader chainReader;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		directory = new SyntheticCache().writeFileStore(1, files, maxFileSize);
+		decoder = new IndexDecoder(ReadOnlyBuffer.fromPath(directory.resolve("main_file_cache.dat")));
+		index = Files.readAllBytes(directory.resolve("main_file_cache.idx0"));
+		chainReader = new ChainReader(directory.resolve("main_file_cache.dat"), 16);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		chainReader.close();
+		SyntheticCache.delete(directory);
+	}
+
+	@Benchmark
+	public Index decode() {
+		return decoder.decode(0, ReadOnlyBuffer.wrap(index));
+	}
+
+	@Benchmark
+	public Index decodeFromDisk() {
+		return chainReader.decode(0, ReadOnlyBuffer.wrap(index));
+	}
+
+}
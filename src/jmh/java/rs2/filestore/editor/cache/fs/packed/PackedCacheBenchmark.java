@@ -0,0 +1,93 @@
+package rs2.filestore.editor.cache.fs.packed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import rs2.filestore.editor.bench.SyntheticCache;
+import rs2.filestore.editor.cache.fs.FileStore;
+import rs2.filestore.editor.cache.fs.index.Index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading every file of a synthetic file store from a {@link PackedCache} against a compact
+ * {@link FileStore}, which follows each file's chunk chain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PackedCacheBenchmark {
+
+	@Param({"5"})
+	private int indexCount;
+
+	@Param({"1000"})
+	private int filesPerIndex;
+
+	@Param({"4096"})
+	private int maxFileSize;
+
+	private Path directory;
+
+	private FileStore fileStore;
+
+	private PackedCache packedCache;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		directory = new SyntheticCache().writeFileStore(indexCount, filesPerIndex, maxFileSize);
+		fileStore = FileStore.loadCompact(directory);
+
+		Path packed = directory.resolve("main_file_cache.packed");
+		PackedCacheWriter.write(fileStore, packed);
+		packedCache = PackedCache.open(packed);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		packedCache.close();
+		SyntheticCache.delete(directory);
+	}
+
+	@Benchmark
+	public long readChunkChains() {
+		long total = 0;
+		for (int indexId = 0; indexId < fileStore.getIndexCount(); indexId++) {
+			Index index = fileStore.getIndex(indexId);
+			for (int fileId = 0; fileId < index.size(); fileId++) {
+				total += index.getEntry(fileId).getData().length;
+			}
+		}
+		return total;
+	}
+
+	@Benchmark
+	public long readPackedSlices() {
+		long total = 0;
+		for (int indexId = 0; indexId < packedCache.getIndexCount(); indexId++) {
+			PackedIndex index = packedCache.getIndex(indexId);
+			for (int fileId = 0; fileId < index.size(); fileId++) {
+				ByteBuffer payload = index.getPayload(fileId);
+				total += payload.remaining();
+			}
+		}
+		return total;
+	}
+
+}
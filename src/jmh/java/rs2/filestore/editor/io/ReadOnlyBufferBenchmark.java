@@ -0,0 +1,81 @@
+package rs2.filestore.editor.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rs2.filestore.editor.bench.SyntheticCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the primitive reads of {@link ReadOnlyBuffer} across a 64 KB buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReadOnlyBufferBenchmark {
+
+	private static final int LENGTH = 65536;
+
+	private byte[] bytes;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		bytes = new SyntheticCache().randomBytes(LENGTH);
+	}
+
+	@Benchmark
+	public void getUnsigned(Blackhole blackhole) {
+		ReadOnlyBuffer buffer = ReadOnlyBuffer.wrap(bytes);
+		while (buffer.hasRemainingBytes(Byte.BYTES)) {
+			blackhole.consume(buffer.getUnsigned());
+		}
+	}
+
+	@Benchmark
+	public void getUnsignedShort(Blackhole blackhole) {
+		ReadOnlyBuffer buffer = ReadOnlyBuffer.wrap(bytes);
+		while (buffer.hasRemainingBytes(Short.BYTES)) {
+			blackhole.consume(buffer.getUnsignedShort());
+		}
+	}
+
+	@Benchmark
+	public void getUnsigned24BitInt(Blackhole blackhole) {
+		ReadOnlyBuffer buffer = ReadOnlyBuffer.wrap(bytes);
+		while (buffer.hasRemainingBytes(3)) {
+			blackhole.consume(buffer.getUnsigned24BitInt());
+		}
+	}
+
+	@Benchmark
+	public void getUnsignedInt(Blackhole blackhole) {
+		ReadOnlyBuffer buffer = ReadOnlyBuffer.wrap(bytes);
+		while (buffer.hasRemainingBytes(Integer.BYTES)) {
+			blackhole.consume(buffer.getUnsignedInt());
+		}
+	}
+
+	@Benchmark
+	public int[] getUnsignedShorts() {
+		return ReadOnlyBuffer.wrap(bytes).getUnsignedShorts(LENGTH / Short.BYTES);
+	}
+
+	@Benchmark
+	public int[] getInts() {
+		return ReadOnlyBuffer.wrap(bytes).getInts(LENGTH / Integer.BYTES);
+	}
+
+}
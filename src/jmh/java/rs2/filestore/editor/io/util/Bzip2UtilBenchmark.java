@@ -0,0 +1,54 @@
+package rs2.filestore.editor.io.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rs2.filestore.editor.bench.SyntheticCache;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Bzip2Util} compression and decompression.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class Bzip2UtilBenchmark {
+
+	@Param({"4096", "1048576"})
+	private int size;
+
+	private byte[] decompressed;
+
+	private byte[] compressed;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		decompressed = new SyntheticCache().compressibleBytes(size);
+		compressed = Bzip2Util.bzip2(decompressed);
+	}
+
+	@Benchmark
+	public byte[] bzip2() throws IOException {
+		return Bzip2Util.bzip2(decompressed);
+	}
+
+	@Benchmark
+	public byte[] unbzip2() throws IOException {
+		return Bzip2Util.unbzip2(compressed);
+	}
+
+}
@@ -25,13 +25,14 @@ public final class Archive {
 	private final boolean archiveCompressed;
 
 	/**
-	 * The size of the archive decompressed.
+	 * The size of the archive decompressed, as decoded. The size is derived again
+	 * from the entries when the archive is encoded.
 	 */
 	private final int size;
 
 	/**
 	 * The size of the archive when compressed with JaGex's header-less BZip2
-	 * implementation.
+	 * implementation, as decoded.
 	 */
 	private final int compressedSize;
 	
@@ -64,7 +65,7 @@ public final class Archive {
 	}
 	
 	/**
-	 * Gets the size of this archive.
+	 * Gets the size of this archive, as decoded.
 	 * @return the size of this archive (not compressed).
 	 */
 	public int getSize() {
@@ -72,7 +73,7 @@ public final class Archive {
 	}
 	
 	/**
-	 * Gets the size of this archive when compressed.
+	 * Gets the size of this archive when compressed, as decoded.
 	 * @return the size of this archive (compressed).
 	 */
 	public int getCompressedSize() {
@@ -95,7 +96,7 @@ public final class Archive {
 	 * @param name the archive name to get the identifier for.
 	 * @return a unique identifier for the given archive name.
 	 */
-	private static int getIdentifier(String name) {
+	public static int getIdentifier(String name) {
 		int id = 0;
 		for (char c : name.toCharArray()) {
 			id *= 61;
@@ -118,6 +119,32 @@ public final class Archive {
 		changed = entries.add(new ArchiveEntry(identifier, contents));
 	}
 	
+	/**
+	 * Replaces the contents of an existing entry, keeping its position in the
+	 * archive. The sizes in the archive header are derived again when the archive
+	 * is encoded.
+	 * 
+	 * @param name the entry's name.
+	 * @param contents the new contents of the entry.
+	 * @throws EntryNotFoundException if no {@link ArchiveEntry} exists for given name.
+	 */
+	public void replaceEntry(String name, byte[] contents) throws EntryNotFoundException {
+		ArchiveEntry previous = getEntry(name);
+		ArchiveEntry replacement = new ArchiveEntry(previous.getIdentifier(), contents);
+		
+		if (previous.equals(replacement)) {
+			return;
+		}
+		
+		LinkedHashSet<ArchiveEntry> replaced = new LinkedHashSet<>(entries.size());
+		for (ArchiveEntry entry : entries) {
+			replaced.add(entry == previous ? replacement : entry);
+		}
+		entries.clear();
+		entries.addAll(replaced);
+		changed = true;
+	}
+	
 	/**
 	 * Gets an {@link ArchiveEntry} for the given identifier.
 	 * 
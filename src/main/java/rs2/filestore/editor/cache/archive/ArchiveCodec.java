@@ -7,6 +7,9 @@ import java.util.*;
 
 import rs2.filestore.editor.io.ReadOnlyBuffer;
 import rs2.filestore.editor.io.util.Bzip2Util;
+import rs2.filestore.editor.io.util.ParallelBzip2;
+import rs2.filestore.editor.metrics.FileStoreMetrics;
+import rs2.filestore.editor.metrics.Metrics;
 
 public class ArchiveCodec {
 
@@ -23,6 +26,8 @@ public class ArchiveCodec {
 	 * @throws IOException 
 	 */
 	public static Archive decode(byte[] archiveBuffer) throws IOException {
+		FileStoreMetrics metrics = Metrics.get();
+		long start = metrics == Metrics.NONE ? 0 : System.nanoTime();
 		ReadOnlyBuffer indexBuffer = ReadOnlyBuffer.wrap(archiveBuffer);
 		
 		int archiveSize = indexBuffer.getUnsigned24BitInt();
@@ -31,7 +36,7 @@ public class ArchiveCodec {
 		boolean archiveCompressed = compressedArchiveSize != archiveSize;
 
 		if (archiveCompressed) {
-			indexBuffer = ReadOnlyBuffer.wrap(Bzip2Util.unbzip2(indexBuffer.getRemaining()));
+			indexBuffer = ReadOnlyBuffer.wrap(ParallelBzip2.unbzip2(indexBuffer.getRemaining(), archiveSize));
 		}
 
 		int entryCount = indexBuffer.getUnsignedShort();
@@ -49,26 +54,27 @@ public class ArchiveCodec {
 			entries.add(new ArchiveEntry(identifier, archiveCompressed ? entryDataBuffer : Bzip2Util.unbzip2(entryDataBuffer)));
 		}
 		
+		if (metrics != Metrics.NONE) {
+			metrics.archiveDecoded(entryCount, archiveBuffer.length, System.nanoTime() - start);
+		}
 		return new Archive(entries, archiveCompressed, archiveSize, compressedArchiveSize);
 	}
 	
 	/**
 	 * Writes the data back to JaGex's proprietary format, known as JAG. This
-	 * method only needs to be invoked after adding new entries.
+	 * method only needs to be invoked after adding new entries. The sizes in the
+	 * archive header are derived from the encoded entries, so they are correct
+	 * after entries are added, replaced or removed.
 	 * 
 	 * @throws IOException 
 	 */
 	public static byte[] encode(Archive archive) throws IOException {
-		try (ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-				DataOutputStream out = new DataOutputStream(byteOut)) {
+		FileStoreMetrics metrics = Metrics.get();
+		long start = metrics == Metrics.NONE ? 0 : System.nanoTime();
+		try (ByteArrayOutputStream bodyOut = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(bodyOut)) {
 			Set<ArchiveEntry> entries = archive.getEntries();
 			
-			out.writeShort(archive.getSize() >> 8);
-			out.writeByte(archive.getSize() & 0xFF);
-			
-			out.writeShort(archive.getCompressedSize() >> 8);
-			out.writeByte(archive.getCompressedSize() & 0xFF);
-			
 			out.writeShort(entries.size());
 			
 			boolean isCompressed = archive.isCompressed();
@@ -97,8 +103,27 @@ public class ArchiveCodec {
 			for (ArchiveEntry entry : entries) {
 				out.write(isCompressed ? entry.getBuffer().getBytes() : compressedEntries.get(entry.getIdentifier()));
 			}
-			return byteOut.toByteArray();
+			out.flush();
+			
+			byte[] body = bodyOut.toByteArray();
+			byte[] stored = isCompressed ? ParallelBzip2.bzip2(body) : body;
+			
+			byte[] encoded = new byte[6 + stored.length];
+			writeMedium(encoded, 0, body.length);
+			writeMedium(encoded, 3, stored.length);
+			System.arraycopy(stored, 0, encoded, 6, stored.length);
+			
+			if (metrics != Metrics.NONE) {
+				metrics.archiveEncoded(entries.size(), encoded.length, System.nanoTime() - start);
+			}
+			return encoded;
 		}
 	}
 	
+	private static void writeMedium(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) (value >> 16);
+		buffer[offset + 1] = (byte) (value >> 8);
+		buffer[offset + 2] = (byte) value;
+	}
+	
 }
\ No newline at end of file
@@ -6,8 +6,8 @@ import rs2.filestore.editor.io.ReadOnlyBuffer;
 public class SpriteUnpacker {
 
 	public Sprite unpackSprite(Archive archive, String entryName, int subEntryIndex) {
-		ReadOnlyBuffer imageData = archive.getEntry(entryName + ".dat").getBuffer();
-		ReadOnlyBuffer metaData = archive.getEntry("index.dat").getBuffer();
+		ReadOnlyBuffer imageData = archive.getEntry(entryName + ".dat").getBuffer().duplicate();
+		ReadOnlyBuffer metaData = archive.getEntry("index.dat").getBuffer().duplicate();
 		
 		Sprite.SpriteBuilder builder = new Sprite.SpriteBuilder();
 		
@@ -0,0 +1,129 @@
+package rs2.filestore.editor.cache.archive.version;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+import rs2.filestore.editor.cache.fs.FileStore;
+import rs2.filestore.editor.cache.fs.index.Index;
+import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
+
+/**
+ * Verifies the files in indices 1 to 4 of a {@link FileStore} against the
+ * checksums and versions recorded in a {@link VersionListArchive}. Each of
+ * these files is trailed by a 2 byte version, the checksum covers the
+ * remainder of the file. Files are checked in parallel.
+ * 
+ * @author Sam
+ */
+public final class CrcVerifier {
+
+	/**
+	 * The size, in bytes, of the version trailing each file.
+	 */
+	static final int VERSION_TRAILER_SIZE = 2;
+
+	private final FileStore fileStore;
+
+	private final VersionListArchive versionList;
+
+	public CrcVerifier(FileStore fileStore, VersionListArchive versionList) {
+		this.fileStore = fileStore;
+		this.versionList = versionList;
+	}
+
+	/**
+	 * Verifies every file listed in the version list.
+	 * 
+	 * @return a {@link VerificationReport} of the missing and mismatched files.
+	 */
+	public VerificationReport verify() {
+		List<VerificationFailure> missing = new ArrayList<>();
+		List<VerificationFailure> mismatches = new ArrayList<>();
+		int checkedFiles = 0;
+
+		for (int type = 0; type < VersionListArchive.TYPE_COUNT; type++) {
+			int indexId = type + 1;
+			Index index = indexId < fileStore.getIndexCount() ? fileStore.getIndex(indexId) : null;
+			int fileType = type;
+
+			int[] listedFiles = IntStream.range(0, versionList.getFileCount(type))
+					.filter(file -> isListed(fileType, file))
+					.toArray();
+			checkedFiles += listedFiles.length;
+
+			List<VerificationFailure> failures = Arrays.stream(listedFiles)
+					.parallel()
+					.mapToObj(file -> verify(index, fileType, file))
+					.filter(Objects::nonNull)
+					.collect(Collectors.toList());
+
+			for (VerificationFailure failure : failures) {
+				(failure.getReason() == VerificationFailure.Reason.MISSING ? missing : mismatches).add(failure);
+			}
+		}
+
+		return new VerificationReport(missing, mismatches, checkedFiles);
+	}
+
+	/**
+	 * Files with neither a version nor a checksum are not expected to exist.
+	 */
+	private boolean isListed(int type, int file) {
+		return versionList.getVersion(type, file) != 0 || versionList.getCrc(type, file) != 0;
+	}
+
+	/**
+	 * Verifies a single file.
+	 * 
+	 * @param index the index the file is stored in, or <code>null</code> if absent.
+	 * @param type the file type.
+	 * @param file the id of the file.
+	 * @return the {@link VerificationFailure}, or <code>null</code> if the file is valid.
+	 */
+	private VerificationFailure verify(Index index, int type, int file) {
+		int expectedCrc = versionList.getCrc(type, file);
+		int expectedVersion = versionList.getVersion(type, file);
+
+		if (index == null || file >= index.size()) {
+			return new VerificationFailure(type, file, VerificationFailure.Reason.MISSING, expectedCrc, 0);
+		}
+
+		IndexEntry entry = index.getEntry(file);
+		if (entry.isEmpty() || entry.getFileSize() < VERSION_TRAILER_SIZE) {
+			return new VerificationFailure(type, file, VerificationFailure.Reason.MISSING, expectedCrc, 0);
+		}
+
+		byte[] payload = entry.getData();
+		int length = payload.length - VERSION_TRAILER_SIZE;
+
+		int actualCrc = checksum(payload);
+		if (actualCrc != expectedCrc) {
+			return new VerificationFailure(type, file, VerificationFailure.Reason.CRC_MISMATCH, expectedCrc, actualCrc);
+		}
+
+		int actualVersion = ((payload[length] & 0xff) << 8) | (payload[length + 1] & 0xff);
+		if (actualVersion != expectedVersion) {
+			return new VerificationFailure(type, file, VerificationFailure.Reason.VERSION_MISMATCH, expectedVersion, actualVersion);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Computes the checksum of the given file payload, excluding its version trailer.
+	 * 
+	 * @param payload the file payload, including the version trailer.
+	 * @return the CRC32 checksum of the payload.
+	 */
+	static int checksum(byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length - VERSION_TRAILER_SIZE);
+		return (int) crc.getValue();
+	}
+
+}
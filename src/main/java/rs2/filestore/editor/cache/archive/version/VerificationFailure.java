@@ -0,0 +1,97 @@
+package rs2.filestore.editor.cache.archive.version;
+
+/**
+ * Describes a file that failed verification against a {@link VersionListArchive}.
+ * 
+ * @author Sam
+ */
+public final class VerificationFailure {
+
+	/**
+	 * The reasons a file may fail verification.
+	 */
+	public enum Reason {
+		/**
+		 * The file is listed in the version list but is not in the file store.
+		 */
+		MISSING,
+		/**
+		 * The checksum of the file does not match the version list.
+		 */
+		CRC_MISMATCH,
+		/**
+		 * The version trailing the file does not match the version list.
+		 */
+		VERSION_MISMATCH
+	}
+
+	/**
+	 * The file type, as defined by {@link VersionListArchive}.
+	 */
+	private final int type;
+
+	/**
+	 * The id of the file.
+	 */
+	private final int file;
+
+	/**
+	 * The reason the file failed verification.
+	 */
+	private final Reason reason;
+
+	/**
+	 * The value recorded in the version list.
+	 */
+	private final int expected;
+
+	/**
+	 * The value computed from the file store.
+	 */
+	private final int actual;
+
+	public VerificationFailure(int type, int file, Reason reason, int expected, int actual) {
+		this.type = type;
+		this.file = file;
+		this.reason = reason;
+		this.expected = expected;
+		this.actual = actual;
+	}
+
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * @return the id of the index the file is stored in.
+	 */
+	public int getIndexId() {
+		return type + 1;
+	}
+
+	public int getFile() {
+		return file;
+	}
+
+	public Reason getReason() {
+		return reason;
+	}
+
+	public int getExpected() {
+		return expected;
+	}
+
+	public int getActual() {
+		return actual;
+	}
+
+	@Override
+	public String toString() {
+		if (reason == Reason.MISSING) {
+			return getIndexId() + " [" + file + "]: " + reason;
+		}
+		return getIndexId() + " [" + file + "]: " + reason + ", expected " + Integer.toHexString(expected) + " but was "
+				+ Integer.toHexString(actual);
+	}
+
+}
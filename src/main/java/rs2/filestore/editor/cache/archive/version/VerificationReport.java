@@ -0,0 +1,58 @@
+package rs2.filestore.editor.cache.archive.version;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of verifying a file store against a {@link VersionListArchive}.
+ * 
+ * @author Sam
+ */
+public final class VerificationReport {
+
+	/**
+	 * The files that are listed in the version list but do not exist.
+	 */
+	private final List<VerificationFailure> missing;
+
+	/**
+	 * The files whose checksum or version does not match the version list.
+	 */
+	private final List<VerificationFailure> mismatches;
+
+	/**
+	 * The number of files that were checked.
+	 */
+	private final int checkedFiles;
+
+	public VerificationReport(List<VerificationFailure> missing, List<VerificationFailure> mismatches, int checkedFiles) {
+		this.missing = missing;
+		this.mismatches = mismatches;
+		this.checkedFiles = checkedFiles;
+	}
+
+	public List<VerificationFailure> getMissing() {
+		return Collections.unmodifiableList(missing);
+	}
+
+	public List<VerificationFailure> getMismatches() {
+		return Collections.unmodifiableList(mismatches);
+	}
+
+	public int getCheckedFiles() {
+		return checkedFiles;
+	}
+
+	/**
+	 * @return <code>true</code> if every checked file matched the version list.
+	 */
+	public boolean isValid() {
+		return missing.isEmpty() && mismatches.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "checked " + checkedFiles + " files, " + missing.size() + " missing, " + mismatches.size() + " mismatched";
+	}
+
+}
@@ -1,11 +1,190 @@
 package rs2.filestore.editor.cache.archive.version;
 
+import java.util.Arrays;
+
+/**
+ * Represents the decoded contents of the "versionlist" JAG archive. For each
+ * file type (models, animations, midis and maps, stored in indices 1 to 4
+ * respectively) this holds the version and CRC of every file, along with the
+ * type's index list, in primitive arrays so that lookups are constant time.
+ * 
+ * @author Sam
+ */
 public final class VersionListArchive {
 
-	private final int[] versions;
-	
-	public VersionListArchive(int[] versions) {
+	/**
+	 * The file type of models, stored in index 1.
+	 */
+	public static final int MODEL = 0;
+
+	/**
+	 * The file type of animations, stored in index 2.
+	 */
+	public static final int ANIM = 1;
+
+	/**
+	 * The file type of midis (music), stored in index 3.
+	 */
+	public static final int MIDI = 2;
+
+	/**
+	 * The file type of maps, stored in index 4.
+	 */
+	public static final int MAP = 3;
+
+	/**
+	 * The number of file types described by the version list.
+	 */
+	public static final int TYPE_COUNT = 4;
+
+	/**
+	 * The version of each file, by file type then file id.
+	 */
+	private final int[][] versions;
+
+	/**
+	 * The CRC32 checksum of each file, by file type then file id.
+	 */
+	private final int[][] crcs;
+
+	/**
+	 * The index list of each file type. For models and midis this is the priority
+	 * of each file, for animations it is the frame index of each file and for maps
+	 * it is left empty as the map index is keyed by region rather than file.
+	 */
+	private final int[][] indices;
+
+	public VersionListArchive(int[][] versions, int[][] crcs, int[][] indices) {
 		this.versions = versions;
+		this.crcs = crcs;
+		this.indices = indices;
+	}
+
+	/**
+	 * Gets the number of files of the given type listed in this archive.
+	 * 
+	 * @param type the file type.
+	 * @return the number of files of the given type.
+	 */
+	public int getFileCount(int type) {
+		return versions[type].length;
+	}
+
+	/**
+	 * Gets the version of the specified file.
+	 * 
+	 * @param type the file type.
+	 * @param file the id of the file.
+	 * @return the version of the file.
+	 */
+	public int getVersion(int type, int file) {
+		return versions[type][file];
+	}
+
+	/**
+	 * Gets the CRC32 checksum of the specified file.
+	 * 
+	 * @param type the file type.
+	 * @param file the id of the file.
+	 * @return the checksum of the file.
+	 */
+	public int getCrc(int type, int file) {
+		return crcs[type][file];
 	}
-	
+
+	/**
+	 * Gets the priority of the specified file, or <code>0</code> if the file type
+	 * has no priority list or the file is not listed in it.
+	 * 
+	 * @param type the file type.
+	 * @param file the id of the file.
+	 * @return the priority of the file.
+	 */
+	public int getPriority(int type, int file) {
+		if (type != MODEL && type != MIDI) {
+			return 0;
+		}
+		int[] priorities = indices[type];
+		return file < priorities.length ? priorities[file] : 0;
+	}
+
+	/**
+	 * Gets the value from the index list of the given file type for the specified
+	 * file.
+	 * 
+	 * @param type the file type, other than {@link #MAP}.
+	 * @param file the id of the file.
+	 * @return the index list value of the file.
+	 * @throws IllegalArgumentException if the type is {@link #MAP}, whose index
+	 * is keyed by region and unpacked with
+	 * {@link VersionListArchiveUnpacker#unpackMapIndex}.
+	 */
+	public int getIndex(int type, int file) {
+		if (type == MAP) {
+			throw new IllegalArgumentException("The map index is keyed by region, use VersionListArchiveUnpacker#unpackMapIndex");
+		}
+		return indices[type][file];
+	}
+
+	/**
+	 * Sets the version of the specified file, growing the list if the file is not yet listed.
+	 * 
+	 * @param type the file type.
+	 * @param file the id of the file.
+	 * @param version the new version.
+	 */
+	void setVersion(int type, int file, int version) {
+		if (file >= versions[type].length) {
+			versions[type] = Arrays.copyOf(versions[type], file + 1);
+		}
+		versions[type][file] = version;
+	}
+
+	/**
+	 * Sets the CRC32 checksum of the specified file, growing the list if the file is not yet listed.
+	 * 
+	 * @param type the file type.
+	 * @param file the id of the file.
+	 * @param crc the new checksum.
+	 */
+	void setCrc(int type, int file, int crc) {
+		if (file >= crcs[type].length) {
+			crcs[type] = Arrays.copyOf(crcs[type], file + 1);
+		}
+		crcs[type][file] = crc;
+	}
+
+	/**
+	 * Gets the versions of all files of the given type. The returned array is
+	 * shared, not copied.
+	 * 
+	 * @param type the file type.
+	 * @return the versions of the files of the given type.
+	 */
+	public int[] getVersions(int type) {
+		return versions[type];
+	}
+
+	/**
+	 * Gets the CRC32 checksums of all files of the given type. The returned array
+	 * is shared, not copied.
+	 * 
+	 * @param type the file type.
+	 * @return the checksums of the files of the given type.
+	 */
+	public int[] getCrcs(int type) {
+		return crcs[type];
+	}
+
+	/**
+	 * Gets the index list of the given type. The returned array is shared, not
+	 * copied.
+	 * 
+	 * @param type the file type.
+	 * @return the index list of the given type.
+	 */
+	public int[] getIndices(int type) {
+		return indices[type];
+	}
+
 }
\ No newline at end of file
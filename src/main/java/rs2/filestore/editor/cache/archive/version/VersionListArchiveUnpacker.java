@@ -1,45 +1,90 @@
 package rs2.filestore.editor.cache.archive.version;
 
 import rs2.filestore.editor.cache.archive.Archive;
-import rs2.filestore.editor.cache.archive.ArchiveEntry;
+import rs2.filestore.editor.cache.map.MapIndex;
 import rs2.filestore.editor.io.ReadOnlyBuffer;
 
 public final class VersionListArchiveUnpacker {
 	
-	private static final String[] FILE_PREFIXES = {
+	static final String[] FILE_PREFIXES = {
 		"model", "anim", "midi", "map"
 	};
 
-	private static final String[] FILE_TYPES = {
+	static final String[] FILE_TYPES = {
 		"version", "crc", "index"
 	};
 
+	/**
+	 * Unpacks the version, crc and index lists for each file type from the given
+	 * "versionlist" {@link Archive}.
+	 * 
+	 * @param archive the version list archive.
+	 * @return a {@link VersionListArchive} of the unpacked lists.
+	 */
 	public VersionListArchive unpack(Archive archive) {
-		for (String prefix : FILE_PREFIXES) {
-			ArchiveEntry versionList = archive.getEntry(prefix + FILE_TYPES[0]);
-			ReadOnlyBuffer buffer = versionList.getBuffer();
-			int versionListSize = buffer.length() / 2;
-			
-			int versions[] = buffer.getUnsignedShorts(versionListSize);
-			Version version = new Version(versions);
-			
-			
+		int[][] versions = new int[FILE_PREFIXES.length][];
+		int[][] crcs = new int[FILE_PREFIXES.length][];
+		int[][] indices = new int[FILE_PREFIXES.length][];
+
+		for (int type = 0; type < FILE_PREFIXES.length; type++) {
+			ReadOnlyBuffer versionBuffer = getBuffer(archive, type, FILE_TYPES[0]);
+			versions[type] = versionBuffer.getUnsignedShorts(versionBuffer.length() / Short.BYTES);
+
+			ReadOnlyBuffer crcBuffer = getBuffer(archive, type, FILE_TYPES[1]);
+			crcs[type] = crcBuffer.getInts(crcBuffer.length() / Integer.BYTES);
+
+			indices[type] = unpackIndex(type, getBuffer(archive, type, FILE_TYPES[2]));
 		}
-		for(int i = 0; i < 4; i++) {
-			ArchiveEntry versionList = archive.getEntry(FILE_PREFIXES[i] + FILE_TYPES[0]);
-			ReadOnlyBuffer buffer = versionList.getBuffer();
-			int versionListSize = buffer.length() / 2;
 		
-			int versions[] = new int[versionListSize];
-			
-			for(int index = 0; index < versionListSize; index++) {
-				versions[index] = buffer.getUnsignedShort();
-			}
-			Version version = new Version(versions);
-			
+		return new VersionListArchive(versions, crcs, indices);
+	}
+
+	/**
+	 * Unpacks the map index, which maps regions to their terrain and object files,
+	 * from the given "versionlist" {@link Archive}.
+	 * 
+	 * @param archive the version list archive.
+	 * @return the decoded {@link MapIndex}.
+	 */
+	public MapIndex unpackMapIndex(Archive archive) {
+		return MapIndex.decode(getBuffer(archive, VersionListArchive.MAP, FILE_TYPES[2]));
+	}
+
+	/**
+	 * Unpacks the index list of the given file type. Model and midi index lists
+	 * are a byte per file, animation index lists a short per file. The map index
+	 * is keyed by region, rather than by file, so is unpacked separately by
+	 * {@link #unpackMapIndex(Archive)}.
+	 * 
+	 * @param type the file type.
+	 * @param buffer the buffer containing the index list.
+	 * @return the unpacked index list.
+	 */
+	private static int[] unpackIndex(int type, ReadOnlyBuffer buffer) {
+		switch (type) {
+		case VersionListArchive.MODEL:
+		case VersionListArchive.MIDI:
+			return buffer.getUnsignedBytes(buffer.length());
+		case VersionListArchive.ANIM:
+			return buffer.getUnsignedShorts(buffer.length() / Short.BYTES);
+		default:
+			return new int[0];
 		}
-		
-		return null;
+	}
+
+	private static ReadOnlyBuffer getBuffer(Archive archive, int type, String fileType) {
+		return ReadOnlyBuffer.wrap(archive.getEntry(getEntryName(type, fileType)).getBytes());
+	}
+
+	/**
+	 * Gets the name of the archive entry holding the given list of the given file type.
+	 * 
+	 * @param type the file type.
+	 * @param fileType the list, one of {@link #FILE_TYPES}.
+	 * @return the name of the archive entry, such as "model_version".
+	 */
+	static String getEntryName(int type, String fileType) {
+		return FILE_PREFIXES[type] + "_" + fileType;
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package rs2.filestore.editor.cache.archive.version;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import rs2.filestore.editor.cache.archive.Archive;
+import rs2.filestore.editor.cache.fs.FileStore;
+import rs2.filestore.editor.cache.fs.index.Index;
+import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
+
+/**
+ * Keeps the "versionlist" {@link Archive} in step with edits to the files in
+ * indices 1 to 4. Changed {@link IndexEntry}s are tracked and, on
+ * {@link #update()}, only their checksums are recomputed and their versions
+ * bumped, the new version is stamped into the trailer of each file, and only
+ * the version and crc lists of the affected file types are re-encoded into the
+ * archive.
+ * 
+ * @author Sam
+ */
+public final class VersionListUpdater {
+
+	/**
+	 * The file store holding the indices the changed entries are stored in.
+	 */
+	private final FileStore fileStore;
+
+	/**
+	 * The decoded version list, updated in place.
+	 */
+	private final VersionListArchive versionList;
+
+	/**
+	 * The version list archive the decoded lists were unpacked from.
+	 */
+	private final Archive archive;
+
+	/**
+	 * The changed entries, keyed by index and file id, in the order they changed.
+	 */
+	private final Map<Long, IndexEntry> changedEntries = new LinkedHashMap<>();
+
+	public VersionListUpdater(FileStore fileStore, VersionListArchive versionList, Archive archive) {
+		this.fileStore = fileStore;
+		this.versionList = versionList;
+		this.archive = archive;
+	}
+
+	/**
+	 * Marks the given entry as changed. Entries outside of indices 1 to 4 are not
+	 * described by the version list, so are ignored. Marking a file more than once
+	 * keeps only its latest entry. The file must already have a slot in its index,
+	 * as {@link #update()} stores the stamped payload there.
+	 * 
+	 * @param indexId the id of the index the entry is stored in.
+	 * @param fileId the id of the file.
+	 * @param entry the new entry.
+	 * @throws IllegalStateException if the file store has no such index, or the
+	 *         file id lies outside of it.
+	 */
+	public void markChanged(int indexId, int fileId, IndexEntry entry) {
+		if (indexId < 1 || indexId > VersionListArchive.TYPE_COUNT) {
+			return;
+		}
+		Index index = indexId < fileStore.getIndexCount() ? fileStore.getIndex(indexId) : null;
+		if (index == null || fileId < 0 || fileId >= index.size()) {
+			throw new IllegalStateException("No slot for file " + fileId + " in index " + indexId);
+		}
+		changedEntries.put(((long) indexId << 32) | fileId, entry);
+	}
+
+	/**
+	 * Sets the entry in the given {@link Index} and marks it as changed.
+	 * 
+	 * @param index the index to set the entry in.
+	 * @param fileId the id of the file.
+	 * @param entry the new entry.
+	 */
+	public void setEntry(Index index, int fileId, IndexEntry entry) {
+		index.setEntry(fileId, entry);
+		markChanged(index.getId(), fileId, entry);
+	}
+
+	/**
+	 * @return <code>true</code> if there are changed entries awaiting an {@link #update()}.
+	 */
+	public boolean hasChanges() {
+		return !changedEntries.isEmpty();
+	}
+
+	/**
+	 * Recomputes the checksum and bumps the version of each changed file, stamps
+	 * the new version into the trailer of the file and replaces its entry in the
+	 * file store, then re-encodes the version and crc lists of the affected file
+	 * types into the archive. The checksum does not cover the trailer, so the
+	 * version, trailer and checksum of each file are always set together.
+	 * 
+	 * @return <code>true</code> if any list was re-encoded.
+	 */
+	public boolean update() {
+		boolean[] affectedTypes = new boolean[VersionListArchive.TYPE_COUNT];
+
+		for (Map.Entry<Long, IndexEntry> changed : changedEntries.entrySet()) {
+			int indexId = (int) (changed.getKey() >>> 32);
+			int type = indexId - 1;
+			int file = (int) (long) changed.getKey();
+			IndexEntry entry = changed.getValue();
+
+			if (entry.isEmpty() || entry.getFileSize() < CrcVerifier.VERSION_TRAILER_SIZE) {
+				versionList.setVersion(type, file, 0);
+				versionList.setCrc(type, file, 0);
+			} else {
+				int previous = file < versionList.getFileCount(type) ? versionList.getVersion(type, file) : 0;
+				int version = (previous + 1) & 0xFFFF;
+				if (version == 0) {
+					version = 1;
+				}
+
+				byte[] payload = entry.getData();
+				stampVersion(payload, version);
+				versionList.setVersion(type, file, version);
+				versionList.setCrc(type, file, CrcVerifier.checksum(payload));
+
+				fileStore.getIndex(indexId).setEntry(file, IndexEntry.of(indexId, file, payload));
+			}
+			affectedTypes[type] = true;
+		}
+		changedEntries.clear();
+
+		boolean updated = false;
+		for (int type = 0; type < affectedTypes.length; type++) {
+			if (!affectedTypes[type]) {
+				continue;
+			}
+			archive.replaceEntry(VersionListArchiveUnpacker.getEntryName(type, VersionListArchiveUnpacker.FILE_TYPES[0]),
+					encodeShorts(versionList.getVersions(type)));
+			archive.replaceEntry(VersionListArchiveUnpacker.getEntryName(type, VersionListArchiveUnpacker.FILE_TYPES[1]),
+					encodeInts(versionList.getCrcs(type)));
+			updated = true;
+		}
+		return updated;
+	}
+
+	/**
+	 * Writes the given version into the 2 byte trailer of a file payload.
+	 * 
+	 * @param payload the file payload, including the version trailer.
+	 * @param version the version to write.
+	 */
+	public static void stampVersion(byte[] payload, int version) {
+		payload[payload.length - 2] = (byte) (version >> 8);
+		payload[payload.length - 1] = (byte) version;
+	}
+
+	private static byte[] encodeShorts(int[] values) {
+		byte[] encoded = new byte[values.length * Short.BYTES];
+		for (int index = 0, position = 0; index < values.length; index++) {
+			encoded[position++] = (byte) (values[index] >> 8);
+			encoded[position++] = (byte) values[index];
+		}
+		return encoded;
+	}
+
+	private static byte[] encodeInts(int[] values) {
+		byte[] encoded = new byte[values.length * Integer.BYTES];
+		for (int index = 0, position = 0; index < values.length; index++) {
+			encoded[position++] = (byte) (values[index] >> 24);
+			encoded[position++] = (byte) (values[index] >> 16);
+			encoded[position++] = (byte) (values[index] >> 8);
+			encoded[position++] = (byte) values[index];
+		}
+		return encoded;
+	}
+
+}
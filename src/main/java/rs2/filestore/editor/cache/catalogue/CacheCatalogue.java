@@ -0,0 +1,216 @@
+package rs2.filestore.editor.cache.catalogue;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import rs2.filestore.editor.cache.archive.Archive;
+import rs2.filestore.editor.cache.archive.ArchiveCodec;
+import rs2.filestore.editor.cache.archive.ArchiveEntry;
+import rs2.filestore.editor.cache.fs.IndexProvider;
+import rs2.filestore.editor.cache.fs.index.Index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * A content-addressed catalogue of a file store. Every file, and every member of the JAG archives in index 0, is
+ * hashed in a single parallel pass, so that the places holding a given payload, or the archives holding a member with
+ * a given name, can be found without decoding anything. Payloads held in more than one place are reported as
+ * duplicates.
+ */
+public final class CacheCatalogue {
+
+	/**
+	 * The id of the index holding JAG archives.
+	 */
+	static final int ARCHIVE_INDEX = 0;
+
+	private static final HashFunction CONTENT_HASH = Hashing.murmur3_128();
+
+	/**
+	 * The locations holding each payload, by the hash of the payload.
+	 */
+	private final Map<HashCode, List<ContentLocation>> byContent;
+
+	/**
+	 * The locations of the archive members with each identifier.
+	 */
+	private final Map<Integer, List<ContentLocation>> byIdentifier;
+
+	/**
+	 * The number of locations catalogued.
+	 */
+	private final int locationCount;
+
+	private CacheCatalogue(Map<HashCode, List<ContentLocation>> byContent, Map<Integer, List<ContentLocation>> byIdentifier, int locationCount) {
+		this.byContent = byContent;
+		this.byIdentifier = byIdentifier;
+		this.locationCount = locationCount;
+	}
+
+	/**
+	 * Catalogues every file of a file store, in any format, and every member of its JAG archives. Files in index 0
+	 * that do not decode as archives are catalogued as whole files only.
+	 *
+	 * @param fileStore the file store.
+	 * @return the {@link CacheCatalogue}.
+	 */
+	public static CacheCatalogue build(IndexProvider fileStore) {
+		// collected first, as a flatMap stream splits poorly and would be hashed on few threads
+		long[] files = IntStream.range(0, fileStore.getIndexCount())
+				.mapToObj(indexId -> files(fileStore.getIndex(indexId)))
+				.flatMapToLong(indexFiles -> indexFiles)
+				.toArray();
+
+		List<ContentLocation> locations = LongStream.of(files)
+				.parallel()
+				.mapToObj(file -> catalogue(fileStore.getIndex((int) (file >>> 32)), (int) file))
+				.flatMap(List::stream)
+				.collect(Collectors.toList());
+
+		Map<HashCode, List<ContentLocation>> byContent = locations.stream()
+				.collect(Collectors.groupingBy(ContentLocation::getHash, Collectors.collectingAndThen(Collectors.toList(), CacheCatalogue::sorted)));
+		Map<Integer, List<ContentLocation>> byIdentifier = locations.stream()
+				.filter(ContentLocation::isMember)
+				.collect(Collectors.groupingBy(ContentLocation::getIdentifier, Collectors.collectingAndThen(Collectors.toList(), CacheCatalogue::sorted)));
+
+		return new CacheCatalogue(byContent, byIdentifier, locations.size());
+	}
+
+	/**
+	 * Lists the files of an index, each as its index id shifted left by 32, or'd with its file id.
+	 */
+	private static LongStream files(Index index) {
+		if (index == null) {
+			return LongStream.empty();
+		}
+		long indexId = (long) index.getId() << 32;
+		return index.nonEmptyFileIds().mapToLong(fileId -> indexId | fileId);
+	}
+
+	/**
+	 * Hashes a file and, if it is an archive, each of its members.
+	 */
+	private static List<ContentLocation> catalogue(Index index, int fileId) {
+		byte[] payload = index.getEntry(fileId).getData();
+		List<ContentLocation> locations = new ArrayList<>();
+		locations.add(ContentLocation.file(index.getId(), fileId, payload.length, CONTENT_HASH.hashBytes(payload)));
+
+		if (index.getId() == ARCHIVE_INDEX) {
+			Archive archive;
+			try {
+				archive = ArchiveCodec.decode(payload);
+			} catch (IOException | RuntimeException e) {
+				return locations;
+			}
+
+			for (ArchiveEntry entry : archive.getEntries()) {
+				byte[] bytes = entry.getBytes();
+				locations.add(ContentLocation.member(fileId, entry.getIdentifier(), bytes.length, CONTENT_HASH.hashBytes(bytes)));
+			}
+		}
+		return locations;
+	}
+
+	private static List<ContentLocation> sorted(List<ContentLocation> locations) {
+		locations.sort(ContentLocation.ORDER);
+		return Collections.unmodifiableList(locations);
+	}
+
+	/**
+	 * Hashes a payload the way this catalogue does.
+	 *
+	 * @param payload the payload.
+	 * @return the hash of the payload.
+	 */
+	public static HashCode hash(byte[] payload) {
+		return CONTENT_HASH.hashBytes(payload);
+	}
+
+	/**
+	 * Finds the places holding a payload.
+	 *
+	 * @param hash the hash of the payload, from {@link #hash(byte[])}.
+	 * @return the locations holding the payload, in order, or an empty list if there are none.
+	 */
+	public List<ContentLocation> find(HashCode hash) {
+		return byContent.getOrDefault(hash, Collections.emptyList());
+	}
+
+	/**
+	 * Finds the places holding a payload.
+	 *
+	 * @param payload the payload.
+	 * @return the locations holding the payload, in order, or an empty list if there are none.
+	 */
+	public List<ContentLocation> find(byte[] payload) {
+		return find(hash(payload));
+	}
+
+	/**
+	 * Finds the archive members with an identifier.
+	 *
+	 * @param identifier the identifier, the hash of the member's name.
+	 * @return the locations of the members, in order, or an empty list if there are none.
+	 */
+	public List<ContentLocation> findMembers(int identifier) {
+		return byIdentifier.getOrDefault(identifier, Collections.emptyList());
+	}
+
+	/**
+	 * Finds the archive members with a name, such as "index.dat".
+	 *
+	 * @param name the name of the member.
+	 * @return the locations of the members, in order, or an empty list if there are none.
+	 */
+	public List<ContentLocation> findMembers(String name) {
+		return findMembers(Archive.getIdentifier(name));
+	}
+
+	/**
+	 * Lists the payloads held in more than one place.
+	 *
+	 * @return the locations holding each duplicated payload, by the hash of the payload.
+	 */
+	public Map<HashCode, List<ContentLocation>> getDuplicates() {
+		return byContent.entrySet().stream()
+				.filter(entry -> entry.getValue().size() > 1)
+				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+	}
+
+	/**
+	 * @return the number of bytes that would be saved if each duplicated payload were held only once.
+	 */
+	public long getDuplicateBytes() {
+		return byContent.values().stream()
+				.mapToLong(locations -> (long) (locations.size() - 1) * locations.get(0).getSize())
+				.sum();
+	}
+
+	/**
+	 * @return the number of distinct payloads.
+	 */
+	public int getContentCount() {
+		return byContent.size();
+	}
+
+	/**
+	 * @return the number of files and archive members catalogued.
+	 */
+	public int getLocationCount() {
+		return locationCount;
+	}
+
+	@Override
+	public String toString() {
+		return locationCount + " locations, " + byContent.size() + " distinct payloads, "
+				+ getDuplicateBytes() + " duplicate bytes";
+	}
+
+}
@@ -0,0 +1,96 @@
+package rs2.filestore.editor.cache.catalogue;
+
+import com.google.common.hash.HashCode;
+
+import java.util.Comparator;
+
+/**
+ * A place in a file store that holds a payload: either a whole file, or a member of a JAG archive in index 0.
+ */
+public final class ContentLocation {
+
+	/**
+	 * Orders locations by index, file and then member, with each whole file before its members.
+	 */
+	static final Comparator<ContentLocation> ORDER = Comparator.comparingInt(ContentLocation::getIndexId)
+			.thenComparingInt(ContentLocation::getFileId)
+			.thenComparing(ContentLocation::isMember)
+			.thenComparingInt(ContentLocation::getIdentifier);
+
+	/**
+	 * The id of the index the file is stored in.
+	 */
+	private final int indexId;
+
+	/**
+	 * The id of the file.
+	 */
+	private final int fileId;
+
+	/**
+	 * Whether this is a member of an archive, rather than a whole file.
+	 */
+	private final boolean member;
+
+	/**
+	 * The identifier of the archive member, the hash of its name, or <code>0</code> for a whole file.
+	 */
+	private final int identifier;
+
+	/**
+	 * The size of the payload, in bytes.
+	 */
+	private final int size;
+
+	/**
+	 * The hash of the payload.
+	 */
+	private final HashCode hash;
+
+	private ContentLocation(int indexId, int fileId, boolean member, int identifier, int size, HashCode hash) {
+		this.indexId = indexId;
+		this.fileId = fileId;
+		this.member = member;
+		this.identifier = identifier;
+		this.size = size;
+		this.hash = hash;
+	}
+
+	static ContentLocation file(int indexId, int fileId, int size, HashCode hash) {
+		return new ContentLocation(indexId, fileId, false, 0, size, hash);
+	}
+
+	static ContentLocation member(int fileId, int identifier, int size, HashCode hash) {
+		return new ContentLocation(CacheCatalogue.ARCHIVE_INDEX, fileId, true, identifier, size, hash);
+	}
+
+	public int getIndexId() {
+		return indexId;
+	}
+
+	public int getFileId() {
+		return fileId;
+	}
+
+	public boolean isMember() {
+		return member;
+	}
+
+	public int getIdentifier() {
+		return identifier;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public HashCode getHash() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return indexId + "/" + fileId + (member ? ":" + identifier : "") + " (" + size + " bytes)";
+	}
+
+}
@@ -0,0 +1,229 @@
+package rs2.filestore.editor.cache.diff;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import rs2.filestore.editor.cache.archive.Archive;
+import rs2.filestore.editor.cache.archive.ArchiveCodec;
+import rs2.filestore.editor.cache.archive.ArchiveEntry;
+import rs2.filestore.editor.cache.fs.FileStore;
+import rs2.filestore.editor.cache.fs.IndexProvider;
+import rs2.filestore.editor.cache.fs.index.Index;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The files that differ between two file stores. Each payload, and each member of the JAG archives in index 0, is
+ * fingerprinted with a 128 bit hash rather than compared chunk by chunk, and the files of each index are compared in
+ * parallel. Files whose sizes differ are known to have changed without being hashed.
+ */
+public final class CacheDiff {
+
+	/**
+	 * The id of the index holding JAG archives.
+	 */
+	private static final int ARCHIVE_INDEX = 0;
+
+	private static final HashFunction FINGERPRINT = Hashing.murmur3_128();
+
+	/**
+	 * The changed files, ordered by index and file.
+	 */
+	private final List<FileChange> changes;
+
+	/**
+	 * The number of files present in either file store.
+	 */
+	private final int comparedFiles;
+
+	private CacheDiff(List<FileChange> changes, int comparedFiles) {
+		this.changes = changes;
+		this.comparedFiles = comparedFiles;
+	}
+
+	/**
+	 * Compares the file stores in two directories. Both are loaded with {@link FileStore#loadCompact(Path)}, so only
+	 * the files that are compared are read from their data files.
+	 *
+	 * @param from the directory of the older file store.
+	 * @param to the directory of the newer file store.
+	 * @return the differences between them.
+	 * @throws IOException if either file store cannot be loaded.
+	 */
+	public static CacheDiff compare(Path from, Path to) throws IOException {
+		return compare(FileStore.loadCompact(from), FileStore.loadCompact(to));
+	}
+
+	/**
+	 * Compares two file stores, in any format.
+	 *
+	 * @param from the older file store.
+	 * @param to the newer file store.
+	 * @return the differences between them.
+	 */
+	public static CacheDiff compare(IndexProvider from, IndexProvider to) {
+		List<FileChange> changes = new ArrayList<>();
+		int comparedFiles = 0;
+
+		for (int indexId = 0; indexId < Math.max(from.getIndexCount(), to.getIndexCount()); indexId++) {
+			Index fromIndex = indexId < from.getIndexCount() ? from.getIndex(indexId) : null;
+			Index toIndex = indexId < to.getIndexCount() ? to.getIndex(indexId) : null;
+			int fileCount = Math.max(size(fromIndex), size(toIndex));
+			final int id = indexId;
+
+			comparedFiles += (int) IntStream.range(0, fileCount)
+					.filter(fileId -> isPresent(fromIndex, fileId) || isPresent(toIndex, fileId))
+					.count();
+			changes.addAll(IntStream.range(0, fileCount).parallel()
+					.mapToObj(fileId -> compare(id, fileId, fromIndex, toIndex))
+					.filter(Objects::nonNull)
+					.collect(Collectors.toList()));
+		}
+
+		return new CacheDiff(changes, comparedFiles);
+	}
+
+	/**
+	 * Compares a single file.
+	 *
+	 * @return the change, or <code>null</code> if the file is the same in both.
+	 */
+	private static FileChange compare(int indexId, int fileId, Index from, Index to) {
+		boolean inFrom = isPresent(from, fileId);
+		boolean inTo = isPresent(to, fileId);
+
+		if (!inTo) {
+			return inFrom ? new FileChange(indexId, fileId, FileChange.Type.REMOVED, null, Collections.emptyMap()) : null;
+		}
+
+		byte[] payload = to.getEntry(fileId).getData();
+		if (!inFrom) {
+			return new FileChange(indexId, fileId, FileChange.Type.ADDED, payload, Collections.emptyMap());
+		}
+
+		byte[] previous = null;
+		if (from.getFileSize(fileId) == payload.length) {
+			previous = from.getEntry(fileId).getData();
+			if (fingerprint(previous).equals(fingerprint(payload))) {
+				return null;
+			}
+		}
+
+		Map<Integer, FileChange.Type> memberChanges = Collections.emptyMap();
+		if (indexId == ARCHIVE_INDEX) {
+			memberChanges = compareMembers(previous != null ? previous : from.getEntry(fileId).getData(), payload);
+		}
+		return new FileChange(indexId, fileId, FileChange.Type.MODIFIED, payload, memberChanges);
+	}
+
+	/**
+	 * Compares the members of two JAG archives.
+	 *
+	 * @return how each differing member changed, by identifier, or an empty map if either is not a valid archive.
+	 */
+	private static Map<Integer, FileChange.Type> compareMembers(byte[] from, byte[] to) {
+		Map<Integer, HashCode> fromMembers = fingerprintMembers(from);
+		Map<Integer, HashCode> toMembers = fingerprintMembers(to);
+		if (fromMembers == null || toMembers == null) {
+			return Collections.emptyMap();
+		}
+
+		Map<Integer, FileChange.Type> changes = new TreeMap<>();
+		for (Map.Entry<Integer, HashCode> member : toMembers.entrySet()) {
+			HashCode previous = fromMembers.get(member.getKey());
+			if (previous == null) {
+				changes.put(member.getKey(), FileChange.Type.ADDED);
+			} else if (!previous.equals(member.getValue())) {
+				changes.put(member.getKey(), FileChange.Type.MODIFIED);
+			}
+		}
+		for (Integer identifier : fromMembers.keySet()) {
+			if (!toMembers.containsKey(identifier)) {
+				changes.put(identifier, FileChange.Type.REMOVED);
+			}
+		}
+		return changes;
+	}
+
+	private static Map<Integer, HashCode> fingerprintMembers(byte[] payload) {
+		Archive archive;
+		try {
+			archive = ArchiveCodec.decode(payload);
+		} catch (IOException | RuntimeException e) {
+			return null;
+		}
+
+		Map<Integer, HashCode> members = new HashMap<>();
+		for (ArchiveEntry entry : archive.getEntries()) {
+			members.put(entry.getIdentifier(), fingerprint(entry.getBytes()));
+		}
+		return members;
+	}
+
+	private static HashCode fingerprint(byte[] payload) {
+		return FINGERPRINT.hashBytes(payload);
+	}
+
+	private static int size(Index index) {
+		return index == null ? 0 : index.size();
+	}
+
+	private static boolean isPresent(Index index, int fileId) {
+		return index != null && fileId < index.size() && !index.isEmpty(fileId);
+	}
+
+	/**
+	 * @return the changed files, ordered by index and file.
+	 */
+	public List<FileChange> getChanges() {
+		return Collections.unmodifiableList(changes);
+	}
+
+	/**
+	 * Gets the changes of the given type.
+	 *
+	 * @param type the type of change.
+	 * @return a list of the changes of the given type.
+	 */
+	public List<FileChange> getChanges(FileChange.Type type) {
+		return changes.stream().filter(change -> change.getType() == type).collect(Collectors.toList());
+	}
+
+	public int getComparedFiles() {
+		return comparedFiles;
+	}
+
+	/**
+	 * @return <code>true</code> if the file stores hold the same files.
+	 */
+	public boolean isEmpty() {
+		return changes.isEmpty();
+	}
+
+	/**
+	 * Creates a patch that turns the older file store into the newer one.
+	 *
+	 * @return a {@link CachePatch} holding the changed payloads.
+	 */
+	public CachePatch toPatch() {
+		return new CachePatch(changes);
+	}
+
+	@Override
+	public String toString() {
+		return "compared " + comparedFiles + " files, " + getChanges(FileChange.Type.ADDED).size() + " added, "
+				+ getChanges(FileChange.Type.REMOVED).size() + " removed, "
+				+ getChanges(FileChange.Type.MODIFIED).size() + " modified";
+	}
+
+}
@@ -0,0 +1,159 @@
+package rs2.filestore.editor.cache.diff;
+
+import rs2.filestore.editor.cache.fs.FileStoreWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of file changes that turns one file store into another, holding only the payloads of the files that were
+ * added or modified. Archive member changes are not stored, as each changed archive is replaced whole.
+ * <p>
+ * The patch file starts with {@link #MAGIC}, a version and a change count, followed by each change: the index id as a
+ * byte, the file id as a short, the change type as a byte and, unless the file was removed, the payload length as an
+ * int followed by the payload.
+ */
+public final class CachePatch {
+
+	/**
+	 * Identifies a patch file, "RS2P".
+	 */
+	private static final int MAGIC = 0x52533250;
+
+	/**
+	 * The version of the patch file format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The largest index id, as each chunk stores the id of its index plus 1 in a single byte.
+	 */
+	private static final int MAX_INDEX_ID = 254;
+
+	/**
+	 * The largest file size an index entry can hold.
+	 */
+	private static final int MAX_FILE_SIZE = (1 << 24) - 1;
+
+	/**
+	 * The changes, ordered by index and file.
+	 */
+	private final List<FileChange> changes;
+
+	CachePatch(List<FileChange> changes) {
+		this.changes = changes;
+	}
+
+	public List<FileChange> getChanges() {
+		return Collections.unmodifiableList(changes);
+	}
+
+	/**
+	 * Writes this patch to a file.
+	 *
+	 * @param path the path of the patch file.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public void write(Path path) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeInt(changes.size());
+
+			for (FileChange change : changes) {
+				out.writeByte(change.getIndexId());
+				out.writeShort(change.getFileId());
+				out.writeByte(change.getType().ordinal());
+
+				if (change.getType() != FileChange.Type.REMOVED) {
+					out.writeInt(change.getPayload().length);
+					out.write(change.getPayload());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a patch from a file.
+	 *
+	 * @param path the path of the patch file.
+	 * @return the {@link CachePatch}.
+	 * @throws IOException if the file cannot be read, is not a patch file or is corrupt.
+	 */
+	public static CachePatch read(Path path) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(path + ": not a patch file");
+			}
+			int version = in.readUnsignedByte();
+			if (version != VERSION) {
+				throw new IOException(path + ": unsupported patch version " + version);
+			}
+
+			int count = in.readInt();
+			if (count < 0) {
+				throw new IOException(path + ": invalid change count " + count);
+			}
+			// the count is not trusted to size the list, a corrupt patch ends early instead
+			List<FileChange> changes = new ArrayList<>(Math.min(count, 4096));
+			FileChange.Type[] types = FileChange.Type.values();
+
+			for (int i = 0; i < count; i++) {
+				int indexId = in.readUnsignedByte();
+				int fileId = in.readUnsignedShort();
+				int type = in.readUnsignedByte();
+				if (indexId > MAX_INDEX_ID) {
+					throw new IOException(path + ": invalid index id " + indexId + " for file " + fileId);
+				}
+				if (type >= types.length) {
+					throw new IOException(path + ": invalid change type " + type + " for " + indexId + "/" + fileId);
+				}
+
+				byte[] payload = null;
+				if (types[type] != FileChange.Type.REMOVED) {
+					int length = in.readInt();
+					if (length < 0 || length > MAX_FILE_SIZE) {
+						throw new IOException(path + ": invalid payload length " + length + " for " + indexId + "/" + fileId);
+					}
+					payload = new byte[length];
+					in.readFully(payload);
+				}
+				changes.add(new FileChange(indexId, fileId, types[type], payload, Collections.emptyMap()));
+			}
+			return new CachePatch(changes);
+		}
+	}
+
+	/**
+	 * Applies this patch to the file store in the given directory, in place.
+	 *
+	 * @param fileStoreDirectory the directory in which the local file store files reside.
+	 * @throws IOException if the file store cannot be written.
+	 */
+	public void apply(Path fileStoreDirectory) throws IOException {
+		try (FileStoreWriter writer = new FileStoreWriter(fileStoreDirectory)) {
+			for (FileChange change : changes) {
+				if (change.getType() == FileChange.Type.REMOVED) {
+					writer.remove(change.getIndexId(), change.getFileId());
+				} else {
+					writer.put(change.getIndexId(), change.getFileId(), change.getPayload());
+				}
+			}
+			writer.flush();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return changes.size() + " changes";
+	}
+
+}
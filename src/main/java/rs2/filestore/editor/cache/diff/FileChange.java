@@ -0,0 +1,84 @@
+package rs2.filestore.editor.cache.diff;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Describes how a single file differs between two file stores.
+ */
+public final class FileChange {
+
+	/**
+	 * The ways a file, or an archive member, can differ.
+	 */
+	public enum Type {
+		/**
+		 * Present only in the newer file store.
+		 */
+		ADDED,
+		/**
+		 * Present only in the older file store.
+		 */
+		REMOVED,
+		/**
+		 * Present in both, with different contents.
+		 */
+		MODIFIED
+	}
+
+	/**
+	 * The id of the index the file is stored in.
+	 */
+	private final int indexId;
+
+	/**
+	 * The id of the file.
+	 */
+	private final int fileId;
+
+	private final Type type;
+
+	/**
+	 * The contents of the file in the newer file store, or <code>null</code> if it was removed.
+	 */
+	private final byte[] payload;
+
+	/**
+	 * How each member differs, by identifier, if both versions of the file are JAG archives; empty otherwise.
+	 */
+	private final Map<Integer, Type> memberChanges;
+
+	public FileChange(int indexId, int fileId, Type type, byte[] payload, Map<Integer, Type> memberChanges) {
+		this.indexId = indexId;
+		this.fileId = fileId;
+		this.type = type;
+		this.payload = payload;
+		this.memberChanges = memberChanges;
+	}
+
+	public int getIndexId() {
+		return indexId;
+	}
+
+	public int getFileId() {
+		return fileId;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public byte[] getPayload() {
+		return payload;
+	}
+
+	public Map<Integer, Type> getMemberChanges() {
+		return Collections.unmodifiableMap(memberChanges);
+	}
+
+	@Override
+	public String toString() {
+		return indexId + "/" + fileId + " " + type + (memberChanges.isEmpty() ? "" : " " + memberChanges);
+	}
+
+}
@@ -0,0 +1,336 @@
+package rs2.filestore.editor.cache.fs;
+
+import rs2.filestore.editor.cache.fs.index.DataChunk;
+import rs2.filestore.editor.cache.fs.index.Index;
+import rs2.filestore.editor.cache.fs.index.InvalidChunkException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads files from the data file of a local file store asynchronously, in batches. Requests that arrive while a batch
+ * is being read are gathered into the next batch. The chunks a batch needs are read in ascending file offset order,
+ * and physically adjacent chunks are fetched with a single positional read, so a batch sweeps the data file once per
+ * chain step rather than seeking back and forth for each file.
+ * <p>
+ * Only the file size and first chunk position of each entry are taken from the {@link FileStore}, so this works well
+ * with stores opened by {@link FileStore#open(Path)} or {@link FileStore#loadCompact(Path)}.
+ */
+public final class BatchedFileReader implements Closeable {
+
+	/**
+	 * The most chunks fetched by a single positional read.
+	 */
+	private static final int MAX_RUN_CHUNKS = 128;
+
+	/**
+	 * The file store providing the size and first chunk position of each file.
+	 */
+	private final FileStore fileStore;
+
+	/**
+	 * The channel to the data file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The length of the data file when it was opened, in bytes.
+	 */
+	private final long dataLength;
+
+	/**
+	 * The most requests read in one batch.
+	 */
+	private final int maxBatchSize;
+
+	/**
+	 * Requests waiting for the next batch.
+	 */
+	private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+
+	/**
+	 * The thread reading batches.
+	 */
+	private final Thread worker;
+
+	/**
+	 * The buffer each run of chunks is read into, only used by {@link #worker}.
+	 */
+	private final ByteBuffer runBuffer = ByteBuffer.allocateDirect(MAX_RUN_CHUNKS * DataChunk.DATA_CHUNK_SIZE);
+
+	private final AtomicLong batches = new AtomicLong();
+
+	private final AtomicLong reads = new AtomicLong();
+
+	private final AtomicLong chunks = new AtomicLong();
+
+	private volatile boolean closed;
+
+	/**
+	 * Opens the data file of the given file store directory.
+	 *
+	 * @param fileStoreDirectory the directory in which the local file store files reside.
+	 * @param fileStore the file store loaded from the directory.
+	 * @param maxBatchSize the most requests to read in one batch.
+	 * @throws IOException if the data file cannot be opened.
+	 */
+	public BatchedFileReader(Path fileStoreDirectory, FileStore fileStore, int maxBatchSize) throws IOException {
+		this.fileStore = fileStore;
+		this.channel = FileChannel.open(FileStore.validCachePath(fileStoreDirectory), StandardOpenOption.READ);
+		this.dataLength = channel.size();
+		this.maxBatchSize = maxBatchSize;
+		this.worker = new Thread(this::run, "batched-file-reader");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	/**
+	 * Requests the contents of a file.
+	 *
+	 * @param indexId the id of the index the file is stored in.
+	 * @param fileId the id of the file.
+	 * @return a {@link CompletableFuture} completed with the file's contents, or exceptionally if the file does not exist,
+	 * its chain is broken or the reader is closed.
+	 */
+	public CompletableFuture<byte[]> read(int indexId, int fileId) {
+		Request request = new Request(indexId, fileId);
+		if (closed) {
+			request.future.completeExceptionally(new IOException("Reader is closed"));
+			return request.future;
+		}
+
+		queue.add(request);
+		// the reader may have closed, and failed the queued requests, since it was checked
+		if (closed && queue.remove(request)) {
+			request.future.completeExceptionally(new IOException("Reader is closed"));
+		}
+		return request.future;
+	}
+
+	/**
+	 * @return the number of batches read.
+	 */
+	public long getBatchCount() {
+		return batches.get();
+	}
+
+	/**
+	 * @return the number of positional reads issued.
+	 */
+	public long getReadCount() {
+		return reads.get();
+	}
+
+	/**
+	 * @return the number of chunks read.
+	 */
+	public long getChunkCount() {
+		return chunks.get();
+	}
+
+	private void run() {
+		List<Request> batch = new ArrayList<>(maxBatchSize);
+		while (!closed) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				break;
+			}
+			queue.drainTo(batch, maxBatchSize - 1);
+
+			try {
+				readBatch(batch);
+			} catch (RuntimeException e) {
+				// requests already read keep their result, the rest fail rather than wait forever
+				batch.forEach(request -> request.future.completeExceptionally(e));
+			}
+			batch.clear();
+		}
+
+		failQueued();
+	}
+
+	/**
+	 * Completes every request still queued exceptionally, as the reader is closed.
+	 */
+	private void failQueued() {
+		List<Request> remaining = new ArrayList<>();
+		queue.drainTo(remaining);
+		for (Request request : remaining) {
+			request.future.completeExceptionally(new IOException("Reader is closed"));
+		}
+	}
+
+	/**
+	 * Reads every request in the batch, one chain step at a time. Each step reads the next chunk of every unfinished
+	 * request in offset order.
+	 */
+	private void readBatch(List<Request> batch) {
+		batches.incrementAndGet();
+		List<Request> active = new ArrayList<>(batch.size());
+		for (Request request : batch) {
+			if (request.start()) {
+				active.add(request);
+			}
+		}
+
+		while (!active.isEmpty()) {
+			active.sort(Comparator.comparingInt(request -> request.position));
+
+			int start = 0;
+			while (start < active.size()) {
+				int first = active.get(start).position;
+				int end = start + 1;
+				while (end < active.size() && active.get(end).position - first < MAX_RUN_CHUNKS
+						&& active.get(end).position <= active.get(end - 1).position + 1) {
+					end++;
+				}
+
+				readRun(active.subList(start, end), first, active.get(end - 1).position - first + 1);
+				start = end;
+			}
+
+			active.removeIf(request -> request.future.isDone());
+		}
+	}
+
+	/**
+	 * Reads a run of adjacent chunks with one positional read and hands each chunk to the requests that need it.
+	 */
+	private void readRun(List<Request> requests, int firstPosition, int chunkCount) {
+		runBuffer.clear().limit(chunkCount * DataChunk.DATA_CHUNK_SIZE);
+		try {
+			long offset = (long) firstPosition * DataChunk.DATA_CHUNK_SIZE;
+			while (runBuffer.hasRemaining()) {
+				int read = channel.read(runBuffer, offset + runBuffer.position());
+				if (read < 0) {
+					// the final chunk of the data file may be short; requests check what they need is present
+					break;
+				}
+			}
+		} catch (IOException e) {
+			requests.forEach(request -> request.future.completeExceptionally(e));
+			return;
+		}
+		reads.incrementAndGet();
+		chunks.addAndGet(chunkCount);
+
+		int limit = runBuffer.position();
+		for (Request request : requests) {
+			int chunkOffset = (request.position - firstPosition) * DataChunk.DATA_CHUNK_SIZE;
+			// a chunk beyond the end of the data file is seen as empty, and reported as lying outside of it
+			runBuffer.limit(limit).position(Math.min(chunkOffset, limit));
+			request.accept(runBuffer);
+		}
+	}
+
+	/**
+	 * Stops reading and closes the data file. Requests not yet read are completed exceptionally.
+	 *
+	 * @throws IOException if the data file cannot be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		worker.interrupt();
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		failQueued();
+		channel.close();
+	}
+
+	/**
+	 * A request for a file, and the progress made reading it.
+	 */
+	private final class Request {
+
+		private final int indexId;
+
+		private final int fileId;
+
+		private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+		private byte[] data;
+
+		private int chunkId;
+
+		private int position;
+
+		private Request(int indexId, int fileId) {
+			this.indexId = indexId;
+			this.fileId = fileId;
+		}
+
+		/**
+		 * Looks up the file's size and first chunk.
+		 *
+		 * @return <code>true</code> if there are chunks to read.
+		 */
+		private boolean start() {
+			Index index = indexId < fileStore.getIndexCount() ? fileStore.getIndex(indexId) : null;
+			if (index == null || fileId < 0 || fileId >= index.size() || index.isEmpty(fileId)) {
+				future.completeExceptionally(new NoSuchElementException("No file " + fileId + " in index " + indexId));
+				return false;
+			}
+
+			data = new byte[index.getFileSize(fileId)];
+			position = index.getInitialChunkPosition(fileId);
+			return true;
+		}
+
+		/**
+		 * Validates the header of, and copies the body from, the chunk at the buffer's position.
+		 */
+		private void accept(ByteBuffer chunk) {
+			if (future.isDone()) {
+				return;
+			}
+			if (chunk.remaining() < DataChunk.DATA_CHUNK_HEADER_SIZE) {
+				future.completeExceptionally(new InvalidChunkException("Chunk " + position + " lies outside of the data file"));
+				return;
+			}
+
+			int nextChunkId;
+			try {
+				nextChunkId = DataChunk.readHeader(chunk, chunk.position(), indexId, fileId, chunkId,
+						DataChunk.chunkCount(data.length), dataLength);
+			} catch (InvalidChunkException e) {
+				future.completeExceptionally(e);
+				return;
+			}
+			chunk.position(chunk.position() + DataChunk.DATA_CHUNK_HEADER_SIZE);
+
+			int offset = chunkId * DataChunk.DATA_CHUNK_BODY_SIZE;
+			int length = Math.min(DataChunk.DATA_CHUNK_BODY_SIZE, data.length - offset);
+			if (length > chunk.remaining()) {
+				future.completeExceptionally(new InvalidChunkException("Chunk " + position + " is truncated"));
+				return;
+			}
+			chunk.get(data, offset, length);
+
+			if (nextChunkId == 0) {
+				future.complete(data);
+			} else {
+				chunkId++;
+				position = nextChunkId;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,238 @@
+package rs2.filestore.editor.cache.fs;
+
+import rs2.filestore.editor.cache.archive.Archive;
+import rs2.filestore.editor.cache.archive.ArchiveCodec;
+import rs2.filestore.editor.cache.archive.ArchiveEntry;
+import rs2.filestore.editor.cache.fs.index.ChainReader;
+import rs2.filestore.editor.cache.fs.index.IndexDecoder;
+import rs2.filestore.editor.io.ReadOnlyBuffer;
+import rs2.filestore.editor.io.util.GzipUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Dumps every file of a local file store into a directory tree, with one directory per index and one file per entry,
+ * named by their ids. Payloads are read by a single thread in data file order, so the data file is read sequentially
+ * from start to end, while decompression and writing are handed to a pool of worker threads.
+ * <p>
+ * When decompressing, JAG archives in index 0 are written as a directory of their entries, each named by its
+ * identifier in hexadecimal, and gzip files in the other indices are written decompressed, followed by their 2 byte
+ * version so that they can be packed again. Files in neither format are written as they are.
+ */
+public final class CacheExtractor {
+
+	/**
+	 * The size of an index entry in bytes.
+	 */
+	private static final int INDEX_ENTRY_SIZE = 6;
+
+	/**
+	 * The id of the index holding JAG archives.
+	 */
+	static final int ARCHIVE_INDEX = 0;
+
+	/**
+	 * The most chunks read ahead along a chain with a single read.
+	 */
+	private static final int READ_AHEAD_CHUNKS = 256;
+
+	/**
+	 * The directory in which the local file store files reside.
+	 */
+	private final Path fileStoreDirectory;
+
+	/**
+	 * The number of worker threads decompressing and writing files.
+	 */
+	private final int threads;
+
+	public CacheExtractor(Path fileStoreDirectory) {
+		this(fileStoreDirectory, Runtime.getRuntime().availableProcessors());
+	}
+
+	public CacheExtractor(Path fileStoreDirectory, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+		this.fileStoreDirectory = fileStoreDirectory;
+		this.threads = threads;
+	}
+
+	/**
+	 * Extracts every file of the file store.
+	 *
+	 * @param outputDirectory the directory to create the index directories in.
+	 * @param decompress whether to decompress archives and gzip files.
+	 * @param listener receives progress updates.
+	 * @return an {@link ExtractionReport} of the files extracted.
+	 * @throws IOException if the file store cannot be read or the output directory cannot be created.
+	 */
+	public ExtractionReport extract(Path outputDirectory, boolean decompress, ProgressListener listener) throws IOException {
+		long start = System.nanoTime();
+		Path dataPath = FileStore.validCachePath(fileStoreDirectory);
+
+		List<Location> locations = new ArrayList<>();
+		List<Path> indexPaths = FileStore.indexPaths(fileStoreDirectory).collect(Collectors.toList());
+		for (Path indexPath : indexPaths) {
+			int indexId = IndexDecoder.getIndexId(indexPath);
+			ReadOnlyBuffer indexBuffer = ReadOnlyBuffer.fromPath(indexPath);
+
+			for (int fileId = 0; indexBuffer.hasRemainingBytes(INDEX_ENTRY_SIZE); fileId++) {
+				int fileSize = indexBuffer.getUnsigned24BitInt();
+				int initialChunkId = indexBuffer.getUnsigned24BitInt();
+
+				if (initialChunkId > 0) {
+					locations.add(new Location(indexId, fileId, fileSize, initialChunkId));
+				}
+			}
+			Files.createDirectories(outputDirectory.resolve(Integer.toString(indexId)));
+		}
+		locations.sort(Comparator.comparingInt(location -> location.initialChunkId));
+
+		int total = locations.size();
+		AtomicInteger completed = new AtomicInteger();
+		AtomicInteger written = new AtomicInteger();
+		AtomicLong bytesRead = new AtomicLong();
+		AtomicLong bytesWritten = new AtomicLong();
+		Map<Long, String> failures = new ConcurrentSkipListMap<>();
+
+		// bounds the payloads held in memory while the workers fall behind the reader
+		Semaphore inFlight = new Semaphore(threads * 4);
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+
+		try (ChainReader reader = new ChainReader(dataPath, READ_AHEAD_CHUNKS)) {
+			for (Location location : locations) {
+				byte[] payload;
+				try {
+					payload = reader.readEntry(location.indexId, location.fileId, location.fileSize, location.initialChunkId).getData();
+				} catch (RuntimeException e) {
+					failures.put(location.key(), location + ": " + e.getMessage());
+					listener.progress(completed.incrementAndGet(), total, bytesWritten.get());
+					continue;
+				}
+				bytesRead.addAndGet(payload.length);
+
+				inFlight.acquireUninterruptibly();
+				workers.execute(() -> {
+					try {
+						bytesWritten.addAndGet(write(outputDirectory, location, payload, decompress));
+						written.incrementAndGet();
+					} catch (IOException | RuntimeException e) {
+						failures.put(location.key(), location + ": " + e.getMessage());
+					} finally {
+						inFlight.release();
+						listener.progress(completed.incrementAndGet(), total, bytesWritten.get());
+					}
+				});
+			}
+		} finally {
+			workers.shutdown();
+			try {
+				workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return new ExtractionReport(written.get(), bytesRead.get(), bytesWritten.get(), System.nanoTime() - start,
+				new ArrayList<>(failures.values()));
+	}
+
+	/**
+	 * Writes a single payload, decompressing it first if asked.
+	 *
+	 * @return the number of bytes written.
+	 */
+	private static long write(Path outputDirectory, Location location, byte[] payload, boolean decompress) throws IOException {
+		Path path = outputDirectory.resolve(Integer.toString(location.indexId)).resolve(Integer.toString(location.fileId));
+
+		Archive archive = decompress && location.indexId == ARCHIVE_INDEX ? decodeArchive(payload) : null;
+		if (archive != null) {
+			Files.createDirectories(path);
+
+			long written = 0;
+			for (ArchiveEntry entry : archive.getEntries()) {
+				byte[] data = entry.getBytes();
+				Files.write(path.resolve(String.format("%08x", entry.getIdentifier())), data);
+				written += data.length;
+			}
+			return written;
+		}
+
+		if (decompress && location.indexId != ARCHIVE_INDEX && GzipUtil.isGzip(payload)) {
+			byte[] data = GzipUtil.gunzipFile(payload);
+			byte[] file = Arrays.copyOf(data, data.length + GzipUtil.VERSION_TRAILER_SIZE);
+			System.arraycopy(payload, payload.length - GzipUtil.VERSION_TRAILER_SIZE, file, data.length,
+					GzipUtil.VERSION_TRAILER_SIZE);
+
+			Files.write(path, file);
+			return file.length;
+		}
+
+		Files.write(path, payload);
+		return payload.length;
+	}
+
+	/**
+	 * Decodes the given payload as a JAG archive.
+	 *
+	 * @return the archive, or <code>null</code> if the payload is not a valid archive.
+	 */
+	private static Archive decodeArchive(byte[] payload) {
+		try {
+			return ArchiveCodec.decode(payload);
+		} catch (IOException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * The size and first chunk of a file, as given by its index entry.
+	 */
+	private static final class Location {
+
+		private final int indexId;
+
+		private final int fileId;
+
+		private final int fileSize;
+
+		private final int initialChunkId;
+
+		private Location(int indexId, int fileId, int fileSize, int initialChunkId) {
+			this.indexId = indexId;
+			this.fileId = fileId;
+			this.fileSize = fileSize;
+			this.initialChunkId = initialChunkId;
+		}
+
+		/**
+		 * @return a key ordering locations by index, then file.
+		 */
+		private long key() {
+			return (long) indexId << 32 | fileId;
+		}
+
+		@Override
+		public String toString() {
+			return indexId + "/" + fileId;
+		}
+
+	}
+
+}
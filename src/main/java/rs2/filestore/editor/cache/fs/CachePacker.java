@@ -0,0 +1,331 @@
+package rs2.filestore.editor.cache.fs;
+
+import rs2.filestore.editor.cache.archive.Archive;
+import rs2.filestore.editor.cache.archive.ArchiveCodec;
+import rs2.filestore.editor.cache.archive.ArchiveEntry;
+import rs2.filestore.editor.cache.fs.index.ChunkEncoder;
+import rs2.filestore.editor.cache.fs.index.DataChunk;
+import rs2.filestore.editor.io.util.GzipUtil;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds a new local file store from a directory tree laid out as written by {@link CacheExtractor}: one directory per
+ * index, named by its id, holding one file per entry, named by its id. Inputs are read and compressed by a pool of
+ * worker threads, while the calling thread lays their chunks out contiguously, in index then file order, through a
+ * {@link ChunkEncoder} that writes them to the data file in one go each time its buffer fills. The index files are
+ * written once the data file is complete.
+ * <p>
+ * When compressing, a directory in index 0 is packed as a JAG archive of the files within it, each named by its
+ * identifier in hexadecimal, with every entry compressed on its own. A file in any other index is gzipped, apart from
+ * its final 2 bytes which are kept as the version trailer. Without compression every file is packed as it is.
+ */
+public final class CachePacker {
+
+	/**
+	 * The size of an index entry in bytes.
+	 */
+	private static final int INDEX_ENTRY_SIZE = 6;
+
+	/**
+	 * The number of chunks held by the encoder's buffer.
+	 */
+	private static final int BUFFER_CHUNKS = 2048;
+
+	/**
+	 * The largest chunk position an index entry or chunk header can hold.
+	 */
+	private static final int MAX_CHUNK_POSITION = (1 << 24) - 1;
+
+	/**
+	 * The largest file id a chunk header can hold.
+	 */
+	private static final int MAX_FILE_ID = 0xFFFF;
+
+	/**
+	 * The largest file size an index entry can hold.
+	 */
+	private static final int MAX_FILE_SIZE = (1 << 24) - 1;
+
+	/**
+	 * The zeroes written as the first chunk.
+	 */
+	private static final byte[] EMPTY_BODY = new byte[DataChunk.DATA_CHUNK_BODY_SIZE];
+
+	/**
+	 * The number of worker threads reading and compressing files.
+	 */
+	private final int threads;
+
+	public CachePacker() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public CachePacker(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * Packs every file under the input directory into a new file store, replacing any file store already in the
+	 * output directory.
+	 *
+	 * @param inputDirectory the directory holding one directory per index.
+	 * @param outputDirectory the directory to write the data and index files to.
+	 * @param compress whether to compress archives and gzip files.
+	 * @param listener receives progress updates.
+	 * @return a {@link PackReport} of the files packed.
+	 * @throws IOException if the input directory cannot be listed, is not laid out as expected, or the file store
+	 * cannot be written.
+	 */
+	public PackReport pack(Path inputDirectory, Path outputDirectory, boolean compress, ProgressListener listener)
+			throws IOException {
+		long start = System.nanoTime();
+		List<Input> inputs = listInputs(inputDirectory);
+		int total = inputs.size();
+
+		int[] lengths = new int[inputs.stream().mapToInt(input -> input.indexId).max().orElse(-1) + 1];
+		for (Input input : inputs) {
+			lengths[input.indexId] = Math.max(lengths[input.indexId], input.fileId + 1);
+		}
+		byte[][] indices = new byte[lengths.length][];
+		for (int indexId = 0; indexId < indices.length; indexId++) {
+			indices[indexId] = new byte[lengths[indexId] * INDEX_ENTRY_SIZE];
+		}
+
+		Files.createDirectories(outputDirectory);
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		Deque<Future<byte[]>> pending = new ArrayDeque<>();
+		List<String> failures = new ArrayList<>();
+
+		int packed = 0;
+		long bytesRead = 0;
+		long bytesWritten = 0;
+		int position = 1;
+
+		try (FileChannel channel = FileChannel.open(outputDirectory.resolve("main_file_cache.dat"),
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			// every chunk is padded out, as the file's final chunks have always been written whole
+			ChunkEncoder encoder = new ChunkEncoder(channel, BUFFER_CHUNKS, true);
+
+			// the first chunk is never part of a chain, as position 0 marks an empty entry, so is left as zeroes
+			encoder.write(0, 0, 0, 0, 0, EMPTY_BODY, 0, EMPTY_BODY.length);
+
+			int submitted = 0;
+			for (int completed = 0; completed < total; completed++) {
+				// keeps a bounded number of inputs compressing ahead of the writer
+				while (submitted < total && pending.size() < threads * 4) {
+					Input input = inputs.get(submitted++);
+					pending.add(workers.submit(() -> read(input, compress)));
+				}
+
+				Input input = inputs.get(completed);
+				byte[] payload;
+				try {
+					payload = pending.remove().get();
+				} catch (ExecutionException e) {
+					failures.add(input + ": " + e.getCause().getMessage());
+					listener.progress(completed + 1, total, bytesWritten);
+					continue;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while packing", e);
+				}
+
+				if (payload.length > MAX_FILE_SIZE) {
+					failures.add(input + ": " + payload.length + " bytes exceeds the largest file size of " + MAX_FILE_SIZE);
+					listener.progress(completed + 1, total, bytesWritten);
+					continue;
+				}
+
+				int chunkCount = DataChunk.chunkCount(payload.length);
+				if (position + chunkCount - 1 > MAX_CHUNK_POSITION) {
+					throw new IOException("File store exceeds " + MAX_CHUNK_POSITION + " chunks at " + input);
+				}
+
+				writeIndexEntry(indices[input.indexId], input.fileId, payload.length, position);
+				for (int chunkId = 0; chunkId < chunkCount; chunkId++, position++) {
+					int next = chunkId + 1 == chunkCount ? 0 : position + 1;
+					int offset = chunkId * DataChunk.DATA_CHUNK_BODY_SIZE;
+					int length = Math.min(DataChunk.DATA_CHUNK_BODY_SIZE, payload.length - offset);
+
+					encoder.write(position, input.fileId, chunkId, next, input.indexId + 1, payload, offset, length);
+				}
+
+				packed++;
+				bytesRead += input.size;
+				bytesWritten += payload.length;
+				listener.progress(completed + 1, total, bytesWritten);
+			}
+			encoder.flush();
+		} finally {
+			workers.shutdownNow();
+		}
+
+		for (int indexId = 0; indexId < indices.length; indexId++) {
+			Files.write(outputDirectory.resolve("main_file_cache.idx" + indexId), indices[indexId]);
+		}
+
+		return new PackReport(packed, bytesRead, bytesWritten, position, System.nanoTime() - start, failures);
+	}
+
+	/**
+	 * Lists the inputs under the given directory in index, then file, order.
+	 */
+	private static List<Input> listInputs(Path inputDirectory) throws IOException {
+		List<Input> inputs = new ArrayList<>();
+
+		for (Path indexDirectory : list(inputDirectory)) {
+			int indexId = parseId(indexDirectory, 254);
+			if (!Files.isDirectory(indexDirectory)) {
+				throw new IOException(indexDirectory + ": expected a directory of index " + indexId);
+			}
+
+			for (Path file : list(indexDirectory)) {
+				long size = Files.isDirectory(file) ? sizeOf(file) : Files.size(file);
+				inputs.add(new Input(indexId, parseId(file, MAX_FILE_ID), file, size));
+			}
+		}
+
+		inputs.sort(Comparator.comparingInt((Input input) -> input.indexId).thenComparingInt(input -> input.fileId));
+		return inputs;
+	}
+
+	private static List<Path> list(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.list(directory)) {
+			return paths.collect(Collectors.toList());
+		}
+	}
+
+	private static long sizeOf(Path directory) throws IOException {
+		long size = 0;
+		for (Path file : list(directory)) {
+			size += Files.size(file);
+		}
+		return size;
+	}
+
+	private static int parseId(Path path, int max) throws IOException {
+		String name = path.getFileName().toString();
+		try {
+			int id = Integer.parseInt(name);
+			if (id >= 0 && id <= max) {
+				return id;
+			}
+		} catch (NumberFormatException e) {
+			// fall through
+		}
+		throw new IOException(path + ": expected a name between 0 and " + max);
+	}
+
+	/**
+	 * Reads a single input, compressing it if asked.
+	 *
+	 * @return the payload to pack.
+	 */
+	private static byte[] read(Input input, boolean compress) throws IOException {
+		if (Files.isDirectory(input.path)) {
+			if (!compress || input.indexId != CacheExtractor.ARCHIVE_INDEX) {
+				throw new IOException("Archive directories are only packed with compression, in index "
+						+ CacheExtractor.ARCHIVE_INDEX);
+			}
+			return packArchive(input.path);
+		}
+
+		byte[] contents = Files.readAllBytes(input.path);
+		if (!compress || input.indexId == CacheExtractor.ARCHIVE_INDEX) {
+			return contents;
+		}
+		if (contents.length < GzipUtil.VERSION_TRAILER_SIZE) {
+			throw new IOException("File is missing its version trailer");
+		}
+
+		int length = contents.length - GzipUtil.VERSION_TRAILER_SIZE;
+		byte[] compressed = GzipUtil.gzip(Arrays.copyOf(contents, length));
+		byte[] payload = Arrays.copyOf(compressed, compressed.length + GzipUtil.VERSION_TRAILER_SIZE);
+		System.arraycopy(contents, length, payload, compressed.length, GzipUtil.VERSION_TRAILER_SIZE);
+		return payload;
+	}
+
+	/**
+	 * Encodes the files of a directory as a JAG archive with individually compressed entries.
+	 */
+	private static byte[] packArchive(Path directory) throws IOException {
+		List<Path> files = list(directory);
+		files.sort(Comparator.naturalOrder());
+
+		LinkedHashSet<ArchiveEntry> entries = new LinkedHashSet<>(files.size());
+		for (Path file : files) {
+			String name = file.getFileName().toString();
+			int identifier;
+			try {
+				identifier = Integer.parseUnsignedInt(name, 16);
+			} catch (NumberFormatException e) {
+				throw new IOException(file + ": expected an entry identifier in hexadecimal", e);
+			}
+			entries.add(new ArchiveEntry(identifier, Files.readAllBytes(file)));
+		}
+
+		return ArchiveCodec.encode(new Archive(entries, false, 0, 0));
+	}
+
+	private static void writeIndexEntry(byte[] index, int fileId, int fileSize, int position) {
+		int offset = fileId * INDEX_ENTRY_SIZE;
+		index[offset] = (byte) (fileSize >> 16);
+		index[offset + 1] = (byte) (fileSize >> 8);
+		index[offset + 2] = (byte) fileSize;
+		index[offset + 3] = (byte) (position >> 16);
+		index[offset + 4] = (byte) (position >> 8);
+		index[offset + 5] = (byte) position;
+	}
+
+	/**
+	 * A file or archive directory to pack, and where it belongs.
+	 */
+	private static final class Input {
+
+		private final int indexId;
+
+		private final int fileId;
+
+		private final Path path;
+
+		/**
+		 * The size of the file, or the total size of the files in an archive directory.
+		 */
+		private final long size;
+
+		private Input(int indexId, int fileId, Path path, long size) {
+			this.indexId = indexId;
+			this.fileId = fileId;
+			this.path = path;
+			this.size = size;
+		}
+
+		@Override
+		public String toString() {
+			return indexId + "/" + fileId;
+		}
+
+	}
+
+}
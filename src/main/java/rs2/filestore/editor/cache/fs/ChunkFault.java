@@ -0,0 +1,104 @@
+package rs2.filestore.editor.cache.fs;
+
+/**
+ * Describes a problem found with a chunk, or chain of chunks, while scrubbing a {@link FileStore}.
+ */
+public final class ChunkFault {
+
+	/**
+	 * The kinds of fault a scrub can detect.
+	 */
+	public enum Type {
+		/**
+		 * The index file is not a whole number of entries long.
+		 */
+		TRUNCATED_INDEX,
+		/**
+		 * A chunk position lies outside of the data file.
+		 */
+		INVALID_POSITION,
+		/**
+		 * A chunk header names a different file.
+		 */
+		FILE_ID_MISMATCH,
+		/**
+		 * A chunk header has a different position in the chain.
+		 */
+		CHUNK_ID_MISMATCH,
+		/**
+		 * A chunk header names a different index.
+		 */
+		DATA_TYPE_MISMATCH,
+		/**
+		 * A chain ends before covering the size of its file.
+		 */
+		CHAIN_TOO_SHORT,
+		/**
+		 * A chain continues past the size of its file.
+		 */
+		CHAIN_TOO_LONG,
+		/**
+		 * A chunk is claimed by more than one chain.
+		 */
+		CROSS_LINKED
+	}
+
+	/**
+	 * The id of the index the fault was found in.
+	 */
+	private final int indexId;
+
+	/**
+	 * The id of the file the fault was found in, or <code>-1</code> for faults of the whole index.
+	 */
+	private final int fileId;
+
+	/**
+	 * The position of the faulty chunk in the data file.
+	 */
+	private final int chunkPosition;
+
+	/**
+	 * The kind of fault.
+	 */
+	private final Type type;
+
+	/**
+	 * A description of the fault.
+	 */
+	private final String detail;
+
+	public ChunkFault(int indexId, int fileId, int chunkPosition, Type type, String detail) {
+		this.indexId = indexId;
+		this.fileId = fileId;
+		this.chunkPosition = chunkPosition;
+		this.type = type;
+		this.detail = detail;
+	}
+
+	public int getIndexId() {
+		return indexId;
+	}
+
+	public int getFileId() {
+		return fileId;
+	}
+
+	public int getChunkPosition() {
+		return chunkPosition;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getDetail() {
+		return detail;
+	}
+
+	@Override
+	public String toString() {
+		return indexId + " [" + fileId + "], chunk " + chunkPosition + ": " + type + " (" + detail + ")";
+	}
+
+}
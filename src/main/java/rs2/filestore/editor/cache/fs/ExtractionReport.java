@@ -0,0 +1,86 @@
+package rs2.filestore.editor.cache.fs;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The result of extracting a file store with a {@link CacheExtractor}.
+ */
+public final class ExtractionReport {
+
+	/**
+	 * The number of files written.
+	 */
+	private final int fileCount;
+
+	/**
+	 * The number of payload bytes read from the data file.
+	 */
+	private final long bytesRead;
+
+	/**
+	 * The number of bytes written to disk, after any decompression.
+	 */
+	private final long bytesWritten;
+
+	/**
+	 * The time taken by the extraction, in nanoseconds.
+	 */
+	private final long elapsedNanos;
+
+	/**
+	 * A description of each file that could not be extracted, ordered by index and file.
+	 */
+	private final List<String> failures;
+
+	public ExtractionReport(int fileCount, long bytesRead, long bytesWritten, long elapsedNanos, List<String> failures) {
+		this.fileCount = fileCount;
+		this.bytesRead = bytesRead;
+		this.bytesWritten = bytesWritten;
+		this.elapsedNanos = elapsedNanos;
+		this.failures = failures;
+	}
+
+	public int getFileCount() {
+		return fileCount;
+	}
+
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public List<String> getFailures() {
+		return Collections.unmodifiableList(failures);
+	}
+
+	/**
+	 * @return the payload bytes read from the data file per second.
+	 */
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : bytesRead * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+
+	/**
+	 * @return <code>true</code> if every file was extracted.
+	 */
+	public boolean isComplete() {
+		return failures.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("extracted %d files, %d bytes read, %d bytes written in %d ms (%.1f MB/s), %d failures",
+				fileCount, bytesRead, bytesWritten, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+				getThroughput() / (1024 * 1024), failures.size());
+	}
+
+}
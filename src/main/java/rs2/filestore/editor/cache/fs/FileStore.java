@@ -1,39 +1,142 @@
 package rs2.filestore.editor.cache.fs;
 
+import rs2.filestore.editor.cache.fs.index.ChainTable;
+import rs2.filestore.editor.cache.fs.index.CompactIndex;
 import rs2.filestore.editor.cache.fs.index.Index;
 import rs2.filestore.editor.cache.fs.index.IndexDecoder;
+import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
 import rs2.filestore.editor.io.ReadOnlyBuffer;
+import rs2.filestore.editor.metrics.Metrics;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
  * Represents a JaGeX local file store.
  */
-public final class FileStore {
+public final class FileStore implements IndexProvider {
 
-	private static final String INDEX_FILE_NAME_REGEX = "main_file_cache.idx\\d$";
+	private static final String INDEX_FILE_NAME_REGEX = "main_file_cache\\.idx\\d+$";
 
 	/**
-	 * The indices in this file store.
+	 * The indices in this file store, by id. Slots of indices that have not yet been opened, or that do not exist,
+	 * are <code>null</code>.
 	 */
-	private final Index[] indices;
+	private final AtomicReferenceArray<Index> indices;
+
+	/**
+	 * The paths to the index files not yet opened, by id, or <code>null</code> if every index was decoded on load.
+	 */
+	private final Path[] indexPaths;
+
+	/**
+	 * The locks guarding the opening of each index, or <code>null</code> if every index was decoded on load.
+	 */
+	private final Object[] indexLocks;
+
+	/**
+	 * The decoder used to open indices on demand, or <code>null</code> if every index was decoded on load.
+	 */
+	private final IndexDecoder indexDecoder;
 	
 	private FileStore(Index[] indices) {
-		this.indices = indices;
+		this.indices = new AtomicReferenceArray<>(indices);
+		this.indexPaths = null;
+		this.indexLocks = null;
+		this.indexDecoder = null;
+	}
+
+	private FileStore(Path[] indexPaths, IndexDecoder indexDecoder) {
+		this.indices = new AtomicReferenceArray<>(indexPaths.length);
+		this.indexPaths = indexPaths;
+		this.indexLocks = new Object[indexPaths.length];
+		this.indexDecoder = indexDecoder;
+
+		for (int index = 0; index < indexLocks.length; index++) {
+			indexLocks[index] = new Object();
+		}
 	}
 
 	/**
-	 * Gets the index at the specified index from FileStore#indices.
+	 * Gets the index with the specified id. If this file store was opened with {@link #open(Path)}, the index file is
+	 * decoded on first use; concurrent callers wait for, and share, a single decode.
 	 *
-	 * @param index
-	 * @return
+	 * @param index the id of the index.
+	 * @return the {@link Index}, or <code>null</code> if there is no index file with that id.
 	 */
+	@Override
 	public Index getIndex(int index) {
-		return indices[index];
+		if (index < 0 || index >= indices.length()) {
+			return null;
+		}
+
+		Index decoded = indices.get(index);
+		if (decoded != null || indexPaths == null || indexPaths[index] == null) {
+			return decoded;
+		}
+
+		synchronized (indexLocks[index]) {
+			decoded = indices.get(index);
+			if (decoded == null) {
+				decoded = indexDecoder.decode(index, ReadOnlyBuffer.fromPath(indexPaths[index]));
+				indices.set(index, decoded);
+			}
+			return decoded;
+		}
+	}
+
+	/**
+	 * Replaces the index with the specified id. Readers see either the old or the new index, without waiting.
+	 *
+	 * @param index the id of the index.
+	 * @param replacement the new index.
+	 */
+	void replaceIndex(int index, Index replacement) {
+		indices.set(index, replacement);
+	}
+
+	/**
+	 * Determines whether the index with the specified id has been decoded. Indices are always decoded unless this
+	 * file store was opened with {@link #open(Path)}.
+	 *
+	 * @param index the id of the index.
+	 * @return <code>true</code> if the index has been decoded.
+	 */
+	public boolean isIndexOpen(int index) {
+		return index >= 0 && index < indices.length() && indices.get(index) != null;
+	}
+
+	/**
+	 * Determines whether every entry of this file store was decoded when it was loaded, as it is by
+	 * {@link #load(Path)}. Such entries are held in memory and stay the same instances until they are replaced, where
+	 * a {@link CompactIndex} decodes an entry afresh each time it is requested.
+	 *
+	 * @return <code>true</code> if every index is open and none is a {@link CompactIndex}.
+	 */
+	boolean isDecoded() {
+		if (indexPaths != null) {
+			return false;
+		}
+		for (int index = 0; index < indices.length(); index++) {
+			if (indices.get(index) instanceof CompactIndex) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of indices in this file store.
+	 */
+	@Override
+	public int getIndexCount() {
+		return indices.length();
 	}
 	
 	/**
@@ -44,18 +147,132 @@ public final class FileStore {
 	 * @throws IOException where the given fileStoreDirectory is not a directory.
 	 */
 	public static FileStore load(Path fileStoreDirectory) throws IOException {
+		return load(fileStoreDirectory, false);
+	}
+
+	/**
+	 * Validates the given fileStoreDirectory and then gets all file store data from the files in the directory, if valid.
+	 * In tolerant mode, entries whose chunk chains are broken are loaded as {@link IndexEntry#EMPTY_ENTRY} rather than
+	 * failing the whole load; use {@link FileStoreScrubber} to find out which entries those are.
+	 *
+	 * @param fileStoreDirectory the directory in which the local file store files reside.
+	 * @param tolerant whether to skip broken entries rather than fail.
+	 * @return a {@link FileStore} instance containing data for the local file store.
+	 * @throws IOException where the given fileStoreDirectory is not a directory.
+	 */
+	public static FileStore load(Path fileStoreDirectory, boolean tolerant) throws IOException {
+		long start = System.nanoTime();
 		Path dataPath = validCachePath(fileStoreDirectory);
 
 		ReadOnlyBuffer dataBuffer = ReadOnlyBuffer.fromPath(dataPath);
-		IndexDecoder indexDecoder = new IndexDecoder(dataBuffer);
+		IndexDecoder indexDecoder = new IndexDecoder(dataBuffer, tolerant);
+
+		Index[] indices = byId(indexPaths(fileStoreDirectory).map(indexDecoder::decode));
 
-		Stream<Index> indices = Files
+		Metrics.get().fileStoreLoaded(indices.length, System.nanoTime() - start);
+		return new FileStore(indices);
+	}
+
+	/**
+	 * Validates the given fileStoreDirectory and then loads each index as a {@link CompactIndex}. Only the index files
+	 * are decoded; the chunk chain of an entry is followed when the entry is requested.
+	 *
+	 * @param fileStoreDirectory the directory in which the local file store files reside.
+	 * @return a {@link FileStore} instance containing data for the local file store.
+	 * @throws IOException where the given fileStoreDirectory is not a directory.
+	 */
+	public static FileStore loadCompact(Path fileStoreDirectory) throws IOException {
+		long start = System.nanoTime();
+		Path dataPath = validCachePath(fileStoreDirectory);
+
+		IndexDecoder indexDecoder = new IndexDecoder(ReadOnlyBuffer.fromPath(dataPath));
+		Index[] indices = byId(indexPaths(fileStoreDirectory).map(indexDecoder::decodeCompact));
+
+		Metrics.get().fileStoreLoaded(indices.length, System.nanoTime() - start);
+		return new FileStore(indices);
+	}
+
+	/**
+	 * Validates the given fileStoreDirectory and loads it using its {@link FileStoreSnapshot}, if the snapshot matches
+	 * the current data and index files. Each index is then a {@link CompactIndex} reading entries from their resolved
+	 * chunk positions, so no chunk chain is followed, and the data file is mapped into memory rather than read, so only
+	 * the chunks of the entries requested are ever touched. Otherwise the file store is loaded with {@link #load(Path)}
+	 * and a new snapshot is written for the next start.
+	 *
+	 * @param fileStoreDirectory the directory in which the local file store files reside.
+	 * @return a {@link FileStore} instance containing data for the local file store.
+	 * @throws IOException where the given fileStoreDirectory is not a directory.
+	 */
+	public static FileStore loadWithSnapshot(Path fileStoreDirectory) throws IOException {
+		long start = System.nanoTime();
+		FileStoreSnapshot snapshot = FileStoreSnapshot.read(fileStoreDirectory);
+
+		if (snapshot == null) {
+			FileStore fileStore = load(fileStoreDirectory);
+			FileStoreSnapshot.write(fileStoreDirectory, fileStore);
+			return fileStore;
+		}
+
+		IndexDecoder indexDecoder = new IndexDecoder(ReadOnlyBuffer.map(validCachePath(fileStoreDirectory)));
+		Index[] indices = new Index[snapshot.getIndexCount()];
+		for (int index = 0; index < indices.length; index++) {
+			ChainTable chains = snapshot.getChains(index);
+			if (chains != null) {
+				indices[index] = indexDecoder.decodeCompact(index, chains);
+			}
+		}
+
+		Metrics.get().fileStoreLoaded(indices.length, System.nanoTime() - start);
+		return new FileStore(indices);
+	}
+
+	/**
+	 * Validates the given fileStoreDirectory and reads the data file, but does not decode any index until it is first
+	 * requested with {@link #getIndex(int)}.
+	 *
+	 * @param fileStoreDirectory the directory in which the local file store files reside.
+	 * @return a {@link FileStore} instance which opens indices on demand.
+	 * @throws IOException where the given fileStoreDirectory is not a directory.
+	 */
+	public static FileStore open(Path fileStoreDirectory) throws IOException {
+		Path dataPath = validCachePath(fileStoreDirectory);
+
+		List<Path> paths = indexPaths(fileStoreDirectory).collect(Collectors.toList());
+		Path[] indexPaths = new Path[paths.stream().mapToInt(IndexDecoder::getIndexId).max().orElse(-1) + 1];
+		for (Path path : paths) {
+			indexPaths[IndexDecoder.getIndexId(path)] = path;
+		}
+
+		return new FileStore(indexPaths, new IndexDecoder(ReadOnlyBuffer.fromPath(dataPath)));
+	}
+
+	/**
+	 * Places the given indices into an array at their ids.
+	 *
+	 * @param indices the indices.
+	 * @return an array of the indices, by id, with <code>null</code> for missing ids.
+	 */
+	private static Index[] byId(Stream<? extends Index> indices) {
+		List<Index> list = indices.collect(Collectors.toList());
+		Index[] byId = new Index[list.stream().mapToInt(Index::getId).max().orElse(-1) + 1];
+		for (Index index : list) {
+			byId[index.getId()] = index;
+		}
+		return byId;
+	}
+
+	/**
+	 * Lists the index files in the given file store directory, in order.
+	 *
+	 * @param fileStoreDirectory the directory in which the local file store files reside.
+	 * @return a {@link Stream} of paths to the index files.
+	 * @throws IOException if the directory cannot be listed.
+	 */
+	static Stream<Path> indexPaths(Path fileStoreDirectory) throws IOException {
+		return Files
 				.list(fileStoreDirectory)
 				.sorted()
-				.filter(p -> p.getFileName().toString().matches(INDEX_FILE_NAME_REGEX))
-				.map(indexDecoder::decode);
-		
-		return new FileStore(indices.toArray(Index[]::new));
+				.filter(p -> p.getFileName().toString().matches(INDEX_FILE_NAME_REGEX));
 	}
 
 	/**
@@ -65,7 +282,7 @@ public final class FileStore {
 	 * @return {@link Path} to the data file of the file store.
 	 * @throws IOException
 	 */
-	private static Path validCachePath(Path fileStoreDirectory) throws IOException {
+	static Path validCachePath(Path fileStoreDirectory) throws IOException {
 		if (!Files.isDirectory(fileStoreDirectory)) {
 			throw new IOException(fileStoreDirectory.toString() + ": Invalid path specified, must be a directory");
 		}
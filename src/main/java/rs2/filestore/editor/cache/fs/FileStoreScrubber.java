@@ -0,0 +1,182 @@
+package rs2.filestore.editor.cache.fs;
+
+import rs2.filestore.editor.cache.fs.index.DataChunk;
+import rs2.filestore.editor.cache.fs.index.IndexDecoder;
+import rs2.filestore.editor.cache.fs.index.InvalidChunkException;
+import rs2.filestore.editor.io.ReadOnlyBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Walks every chunk chain of a local file store, across multiple threads, validating each chunk header and chain
+ * length. Unlike {@link FileStore#load(Path)}, faults are collected into a {@link ScrubReport} rather than aborting
+ * at the first one. A chain is broken by the same rules the loader applies, see
+ * {@link DataChunk#readHeader(ByteBuffer, int, int, int, int, int, long)}, and an entry whose first chunk lies
+ * outside of the data file is empty, as it is when loaded. Chunks claimed by more than one chain are also reported.
+ * <p>
+ * Each chain reports at most one header fault. The chunks the broken chain still links to are claimed for its entry
+ * without being checked, so that they are not counted again. Chunks in use but claimed by no chain, such as those
+ * left behind by {@link FileStoreWriter#remove(int, int)} or a shrinking {@link FileStoreWriter#put(int, int, byte[])},
+ * are counted as reclaimable space rather than reported as faults.
+ */
+public final class FileStoreScrubber {
+
+	/**
+	 * The size of an index entry in bytes.
+	 */
+	private static final int INDEX_ENTRY_SIZE = 6;
+
+	/**
+	 * The directory in which the local file store files reside.
+	 */
+	private final Path fileStoreDirectory;
+
+	public FileStoreScrubber(Path fileStoreDirectory) {
+		this.fileStoreDirectory = fileStoreDirectory;
+	}
+
+	/**
+	 * Scrubs every index of the file store.
+	 *
+	 * @return a {@link ScrubReport} of the faults found.
+	 * @throws IOException if the file store cannot be read.
+	 */
+	public ScrubReport scrub() throws IOException {
+		ByteBuffer dataBuffer = ReadOnlyBuffer.fromPath(FileStore.validCachePath(fileStoreDirectory)).asByteBuffer();
+		int chunkCount = (dataBuffer.limit() + DataChunk.DATA_CHUNK_SIZE - 1) / DataChunk.DATA_CHUNK_SIZE;
+
+		AtomicIntegerArray owners = new AtomicIntegerArray(chunkCount);
+		Queue<ChunkFault> faults = new ConcurrentLinkedQueue<>();
+		AtomicInteger scannedEntries = new AtomicInteger();
+		Queue<int[]> brokenTails = new ConcurrentLinkedQueue<>();
+
+		List<Path> indexPaths = FileStore.indexPaths(fileStoreDirectory).collect(Collectors.toList());
+		for (Path indexPath : indexPaths) {
+			int indexId = IndexDecoder.getIndexId(indexPath);
+			ReadOnlyBuffer indexBuffer = ReadOnlyBuffer.fromPath(indexPath);
+
+			if (indexBuffer.length() % INDEX_ENTRY_SIZE != 0) {
+				faults.add(new ChunkFault(indexId, -1, -1, ChunkFault.Type.TRUNCATED_INDEX,
+						indexBuffer.length() + " bytes is not a multiple of " + INDEX_ENTRY_SIZE));
+			}
+
+			IntStream.range(0, indexBuffer.length() / INDEX_ENTRY_SIZE).parallel().forEach(fileId -> {
+				ReadOnlyBuffer entryBuffer = indexBuffer.duplicate();
+				entryBuffer.seek(fileId * INDEX_ENTRY_SIZE);
+
+				int fileSize = entryBuffer.getUnsigned24BitInt();
+				int initialChunkId = entryBuffer.getUnsigned24BitInt();
+
+				if (!DataChunk.isValidPosition(initialChunkId, dataBuffer.limit())) {
+					return;
+				}
+				scannedEntries.incrementAndGet();
+				scrubChain(dataBuffer, owners, faults, brokenTails, indexId, fileId, fileSize, initialChunkId);
+			});
+		}
+
+		// only once every intact chain has claimed its chunks, so a broken chain can't take them
+		for (int[] tail : brokenTails) {
+			claimTail(dataBuffer, owners, tail[0], tail[1]);
+		}
+
+		int reclaimableChunks = (int) IntStream.range(1, chunkCount).parallel()
+				.filter(position -> owners.get(position) == 0 && isInUse(dataBuffer, position))
+				.count();
+
+		List<ChunkFault> sorted = new ArrayList<>(faults);
+		sorted.sort(Comparator.comparingInt(ChunkFault::getIndexId)
+				.thenComparingInt(ChunkFault::getFileId)
+				.thenComparingInt(ChunkFault::getChunkPosition));
+
+		return new ScrubReport(sorted, scannedEntries.get(), chunkCount, reclaimableChunks);
+	}
+
+	/**
+	 * Walks the chain of a single entry, claiming each chunk it visits, and stops at the first fault. If the fault is
+	 * in a chunk header that still links onwards, the rest of the chain is queued to be claimed by
+	 * {@link #claimTail(ByteBuffer, AtomicIntegerArray, int, int)}.
+	 */
+	private static void scrubChain(ByteBuffer dataBuffer, AtomicIntegerArray owners, Queue<ChunkFault> faults,
+			Queue<int[]> brokenTails, int indexId, int fileId, int fileSize, int initialChunkId) {
+		int chunkCount = DataChunk.chunkCount(fileSize);
+		int owner = owner(indexId, fileId);
+
+		for (int chunkId = 0, position = initialChunkId; ; chunkId++) {
+			if (!owners.compareAndSet(position, 0, owner)) {
+				int other = owners.get(position);
+				if (other == owner) {
+					faults.add(new ChunkFault(indexId, fileId, position, ChunkFault.Type.CROSS_LINKED, "chain loops back on itself"));
+				} else {
+					faults.add(new ChunkFault(indexId, fileId, position, ChunkFault.Type.CROSS_LINKED,
+							"also claimed by " + ownerIndexId(other) + " [" + ownerFileId(other) + "]"));
+					faults.add(new ChunkFault(ownerIndexId(other), ownerFileId(other), position, ChunkFault.Type.CROSS_LINKED,
+							"also claimed by " + indexId + " [" + fileId + "]"));
+				}
+				return;
+			}
+
+			int offset = position * DataChunk.DATA_CHUNK_SIZE;
+			int nextChunkId;
+			try {
+				nextChunkId = DataChunk.readHeader(dataBuffer, offset, indexId, fileId, chunkId, chunkCount, dataBuffer.limit());
+			} catch (InvalidChunkException e) {
+				faults.add(new ChunkFault(indexId, fileId, position, e.getType(), e.getMessage()));
+				nextChunkId = DataChunk.getNextChunkId(dataBuffer, offset);
+				if (DataChunk.isValidPosition(nextChunkId, dataBuffer.limit())) {
+					brokenTails.add(new int[] { owner, nextChunkId });
+				}
+				return;
+			}
+
+			if (nextChunkId == 0) {
+				return;
+			}
+			position = nextChunkId;
+		}
+	}
+
+	/**
+	 * Claims the chunks a broken chain still links to for its entry, following next chunk ids until the chain ends,
+	 * leaves the data file or reaches a chunk that is already claimed.
+	 */
+	private static void claimTail(ByteBuffer dataBuffer, AtomicIntegerArray owners, int owner, int position) {
+		while (DataChunk.isValidPosition(position, dataBuffer.limit()) && owners.compareAndSet(position, 0, owner)) {
+			position = DataChunk.getNextChunkId(dataBuffer, position * DataChunk.DATA_CHUNK_SIZE);
+		}
+	}
+
+	/**
+	 * Determines whether the chunk at the given position has a non-zero header.
+	 */
+	private static boolean isInUse(ByteBuffer dataBuffer, int position) {
+		if (!DataChunk.isValidPosition(position, dataBuffer.limit())) {
+			return false;
+		}
+		return dataBuffer.getLong(position * DataChunk.DATA_CHUNK_SIZE) != 0;
+	}
+
+	private static int owner(int indexId, int fileId) {
+		return ((indexId << 24) | fileId) + 1;
+	}
+
+	private static int ownerIndexId(int owner) {
+		return (owner - 1) >>> 24;
+	}
+
+	private static int ownerFileId(int owner) {
+		return (owner - 1) & 0xFFFFFF;
+	}
+
+}
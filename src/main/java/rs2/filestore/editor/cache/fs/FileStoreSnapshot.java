@@ -0,0 +1,190 @@
+package rs2.filestore.editor.cache.fs;
+
+import rs2.filestore.editor.cache.fs.index.ChainTable;
+import rs2.filestore.editor.cache.fs.index.Index;
+import rs2.filestore.editor.cache.fs.index.IndexDecoder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A sidecar file holding the resolved {@link ChainTable} of every index in a file store, so that a warm start need not
+ * follow any chunk chains. The snapshot is keyed by the size and last modified time of the data file and of every index
+ * file; if any of them differ the snapshot is ignored.
+ */
+public final class FileStoreSnapshot {
+
+	/**
+	 * The name of the snapshot file, stored alongside the data file.
+	 */
+	public static final String SNAPSHOT_FILE_NAME = "main_file_cache.snapshot";
+
+	/**
+	 * Identifies a snapshot file, "RS2S".
+	 */
+	private static final int MAGIC = 0x52533253;
+
+	/**
+	 * The version of the snapshot format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The chain tables, by index id, with <code>null</code> for missing ids.
+	 */
+	private final ChainTable[] chains;
+
+	private FileStoreSnapshot(ChainTable[] chains) {
+		this.chains = chains;
+	}
+
+	/**
+	 * Gets the chain table of the index with the given id.
+	 *
+	 * @param indexId the id of the index.
+	 * @return the {@link ChainTable}, or <code>null</code> if there is no such index.
+	 */
+	public ChainTable getChains(int indexId) {
+		return chains[indexId];
+	}
+
+	/**
+	 * @return the number of index slots in this snapshot.
+	 */
+	public int getIndexCount() {
+		return chains.length;
+	}
+
+	/**
+	 * Writes a snapshot of the given file store into the file store directory, replacing any previous snapshot.
+	 *
+	 * @param fileStoreDirectory the directory in which the local file store files reside.
+	 * @param fileStore the file store loaded from the directory.
+	 * @throws IOException if the snapshot cannot be written.
+	 */
+	public static void write(Path fileStoreDirectory, FileStore fileStore) throws IOException {
+		Path dataPath = FileStore.validCachePath(fileStoreDirectory);
+		List<Path> indexPaths = FileStore.indexPaths(fileStoreDirectory).collect(Collectors.toList());
+		Path temporary = Files.createTempFile(fileStoreDirectory, SNAPSHOT_FILE_NAME, ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeKey(out, dataPath);
+			out.writeInt(indexPaths.size());
+
+			for (Path indexPath : indexPaths) {
+				int indexId = IndexDecoder.getIndexId(indexPath);
+				Index index = fileStore.getIndex(indexId);
+				ChainTable table = ChainTable.of(index);
+
+				out.writeInt(indexId);
+				writeKey(out, indexPath);
+				out.writeInt(table.size());
+				out.writeInt(table.getPositionCount());
+				for (int fileSize : table.getFileSizes()) {
+					out.writeInt(fileSize);
+				}
+				for (int offset : table.getOffsets()) {
+					out.writeInt(offset);
+				}
+				IntBuffer positions = table.getPositions();
+				while (positions.hasRemaining()) {
+					out.writeInt(positions.get());
+				}
+			}
+		}
+
+		Files.move(temporary, fileStoreDirectory.resolve(SNAPSHOT_FILE_NAME), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Maps the snapshot in the file store directory, if there is one and it matches the current data and index files.
+	 * The chunk positions are not copied out of the mapping.
+	 *
+	 * @param fileStoreDirectory the directory in which the local file store files reside.
+	 * @return the {@link FileStoreSnapshot}, or <code>null</code> if there is no valid snapshot.
+	 * @throws IOException if the file store cannot be read.
+	 */
+	public static FileStoreSnapshot read(Path fileStoreDirectory) throws IOException {
+		Path dataPath = FileStore.validCachePath(fileStoreDirectory);
+		Path snapshotPath = fileStoreDirectory.resolve(SNAPSHOT_FILE_NAME);
+		if (Files.notExists(snapshotPath)) {
+			return null;
+		}
+
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		try {
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || !matchesKey(buffer, dataPath)) {
+				return null;
+			}
+
+			List<Path> indexPaths = FileStore.indexPaths(fileStoreDirectory).collect(Collectors.toList());
+			int indexCount = buffer.getInt();
+			if (indexCount != indexPaths.size()) {
+				return null;
+			}
+
+			ChainTable[] chains = new ChainTable[indexPaths.stream().mapToInt(IndexDecoder::getIndexId).max().orElse(-1) + 1];
+			for (int index = 0; index < indexCount; index++) {
+				int indexId = buffer.getInt();
+				if (indexId < 0 || indexId >= chains.length || !matchesKey(buffer, indexPaths.get(index))
+						|| IndexDecoder.getIndexId(indexPaths.get(index)) != indexId) {
+					return null;
+				}
+
+				int entryCount = buffer.getInt();
+				int positionCount = buffer.getInt();
+
+				int[] fileSizes = new int[entryCount];
+				buffer.asIntBuffer().get(fileSizes);
+				buffer.position(buffer.position() + entryCount * Integer.BYTES);
+
+				int[] offsets = new int[entryCount + 1];
+				buffer.asIntBuffer().get(offsets);
+				buffer.position(buffer.position() + offsets.length * Integer.BYTES);
+
+				ByteBuffer positions = buffer.slice();
+				positions.limit(positionCount * Integer.BYTES);
+				buffer.position(buffer.position() + positionCount * Integer.BYTES);
+
+				chains[indexId] = new ChainTable(fileSizes, offsets, positions.asIntBuffer());
+			}
+			return new FileStoreSnapshot(chains);
+		} catch (RuntimeException e) {
+			// a truncated or corrupt snapshot is as good as none
+			return null;
+		}
+	}
+
+	private static void writeKey(DataOutputStream out, Path path) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		out.writeLong(attributes.size());
+		out.writeLong(attributes.lastModifiedTime().toMillis());
+	}
+
+	private static boolean matchesKey(ByteBuffer buffer, Path path) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		long size = buffer.getLong();
+		long lastModified = buffer.getLong();
+		return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis();
+	}
+
+}
@@ -0,0 +1,361 @@
+package rs2.filestore.editor.cache.fs;
+
+import rs2.filestore.editor.cache.fs.index.DataChunk;
+import rs2.filestore.editor.cache.fs.index.Index;
+import rs2.filestore.editor.cache.fs.index.IndexDecoder;
+import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
+import rs2.filestore.editor.cache.fs.mvcc.FileStoreTransaction;
+import rs2.filestore.editor.cache.fs.mvcc.VersionedFileStore;
+import rs2.filestore.editor.io.ReadOnlyBuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Watches the directory of a loaded {@link FileStore} for changes made by other tools, and reloads only what changed.
+ * <p>
+ * When the data file or an index file is modified, the data file is read again and a checksum of each of its chunks
+ * is compared with the checksum taken before, to find the chunks that changed. The index records of each affected
+ * index are then compared with the entries already loaded: an entry is decoded again only if its record changed or
+ * its chain passes through a changed chunk, and every other entry is carried over as it is. The reloaded index is
+ * swapped into the file store in a single step, so readers are never blocked and see either the old or the new index.
+ * When watching a {@link VersionedFileStore}, the changed entries are instead committed to it in a single transaction,
+ * so they reach readers as a new version like any other change.
+ * <p>
+ * Tools rarely rewrite a file store in a single write, so changes are gathered until none has arrived for
+ * {@link #SETTLE_MILLIS}. An index that cannot be decoded, such as one caught halfway through a rewrite, is left as it
+ * was and decoded again after the next change.
+ * <p>
+ * Each reload reads the whole data file and checksums every chunk of it, so its cost grows with the size of the data
+ * file rather than with the size of the change. The data file is also held in memory for as long as the reload takes.
+ * <p>
+ * The file store must be loaded with {@link FileStore#load(Path)}, immediately before it is watched, as changes made
+ * before the watcher starts are not seen. Stores loaded any other way are rejected: changed entries are found by
+ * comparing instances, which only works while every entry is decoded once and held in memory.
+ */
+public final class FileStoreWatcher implements Closeable {
+
+	/**
+	 * Receives the outcome of each reload. Calls are made from the watching thread.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called after an index has been swapped into the file store, or its changes committed to the versioned file
+		 * store.
+		 *
+		 * @param indexId the id of the index.
+		 * @param changedFiles the ids of the files that were added, removed or changed, in ascending order.
+		 */
+		void reloaded(int indexId, int[] changedFiles);
+
+		/**
+		 * Called when an index cannot be reloaded. The file store keeps the previous index.
+		 *
+		 * @param indexId the id of the index.
+		 * @param cause the reason the index could not be reloaded.
+		 */
+		default void failed(int indexId, Exception cause) {
+		}
+
+	}
+
+	/**
+	 * How long, in milliseconds, no further change must arrive before a reload starts.
+	 */
+	static final long SETTLE_MILLIS = 200;
+
+	private static final String DATA_FILE_NAME = "main_file_cache.dat";
+
+	private static final String INDEX_FILE_PREFIX = "main_file_cache.idx";
+
+	/**
+	 * The directory in which the local file store files reside.
+	 */
+	private final Path fileStoreDirectory;
+
+	/**
+	 * The file store that reloaded indices are swapped into.
+	 */
+	private final FileStore fileStore;
+
+	/**
+	 * The versioned file store that changed entries are committed to, or <code>null</code> if indices are swapped
+	 * into {@link #fileStore} only.
+	 */
+	private final VersionedFileStore versions;
+
+	private final Listener listener;
+
+	private final WatchService watchService;
+
+	/**
+	 * The checksum of each chunk in the data file, as of the last reload.
+	 */
+	private int[] chunkChecksums;
+
+	/**
+	 * The chunks that have changed since the last reload in which every index was reloaded successfully.
+	 */
+	private final BitSet pendingChunks = new BitSet();
+
+	/**
+	 * The indices that could not be reloaded, to be tried again after the next change.
+	 */
+	private final BitSet failedIndices = new BitSet();
+
+	private final Thread thread;
+
+	private volatile boolean running = true;
+
+	private FileStoreWatcher(Path fileStoreDirectory, FileStore fileStore, VersionedFileStore versions, Listener listener)
+			throws IOException {
+		this.fileStoreDirectory = fileStoreDirectory;
+		this.fileStore = fileStore;
+		this.versions = versions;
+		this.listener = listener;
+		this.watchService = fileStoreDirectory.getFileSystem().newWatchService();
+		this.thread = new Thread(this::run, "file-store-watcher");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Starts watching the file store in the given directory.
+	 *
+	 * @param fileStoreDirectory the directory in which the local file store files reside.
+	 * @param fileStore the file store loaded from the directory.
+	 * @param listener the listener to notify of each reload.
+	 * @return the running {@link FileStoreWatcher}, which stops when closed.
+	 * @throws IOException if the directory cannot be watched or the data file cannot be read.
+	 * @throws IllegalArgumentException if the file store was not loaded with {@link FileStore#load(Path)}.
+	 */
+	public static FileStoreWatcher watch(Path fileStoreDirectory, FileStore fileStore, Listener listener) throws IOException {
+		return watch(fileStoreDirectory, fileStore, null, listener);
+	}
+
+	/**
+	 * Starts watching the file store in the given directory, committing the entries changed by each reload to a
+	 * {@link VersionedFileStore}. A commit that conflicts with one made meanwhile fails the reload of that index,
+	 * which is tried again after the next change.
+	 *
+	 * @param fileStoreDirectory the directory in which the local file store files reside.
+	 * @param versions the versioned file store wrapping the file store loaded from the directory.
+	 * @param listener the listener to notify of each reload.
+	 * @return the running {@link FileStoreWatcher}, which stops when closed.
+	 * @throws IOException if the directory cannot be watched or the data file cannot be read.
+	 * @throws IllegalArgumentException if the wrapped file store was not loaded with {@link FileStore#load(Path)}.
+	 */
+	public static FileStoreWatcher watch(Path fileStoreDirectory, VersionedFileStore versions, Listener listener)
+			throws IOException {
+		return watch(fileStoreDirectory, versions.getFileStore(), versions, listener);
+	}
+
+	private static FileStoreWatcher watch(Path fileStoreDirectory, FileStore fileStore, VersionedFileStore versions,
+			Listener listener) throws IOException {
+		if (!fileStore.isDecoded()) {
+			throw new IllegalArgumentException("Only a file store loaded with FileStore.load can be watched");
+		}
+		Path dataPath = FileStore.validCachePath(fileStoreDirectory);
+
+		FileStoreWatcher watcher = new FileStoreWatcher(fileStoreDirectory, fileStore, versions, listener);
+		try {
+			// registering first means a change made while the checksums are taken is reloaded, rather than missed
+			fileStoreDirectory.register(watcher.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+			watcher.chunkChecksums = checksums(Files.readAllBytes(dataPath));
+		} catch (IOException e) {
+			watcher.watchService.close();
+			throw e;
+		}
+
+		watcher.thread.start();
+		return watcher;
+	}
+
+	private void run() {
+		while (running) {
+			BitSet changedIndices = new BitSet();
+			try {
+				WatchKey key = watchService.take();
+				do {
+					collect(key, changedIndices);
+				} while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				return;
+			}
+
+			reload(changedIndices);
+		}
+	}
+
+	/**
+	 * Records the indices whose files changed in the events of a key, and resets the key.
+	 */
+	private void collect(WatchKey key, BitSet changedIndices) {
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				// the lost events may have been for any index
+				changedIndices.set(0, fileStore.getIndexCount());
+				continue;
+			}
+
+			String fileName = ((Path) event.context()).getFileName().toString();
+			if (fileName.startsWith(INDEX_FILE_PREFIX)) {
+				try {
+					changedIndices.set(IndexDecoder.getIndexId((Path) event.context()));
+				} catch (IllegalArgumentException e) {
+					// not an index file, such as a backup made alongside one
+				}
+			}
+		}
+		key.reset();
+	}
+
+	/**
+	 * Reloads the indices whose index files changed, and every index if any chunk of the data file changed. The whole
+	 * data file is read and checksummed to find the changed chunks.
+	 */
+	private void reload(BitSet changedIndices) {
+		byte[] data;
+		try {
+			data = Files.readAllBytes(fileStoreDirectory.resolve(DATA_FILE_NAME));
+		} catch (IOException e) {
+			for (int indexId = changedIndices.nextSetBit(0); indexId >= 0; indexId = changedIndices.nextSetBit(indexId + 1)) {
+				failedIndices.set(indexId);
+				listener.failed(indexId, e);
+			}
+			return;
+		}
+
+		int[] checksums = checksums(data);
+		for (int chunk = 0; chunk < Math.max(checksums.length, chunkChecksums.length); chunk++) {
+			if (chunk >= checksums.length || chunk >= chunkChecksums.length || checksums[chunk] != chunkChecksums[chunk]) {
+				pendingChunks.set(chunk);
+			}
+		}
+		chunkChecksums = checksums;
+
+		BitSet indices = (BitSet) changedIndices.clone();
+		indices.or(failedIndices);
+		if (!pendingChunks.isEmpty()) {
+			indices.set(0, fileStore.getIndexCount());
+		}
+		failedIndices.clear();
+
+		IndexDecoder decoder = new IndexDecoder(ReadOnlyBuffer.wrap(data));
+		for (int indexId = indices.nextSetBit(0); indexId >= 0; indexId = indices.nextSetBit(indexId + 1)) {
+			try {
+				reload(decoder, indexId);
+			} catch (IOException | RuntimeException e) {
+				failedIndices.set(indexId);
+				listener.failed(indexId, e);
+			}
+		}
+
+		if (failedIndices.isEmpty()) {
+			pendingChunks.clear();
+		}
+	}
+
+	private void reload(IndexDecoder decoder, int indexId) throws IOException {
+		if (indexId >= fileStore.getIndexCount()) {
+			throw new IOException("Index " + indexId + " was added after the file store was loaded");
+		}
+
+		Path indexPath = fileStoreDirectory.resolve(INDEX_FILE_PREFIX + indexId);
+		Index previous = fileStore.getIndex(indexId);
+
+		Index index;
+		if (Files.notExists(indexPath)) {
+			index = new Index(indexId, Collections.emptyList(), 0);
+		} else {
+			ReadOnlyBuffer indexBuffer = ReadOnlyBuffer.wrap(Files.readAllBytes(indexPath));
+			index = previous == null ? decoder.decode(indexId, indexBuffer)
+					: decoder.decode(indexId, indexBuffer, previous, pendingChunks);
+		}
+
+		int[] changedFiles = changedFiles(previous, index);
+		if (changedFiles.length > 0 || previous == null) {
+			if (versions != null) {
+				commit(indexId, index, changedFiles);
+			}
+			fileStore.replaceIndex(indexId, index);
+			listener.reloaded(indexId, changedFiles);
+		}
+	}
+
+	/**
+	 * Commits the changed entries of a reloaded index to {@link #versions}. The file store keeps the previous index if
+	 * the commit fails, so the same entries are found to have changed on the next reload.
+	 */
+	private void commit(int indexId, Index index, int[] changedFiles) {
+		FileStoreTransaction transaction = versions.begin();
+		for (int fileId : changedFiles) {
+			transaction.setEntry(indexId, fileId, fileId < index.size() ? index.getEntry(fileId) : IndexEntry.EMPTY_ENTRY);
+		}
+		transaction.commit();
+	}
+
+	/**
+	 * Lists the files that differ between two decodes of an index. Entries carried over from the previous index are
+	 * the same instances, so any other entry has changed.
+	 */
+	private static int[] changedFiles(Index previous, Index index) {
+		int previousSize = previous == null ? 0 : previous.size();
+		List<Integer> changed = new ArrayList<>();
+
+		for (int fileId = 0; fileId < Math.max(previousSize, index.size()); fileId++) {
+			IndexEntry before = fileId < previousSize ? previous.getEntry(fileId) : IndexEntry.EMPTY_ENTRY;
+			IndexEntry after = fileId < index.size() ? index.getEntry(fileId) : IndexEntry.EMPTY_ENTRY;
+			if (before != after && !(before.isEmpty() && after.isEmpty())) {
+				changed.add(fileId);
+			}
+		}
+		return changed.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Takes a checksum of each chunk in a data file, counting a trailing partial chunk as whole.
+	 */
+	private static int[] checksums(byte[] data) {
+		int[] checksums = new int[(data.length + DataChunk.DATA_CHUNK_SIZE - 1) / DataChunk.DATA_CHUNK_SIZE];
+		CRC32 crc = new CRC32();
+		for (int chunk = 0; chunk < checksums.length; chunk++) {
+			int offset = chunk * DataChunk.DATA_CHUNK_SIZE;
+			crc.reset();
+			crc.update(data, offset, Math.min(DataChunk.DATA_CHUNK_SIZE, data.length - offset));
+			checksums[chunk] = (int) crc.getValue();
+		}
+		return checksums;
+	}
+
+	/**
+	 * Stops watching, waiting for a reload in progress to finish.
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+		watchService.close();
+		if (Thread.currentThread() != thread) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+}
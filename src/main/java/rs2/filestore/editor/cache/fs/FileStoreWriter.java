@@ -0,0 +1,254 @@
+package rs2.filestore.editor.cache.fs;
+
+import rs2.filestore.editor.cache.fs.index.ChunkEncoder;
+import rs2.filestore.editor.cache.fs.index.DataChunk;
+import rs2.filestore.editor.cache.fs.index.InvalidChunkException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes files into an existing local file store in place. As the client does, a file being replaced keeps the chunks
+ * of its existing chain, in order, and any further chunks it needs are appended to the end of the data file. Chunks a
+ * shorter file no longer uses are left behind, unreferenced.
+ * <p>
+ * Instances are not thread-safe. A {@link FileStore} loaded before writing does not see the changes.
+ */
+public final class FileStoreWriter implements Closeable {
+
+	/**
+	 * The size of an index entry in bytes.
+	 */
+	private static final int INDEX_ENTRY_SIZE = 6;
+
+	/**
+	 * The largest file size an index entry can hold.
+	 */
+	private static final int MAX_FILE_SIZE = (1 << 24) - 1;
+
+	/**
+	 * The number of chunks the encoder writes at once.
+	 */
+	private static final int ENCODER_CHUNKS = 64;
+
+	/**
+	 * The directory in which the local file store files reside.
+	 */
+	private final Path fileStoreDirectory;
+
+	/**
+	 * The channel to the data file.
+	 */
+	private final FileChannel data;
+
+	/**
+	 * The channels to the index files, by id, opened as they are first written.
+	 */
+	private FileChannel[] indices = new FileChannel[0];
+
+	/**
+	 * The number of chunks in the data file, counting a trailing partial chunk as whole.
+	 */
+	private int chunkCount;
+
+	/**
+	 * The buffer chunk headers are read into.
+	 */
+	private final ByteBuffer chunk = ByteBuffer.allocate(DataChunk.DATA_CHUNK_HEADER_SIZE);
+
+	/**
+	 * Encodes chunks into the data file, writing each run of consecutive chunks at once.
+	 */
+	private final ChunkEncoder encoder;
+
+	/**
+	 * The buffer index entries are read into and encoded into.
+	 */
+	private final ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+
+	/**
+	 * Opens the file store in the given directory for writing.
+	 *
+	 * @param fileStoreDirectory the directory in which the local file store files reside.
+	 * @throws IOException if the data file cannot be opened.
+	 */
+	public FileStoreWriter(Path fileStoreDirectory) throws IOException {
+		this.fileStoreDirectory = fileStoreDirectory;
+		this.data = FileChannel.open(FileStore.validCachePath(fileStoreDirectory), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		// chunk 0 is never part of a chain, as position 0 marks an empty entry
+		this.chunkCount = (int) Math.max(1, (data.size() + DataChunk.DATA_CHUNK_SIZE - 1) / DataChunk.DATA_CHUNK_SIZE);
+		this.encoder = new ChunkEncoder(data, ENCODER_CHUNKS, false);
+	}
+
+	/**
+	 * Writes a file, replacing any existing file with the same id.
+	 *
+	 * @param indexId the id of the index to write the file to.
+	 * @param fileId the id of the file.
+	 * @param payload the contents of the file.
+	 * @throws IOException if the file store cannot be written.
+	 */
+	public void put(int indexId, int fileId, byte[] payload) throws IOException {
+		if (payload.length > MAX_FILE_SIZE) {
+			throw new IOException(payload.length + " bytes exceeds the largest file size of " + MAX_FILE_SIZE);
+		}
+
+		int chunksNeeded = DataChunk.chunkCount(payload.length);
+		int[] positions = existingChain(indexId, fileId, chunksNeeded);
+		for (int chunkId = 0; chunkId < positions.length; chunkId++) {
+			if (positions[chunkId] == 0) {
+				positions[chunkId] = chunkCount++;
+			}
+		}
+
+		for (int chunkId = 0; chunkId < positions.length; chunkId++) {
+			int next = chunkId + 1 == positions.length ? 0 : positions[chunkId + 1];
+			int offset = chunkId * DataChunk.DATA_CHUNK_BODY_SIZE;
+			int length = Math.min(DataChunk.DATA_CHUNK_BODY_SIZE, payload.length - offset);
+
+			encoder.write(positions[chunkId], fileId, chunkId, next, indexId + 1, payload, offset, length);
+		}
+		encoder.flush();
+
+		writeEntry(indexId, fileId, payload.length, positions[0]);
+	}
+
+	/**
+	 * Removes a file by clearing its index entry. Its chunks are left behind, unreferenced.
+	 *
+	 * @param indexId the id of the index the file is stored in.
+	 * @param fileId the id of the file.
+	 * @throws IOException if the index file cannot be written.
+	 */
+	public void remove(int indexId, int fileId) throws IOException {
+		FileChannel index = index(indexId);
+		if ((long) (fileId + 1) * INDEX_ENTRY_SIZE <= index.size()) {
+			writeEntry(indexId, fileId, 0, 0);
+		}
+	}
+
+	/**
+	 * Follows the existing chain of a file for as long as it stays valid, up to the given number of chunks. The chain
+	 * is checked against the size of the file it currently holds, by the same rules as when it is loaded.
+	 *
+	 * @return the positions of the chain, with <code>0</code> in place of each chunk still to be allocated.
+	 */
+	private int[] existingChain(int indexId, int fileId, int limit) throws IOException {
+		int[] positions = new int[limit];
+
+		FileChannel index = index(indexId);
+		long entryOffset = (long) fileId * INDEX_ENTRY_SIZE;
+		if (entryOffset + INDEX_ENTRY_SIZE > index.size()) {
+			return positions;
+		}
+
+		entry.clear();
+		read(index, entry, entryOffset);
+		int fileSize = (entry.get(0) & 0xFF) << 16 | (entry.get(1) & 0xFF) << 8 | entry.get(2) & 0xFF;
+		int position = (entry.get(3) & 0xFF) << 16 | (entry.get(4) & 0xFF) << 8 | entry.get(5) & 0xFF;
+		int existingChunks = DataChunk.chunkCount(fileSize);
+		long dataLength = data.size();
+
+		for (int chunkId = 0; chunkId < limit && DataChunk.isValidPosition(position, dataLength); chunkId++) {
+			if (contains(positions, chunkId, position)) {
+				break;
+			}
+
+			chunk.clear();
+			read(data, chunk, (long) position * DataChunk.DATA_CHUNK_SIZE);
+			if (chunk.position() < DataChunk.DATA_CHUNK_HEADER_SIZE) {
+				break;
+			}
+
+			positions[chunkId] = position;
+			try {
+				position = DataChunk.readHeader(chunk, 0, indexId, fileId, chunkId, existingChunks, dataLength);
+			} catch (InvalidChunkException e) {
+				positions[chunkId] = 0;
+				break;
+			}
+		}
+
+		return positions;
+	}
+
+	private static boolean contains(int[] positions, int length, int position) {
+		for (int i = 0; i < length; i++) {
+			if (positions[i] == position) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void writeEntry(int indexId, int fileId, int fileSize, int position) throws IOException {
+		entry.clear();
+		entry.put((byte) (fileSize >> 16)).put((byte) (fileSize >> 8)).put((byte) fileSize);
+		entry.put((byte) (position >> 16)).put((byte) (position >> 8)).put((byte) position);
+		entry.flip();
+
+		// writing past the end of the index leaves zeroes, that is empty entries, in between
+		write(index(indexId), entry, (long) fileId * INDEX_ENTRY_SIZE);
+	}
+
+	/**
+	 * Gets the channel to an index file, creating the file if it does not yet exist.
+	 */
+	private FileChannel index(int indexId) throws IOException {
+		if (indexId >= indices.length) {
+			indices = Arrays.copyOf(indices, indexId + 1);
+		}
+		if (indices[indexId] == null) {
+			indices[indexId] = FileChannel.open(fileStoreDirectory.resolve("main_file_cache.idx" + indexId),
+					StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		return indices[indexId];
+	}
+
+	private static void read(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offset + buffer.position()) < 0) {
+				break;
+			}
+		}
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, offset + buffer.position());
+		}
+	}
+
+	/**
+	 * Forces every change out to disk.
+	 *
+	 * @throws IOException if the files cannot be synced.
+	 */
+	public void flush() throws IOException {
+		data.force(false);
+		for (FileChannel index : indices) {
+			if (index != null) {
+				index.force(false);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			data.close();
+		} finally {
+			for (FileChannel index : indices) {
+				if (index != null) {
+					index.close();
+				}
+			}
+		}
+	}
+
+}
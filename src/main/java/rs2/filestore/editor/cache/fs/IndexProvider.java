@@ -0,0 +1,24 @@
+package rs2.filestore.editor.cache.fs;
+
+import rs2.filestore.editor.cache.fs.index.Index;
+
+/**
+ * A source of {@link Index}es by id, such as a {@link FileStore}, so that code reading files need not depend on the
+ * format they are stored in.
+ */
+public interface IndexProvider {
+
+	/**
+	 * Gets the index with the specified id.
+	 *
+	 * @param index the id of the index.
+	 * @return the {@link Index}, or <code>null</code> if there is no index with that id.
+	 */
+	Index getIndex(int index);
+
+	/**
+	 * @return the number of indices, including any missing ids below the highest.
+	 */
+	int getIndexCount();
+
+}
@@ -0,0 +1,99 @@
+package rs2.filestore.editor.cache.fs;
+
+import rs2.filestore.editor.cache.fs.index.DataChunk;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The result of packing a directory tree into a file store with a {@link CachePacker}.
+ */
+public final class PackReport {
+
+	/**
+	 * The number of files packed.
+	 */
+	private final int fileCount;
+
+	/**
+	 * The number of bytes read from the input files.
+	 */
+	private final long bytesRead;
+
+	/**
+	 * The number of payload bytes packed into the data file, after any compression.
+	 */
+	private final long bytesWritten;
+
+	/**
+	 * The number of chunks in the data file, including the reserved first chunk.
+	 */
+	private final int chunkCount;
+
+	/**
+	 * The time taken by the extraction, in nanoseconds.
+	 */
+	private final long elapsedNanos;
+
+	/**
+	 * A description of each file that could not be packed, ordered by index and file.
+	 */
+	private final List<String> failures;
+
+	public PackReport(int fileCount, long bytesRead, long bytesWritten, int chunkCount, long elapsedNanos,
+			List<String> failures) {
+		this.fileCount = fileCount;
+		this.bytesRead = bytesRead;
+		this.bytesWritten = bytesWritten;
+		this.chunkCount = chunkCount;
+		this.elapsedNanos = elapsedNanos;
+		this.failures = failures;
+	}
+
+	public int getFileCount() {
+		return fileCount;
+	}
+
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	public int getChunkCount() {
+		return chunkCount;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public List<String> getFailures() {
+		return Collections.unmodifiableList(failures);
+	}
+
+	/**
+	 * @return the bytes written to the data file per second.
+	 */
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : (long) chunkCount * DataChunk.DATA_CHUNK_SIZE * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+
+	/**
+	 * @return <code>true</code> if every file was packed.
+	 */
+	public boolean isComplete() {
+		return failures.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("packed %d files, %d bytes read, %d bytes into %d chunks in %d ms (%.1f MB/s), %d failures",
+				fileCount, bytesRead, bytesWritten, chunkCount, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+				getThroughput() / (1024 * 1024), failures.size());
+	}
+
+}
@@ -0,0 +1,24 @@
+package rs2.filestore.editor.cache.fs;
+
+/**
+ * Receives progress updates from a bulk operation over the files of a file store, such as a {@link CacheExtractor}
+ * or {@link CachePacker}. Updates may arrive from any worker thread.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+	/**
+	 * A listener that ignores all updates.
+	 */
+	ProgressListener NONE = (completed, total, bytes) -> { };
+
+	/**
+	 * Called each time a file has been processed or has failed.
+	 *
+	 * @param completed the number of files completed so far.
+	 * @param total the number of files to process.
+	 * @param bytes the number of bytes written so far.
+	 */
+	void progress(int completed, int total, long bytes);
+
+}
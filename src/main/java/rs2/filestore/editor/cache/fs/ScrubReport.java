@@ -0,0 +1,95 @@
+package rs2.filestore.editor.cache.fs;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The result of scrubbing a {@link FileStore} with a {@link FileStoreScrubber}.
+ */
+public final class ScrubReport {
+
+	/**
+	 * The faults found, ordered by index, file and chunk position.
+	 */
+	private final List<ChunkFault> faults;
+
+	/**
+	 * The number of non-empty entries whose chains were walked.
+	 */
+	private final int scannedEntries;
+
+	/**
+	 * The number of chunks in the data file.
+	 */
+	private final int chunkCount;
+
+	/**
+	 * The number of chunks in use but claimed by no chain, which can be reused.
+	 */
+	private final int reclaimableChunks;
+
+	public ScrubReport(List<ChunkFault> faults, int scannedEntries, int chunkCount, int reclaimableChunks) {
+		this.faults = faults;
+		this.scannedEntries = scannedEntries;
+		this.chunkCount = chunkCount;
+		this.reclaimableChunks = reclaimableChunks;
+	}
+
+	public List<ChunkFault> getFaults() {
+		return Collections.unmodifiableList(faults);
+	}
+
+	/**
+	 * Gets the faults of the given type.
+	 *
+	 * @param type the type of fault.
+	 * @return a list of the faults of the given type.
+	 */
+	public List<ChunkFault> getFaults(ChunkFault.Type type) {
+		return faults.stream().filter(fault -> fault.getType() == type).collect(Collectors.toList());
+	}
+
+	/**
+	 * Determines whether the given entry is broken, that is whether its chain has a fault.
+	 *
+	 * @param indexId the id of the index.
+	 * @param fileId the id of the file.
+	 * @return <code>true</code> if the entry has a fault.
+	 */
+	public boolean isBroken(int indexId, int fileId) {
+		return faults.stream().anyMatch(fault -> fault.getIndexId() == indexId && fault.getFileId() == fileId);
+	}
+
+	public int getScannedEntries() {
+		return scannedEntries;
+	}
+
+	public int getChunkCount() {
+		return chunkCount;
+	}
+
+	/**
+	 * Gets the number of chunks in use but claimed by no chain, such as those left behind when a file is removed or
+	 * shrinks. These are not faults; {@link CachePacker} drops them when the file store is repacked.
+	 *
+	 * @return the number of reclaimable chunks.
+	 */
+	public int getReclaimableChunks() {
+		return reclaimableChunks;
+	}
+
+	/**
+	 * @return <code>true</code> if no faults were found.
+	 */
+	public boolean isClean() {
+		return faults.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "scanned " + scannedEntries + " entries over " + chunkCount + " chunks, " + faults.size() + " faults, "
+				+ reclaimableChunks + " reclaimable chunks";
+	}
+
+}
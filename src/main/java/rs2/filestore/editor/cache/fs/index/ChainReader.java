@@ -0,0 +1,248 @@
+package rs2.filestore.editor.cache.fs.index;
+
+import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
+import rs2.filestore.editor.io.ReadOnlyBuffer;
+import rs2.filestore.editor.metrics.FileStoreMetrics;
+import rs2.filestore.editor.metrics.Metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Follows chunk chains directly from the data file on disk, rather than from a copy of it in memory. Instead of one
+ * read for each {@link DataChunk}, chunks are read ahead along the chain into a window: when the chain's chunks are
+ * contiguous, as they usually are, the rest of the chain is served from the window without further reads. The window
+ * is never larger than the chunks remaining in the file being read, so nothing is read that the chain cannot use.
+ * <p>
+ * Instances are not thread-safe; use one per thread.
+ */
+public final class ChainReader implements Closeable {
+
+	/**
+	 * The size of an index entry in bytes.
+	 */
+	private static final int INDEX_ENTRY_SIZE = 6;
+
+	/**
+	 * The channel to the data file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The size of the data file, in bytes.
+	 */
+	private final long dataLength;
+
+	/**
+	 * The most chunks read ahead by a single read.
+	 */
+	private final int readAheadChunks;
+
+	/**
+	 * The window of chunks most recently read.
+	 */
+	private final ByteBuffer window;
+
+	/**
+	 * The position of the first chunk in {@link #window}.
+	 */
+	private int windowStart;
+
+	/**
+	 * The number of whole or partial chunks in {@link #window}.
+	 */
+	private int windowChunks;
+
+	private long reads;
+
+	private long chunksRead;
+
+	private long bytesRead;
+
+	/**
+	 * Opens the given data file.
+	 *
+	 * @param dataPath the path to the data file.
+	 * @param readAheadChunks the most chunks to read ahead along a chain with a single read; at least 1.
+	 * @throws IOException if the data file cannot be opened.
+	 */
+	public ChainReader(Path dataPath, int readAheadChunks) throws IOException {
+		if (readAheadChunks < 1) {
+			throw new IllegalArgumentException("readAheadChunks must be at least 1");
+		}
+		this.channel = FileChannel.open(dataPath, StandardOpenOption.READ);
+		this.dataLength = channel.size();
+		this.readAheadChunks = readAheadChunks;
+		this.window = ByteBuffer.allocateDirect(readAheadChunks * DataChunk.DATA_CHUNK_SIZE);
+	}
+
+	/**
+	 * Decodes an index from the given buffer, following each entry's chain from disk.
+	 *
+	 * @param indexId the id of the index to decode.
+	 * @param indexBuffer the buffer containing index data.
+	 * @return an instance of {@link Index}.
+	 * @throws UncheckedIOException if the data file cannot be read.
+	 * @throws InvalidChunkException if a chain is broken.
+	 */
+	public Index decode(int indexId, ReadOnlyBuffer indexBuffer) {
+		final FileStoreMetrics metrics = Metrics.get();
+		final long start = metrics == Metrics.NONE ? 0 : System.nanoTime();
+		final List<IndexEntry> entries = new ArrayList<>();
+
+		int totalSize = 0;
+
+		for (int fileId = 0; indexBuffer.hasRemainingBytes(INDEX_ENTRY_SIZE); fileId++) {
+			final int fileSize = indexBuffer.getUnsigned24BitInt();
+			final int initialChunkId = indexBuffer.getUnsigned24BitInt();
+
+			if (!DataChunk.isValidPosition(initialChunkId, dataLength)) {
+				entries.add(IndexEntry.EMPTY_ENTRY);
+				continue;
+			}
+
+			entries.add(readEntry(indexId, fileId, fileSize, initialChunkId));
+			totalSize += fileSize;
+		}
+
+		if (metrics != Metrics.NONE) {
+			metrics.indexDecoded(indexId, entries.size(), totalSize, System.nanoTime() - start);
+		}
+		return new Index(indexId, entries, totalSize);
+	}
+
+	/**
+	 * Reads a single entry by following its chunk chain from disk.
+	 *
+	 * @param indexId the id of the index the file is stored in.
+	 * @param fileId the id of the file.
+	 * @param fileSize the size of the file, in bytes.
+	 * @param initialChunkId the position of the first chunk in the data file.
+	 * @return the decoded {@link IndexEntry}.
+	 * @throws UncheckedIOException if the data file cannot be read.
+	 * @throws InvalidChunkException if the chain is broken.
+	 */
+	public IndexEntry readEntry(int indexId, int fileId, int fileSize, int initialChunkId) {
+		int totalChunks = DataChunk.chunkCount(fileSize);
+		List<DataChunk> entryData = new ArrayList<>(totalChunks);
+		int fragmentedHops = 0;
+
+		for (int chunkId = 0, position = initialChunkId; chunkId < totalChunks; chunkId++) {
+			ByteBuffer chunk = chunk(position, totalChunks - chunkId);
+			int nextChunkId = DataChunk.readHeader(chunk, chunk.position(), indexId, fileId, chunkId, totalChunks, dataLength);
+			chunk.position(chunk.position() + DataChunk.DATA_CHUNK_HEADER_SIZE);
+
+			int bytesToRead = (chunkId + 1) * DataChunk.DATA_CHUNK_BODY_SIZE > fileSize
+					? fileSize % DataChunk.DATA_CHUNK_BODY_SIZE : DataChunk.DATA_CHUNK_BODY_SIZE;
+			byte[] data = new byte[bytesToRead];
+			chunk.get(data, 0, Math.min(bytesToRead, chunk.remaining()));
+			entryData.add(new DataChunk(fileId & 0xFFFF, chunkId & 0xFFFF, nextChunkId, indexId + 1, data));
+
+			if (nextChunkId == 0) {
+				break;
+			}
+			if (nextChunkId != position + 1) {
+				fragmentedHops++;
+			}
+			position = nextChunkId;
+		}
+
+		Metrics.get().chainRead(indexId, entryData.size(), fileSize, fragmentedHops);
+		return new IndexEntry(indexId, fileId, fileSize, initialChunkId, entryData);
+	}
+
+	/**
+	 * Gets the chunk at the given position, reading ahead into the window if it is not already there.
+	 *
+	 * @param position the position of the chunk.
+	 * @param remainingChunks the number of chunks left in the chain, including this one.
+	 * @return a buffer positioned at the start of the chunk and limited to its end.
+	 */
+	private ByteBuffer chunk(int position, int remainingChunks) {
+		if (position < windowStart || position >= windowStart + windowChunks) {
+			fill(position, Math.min(readAheadChunks, remainingChunks));
+		}
+
+		int offset = (position - windowStart) * DataChunk.DATA_CHUNK_SIZE;
+		ByteBuffer chunk = window.duplicate();
+		chunk.position(offset).limit(Math.min(window.limit(), offset + DataChunk.DATA_CHUNK_SIZE));
+		if (chunk.remaining() < DataChunk.DATA_CHUNK_HEADER_SIZE) {
+			throw new InvalidChunkException("Invalid Index format! Chunk " + position + " out of bounds");
+		}
+		chunksRead++;
+		return chunk;
+	}
+
+	/**
+	 * Reads chunks into the window with a single positional read.
+	 */
+	private void fill(int position, int chunks) {
+		long offset = (long) position * DataChunk.DATA_CHUNK_SIZE;
+		if (offset + DataChunk.DATA_CHUNK_HEADER_SIZE > dataLength) {
+			throw new InvalidChunkException("Invalid Index format! Chunk " + position + " out of bounds");
+		}
+
+		window.clear().limit((int) Math.min((long) chunks * DataChunk.DATA_CHUNK_SIZE, dataLength - offset));
+		try {
+			while (window.hasRemaining()) {
+				if (channel.read(window, offset + window.position()) < 0) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		reads++;
+		bytesRead += window.position();
+
+		window.flip();
+		windowStart = position;
+		windowChunks = (window.limit() + DataChunk.DATA_CHUNK_SIZE - 1) / DataChunk.DATA_CHUNK_SIZE;
+	}
+
+	/**
+	 * @return the number of reads issued on the data file.
+	 */
+	public long getReadCount() {
+		return reads;
+	}
+
+	/**
+	 * @return the number of chunks served.
+	 */
+	public long getChunkCount() {
+		return chunksRead;
+	}
+
+	/**
+	 * @return the number of reads saved compared with one read per chunk.
+	 */
+	public long getReadsSaved() {
+		return chunksRead - reads;
+	}
+
+	/**
+	 * @return the number of bytes read from the data file, including chunks read ahead but not used.
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	@Override
+	public String toString() {
+		return "reads: " + reads + ", chunks: " + chunksRead + ", saved: " + getReadsSaved() + ", bytes: " + bytesRead;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
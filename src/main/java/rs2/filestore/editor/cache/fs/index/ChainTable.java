@@ -0,0 +1,148 @@
+package rs2.filestore.editor.cache.fs.index;
+
+import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * The resolved chunk positions of every entry in an {@link Index}, so that an entry's chunks can be read without
+ * following its chain. The positions of all entries are stored back to back in a single {@link IntBuffer}, which may be
+ * a view of a memory mapped file.
+ */
+public final class ChainTable {
+
+	/**
+	 * The file size of each entry, in bytes.
+	 */
+	private final int[] fileSizes;
+
+	/**
+	 * The offset into {@link #positions} of the first chunk position of each entry, with a final element marking the
+	 * end of the last entry's positions.
+	 */
+	private final int[] offsets;
+
+	/**
+	 * The chunk positions, in the data file, of every entry in order.
+	 */
+	private final IntBuffer positions;
+
+	public ChainTable(int[] fileSizes, int[] offsets, IntBuffer positions) {
+		this.fileSizes = fileSizes;
+		this.offsets = offsets;
+		this.positions = positions;
+	}
+
+	/**
+	 * Resolves the chunk positions of every entry in the given {@link Index}. Chunk positions are derived from each
+	 * entry's first chunk position and the next chunk id of each of its {@link DataChunk}s.
+	 *
+	 * @param index the index.
+	 * @return the {@link ChainTable} of the index.
+	 */
+	public static ChainTable of(Index index) {
+		int entryCount = index.size();
+		int[] fileSizes = new int[entryCount];
+		int[] offsets = new int[entryCount + 1];
+		int[] positions = new int[16];
+		int positionCount = 0;
+
+		for (int fileId = 0; fileId < entryCount; fileId++) {
+			offsets[fileId] = positionCount;
+			if (index.isEmpty(fileId)) {
+				continue;
+			}
+
+			IndexEntry entry = index.getEntry(fileId);
+			fileSizes[fileId] = entry.getFileSize();
+
+			int chunkCount = entry.getChunks().size();
+			if (positionCount + chunkCount > positions.length) {
+				positions = Arrays.copyOf(positions, Math.max(positions.length * 2, positionCount + chunkCount));
+			}
+
+			int position = entry.getInitialChunkPosition();
+			for (DataChunk chunk : entry.getChunks()) {
+				positions[positionCount++] = position;
+				position = chunk.getNextChunkId();
+			}
+		}
+		offsets[entryCount] = positionCount;
+
+		return new ChainTable(fileSizes, offsets, IntBuffer.wrap(positions, 0, positionCount).slice());
+	}
+
+	/**
+	 * @return the number of entries in the table.
+	 */
+	public int size() {
+		return fileSizes.length;
+	}
+
+	/**
+	 * Gets the file size of the given entry.
+	 *
+	 * @param fileId the id of the file.
+	 * @return the file size, in bytes.
+	 */
+	public int getFileSize(int fileId) {
+		return fileSizes[fileId];
+	}
+
+	/**
+	 * Gets the number of chunks in the chain of the given entry.
+	 *
+	 * @param fileId the id of the file.
+	 * @return the number of chunks, or <code>0</code> if the entry is empty.
+	 */
+	public int getChunkCount(int fileId) {
+		return offsets[fileId + 1] - offsets[fileId];
+	}
+
+	/**
+	 * Gets the position of a chunk of the given entry.
+	 *
+	 * @param fileId the id of the file.
+	 * @param chunkId the index of the chunk in the chain.
+	 * @return the position of the chunk in the data file.
+	 */
+	public int getPosition(int fileId, int chunkId) {
+		return positions.get(offsets[fileId] + chunkId);
+	}
+
+	/**
+	 * @return the total number of chunk positions in the table.
+	 */
+	public int getPositionCount() {
+		return offsets[offsets.length - 1];
+	}
+
+	/**
+	 * Gets the file sizes of every entry. The returned array is shared, not copied.
+	 *
+	 * @return the file sizes.
+	 */
+	public int[] getFileSizes() {
+		return fileSizes;
+	}
+
+	/**
+	 * Gets the offset of each entry's first chunk position. The returned array is shared, not copied.
+	 *
+	 * @return the offsets.
+	 */
+	public int[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * Gets the chunk positions of every entry, as a new buffer sharing this table's content.
+	 *
+	 * @return the positions.
+	 */
+	public IntBuffer getPositions() {
+		return positions.duplicate();
+	}
+
+}
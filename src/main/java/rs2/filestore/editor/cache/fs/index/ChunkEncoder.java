@@ -0,0 +1,187 @@
+package rs2.filestore.editor.cache.fs.index;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Encodes {@link DataChunk}s straight into a reusable direct buffer and writes them to a data file, without creating
+ * any objects per chunk. Each chunk is encoded exactly as {@link DataChunk#encode()} would encode it, into its own
+ * slot of the buffer; chunks written to consecutive positions are gathered into a run and written with a single
+ * gathering write once the run is broken, the buffer is full, or the encoder is flushed.
+ * <p>
+ * A chunk shorter than {@link DataChunk#DATA_CHUNK_SIZE} is padded with zeroes when followed by another chunk in the
+ * same run, so that each chunk lands at its position. The final chunk of a run is padded only when the encoder is
+ * created to pad every chunk.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class ChunkEncoder implements Flushable {
+
+	/**
+	 * Zeroes padding out the remainder of a short chunk, as the buffer is reused.
+	 */
+	private static final byte[] PADDING = new byte[DataChunk.DATA_CHUNK_SIZE];
+
+	/**
+	 * The channel to the data file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * A view of each chunk's slot of the direct buffer, created once.
+	 */
+	private final ByteBuffer[] slots;
+
+	/**
+	 * Whether the final chunk of each run is padded out to {@link DataChunk#DATA_CHUNK_SIZE}.
+	 */
+	private final boolean padChunks;
+
+	/**
+	 * The position, in the data file, of the first chunk of the pending run.
+	 */
+	private int runStart;
+
+	/**
+	 * The number of chunks in the pending run.
+	 */
+	private int runLength;
+
+	/**
+	 * Creates an encoder writing to a data file.
+	 *
+	 * @param channel the channel to the data file, which must be writable.
+	 * @param bufferChunks the number of chunks the buffer holds, the longest run written at once.
+	 * @param padChunks whether to pad every chunk out to {@link DataChunk#DATA_CHUNK_SIZE}, including the last.
+	 */
+	public ChunkEncoder(FileChannel channel, int bufferChunks, boolean padChunks) {
+		if (bufferChunks < 1) {
+			throw new IllegalArgumentException("bufferChunks must be at least 1");
+		}
+		this.channel = channel;
+		this.padChunks = padChunks;
+		this.slots = new ByteBuffer[bufferChunks];
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bufferChunks * DataChunk.DATA_CHUNK_SIZE);
+		for (int slot = 0; slot < bufferChunks; slot++) {
+			buffer.limit((slot + 1) * DataChunk.DATA_CHUNK_SIZE).position(slot * DataChunk.DATA_CHUNK_SIZE);
+			slots[slot] = buffer.slice();
+		}
+	}
+
+	/**
+	 * Encodes a chunk into a buffer, exactly as {@link DataChunk#encode()} would.
+	 *
+	 * @param buffer the buffer, with at least {@link DataChunk#DATA_CHUNK_HEADER_SIZE} plus the length of the body
+	 * remaining.
+	 * @param fileId the id of the file the chunk belongs to.
+	 * @param chunkId the id of the chunk within its file.
+	 * @param nextChunkId the position of the next chunk of the file, or <code>0</code> if this is the last.
+	 * @param dataType the type of the chunk, the id of the index the file is stored in plus 1.
+	 * @param data the array holding the body of the chunk.
+	 * @param offset the offset of the body within the array.
+	 * @param length the length of the body.
+	 */
+	public static void encode(ByteBuffer buffer, int fileId, int chunkId, int nextChunkId, int dataType, byte[] data, int offset, int length) {
+		buffer.putShort((short) fileId);
+		buffer.putShort((short) chunkId);
+		buffer.putShort((short) (nextChunkId >> 8));
+		buffer.put((byte) nextChunkId);
+		buffer.put((byte) dataType);
+		buffer.put(data, offset, length);
+	}
+
+	/**
+	 * Encodes a chunk into a buffer, exactly as {@link DataChunk#encode()} would.
+	 *
+	 * @param buffer the buffer, with at least the encoded length of the chunk remaining.
+	 * @param chunk the chunk.
+	 */
+	public static void encode(ByteBuffer buffer, DataChunk chunk) {
+		byte[] data = chunk.getData();
+		encode(buffer, chunk.getFileId(), chunk.getChunkId(), chunk.getNextChunkId(), chunk.getDataType(), data, 0, data.length);
+	}
+
+	/**
+	 * Encodes a chunk to be written at a position in the data file. The chunk is written once its run is broken, the
+	 * buffer fills, or {@link #flush()} is called.
+	 *
+	 * @param position the position of the chunk in the data file.
+	 * @param fileId the id of the file the chunk belongs to.
+	 * @param chunkId the id of the chunk within its file.
+	 * @param nextChunkId the position of the next chunk of the file, or <code>0</code> if this is the last.
+	 * @param dataType the type of the chunk, the id of the index the file is stored in plus 1.
+	 * @param data the array holding the body of the chunk.
+	 * @param offset the offset of the body within the array.
+	 * @param length the length of the body, at most {@link DataChunk#DATA_CHUNK_BODY_SIZE}.
+	 * @throws IOException if a pending run cannot be written.
+	 */
+	public void write(int position, int fileId, int chunkId, int nextChunkId, int dataType, byte[] data, int offset, int length) throws IOException {
+		if (length > DataChunk.DATA_CHUNK_BODY_SIZE) {
+			throw new IllegalArgumentException(length + " bytes exceeds the chunk body size of " + DataChunk.DATA_CHUNK_BODY_SIZE);
+		}
+
+		if (runLength > 0 && (position != runStart + runLength || runLength == slots.length)) {
+			flush();
+		}
+		if (runLength == 0) {
+			runStart = position;
+		} else {
+			pad(slots[runLength - 1]);
+		}
+
+		ByteBuffer slot = slots[runLength++];
+		slot.clear();
+		encode(slot, fileId, chunkId, nextChunkId, dataType, data, offset, length);
+	}
+
+	/**
+	 * Encodes a chunk to be written at a position in the data file.
+	 *
+	 * @param position the position of the chunk in the data file.
+	 * @param chunk the chunk.
+	 * @throws IOException if a pending run cannot be written.
+	 * @see #write(int, int, int, int, int, byte[], int, int)
+	 */
+	public void write(int position, DataChunk chunk) throws IOException {
+		byte[] data = chunk.getData();
+		write(position, chunk.getFileId(), chunk.getChunkId(), chunk.getNextChunkId(), chunk.getDataType(), data, 0, data.length);
+	}
+
+	/**
+	 * Writes the pending run of chunks, if any, with a single gathering write.
+	 *
+	 * @throws IOException if the data file cannot be written.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (runLength == 0) {
+			return;
+		}
+
+		ByteBuffer last = slots[runLength - 1];
+		if (padChunks) {
+			pad(last);
+		}
+		for (int slot = 0; slot < runLength; slot++) {
+			slots[slot].flip();
+		}
+
+		// the slots are flipped for writing, so the run is dropped even if the write fails
+		try {
+			channel.position((long) runStart * DataChunk.DATA_CHUNK_SIZE);
+			while (last.hasRemaining()) {
+				channel.write(slots, 0, runLength);
+			}
+		} finally {
+			runLength = 0;
+		}
+	}
+
+	private static void pad(ByteBuffer slot) {
+		slot.put(PADDING, 0, slot.remaining());
+	}
+
+}
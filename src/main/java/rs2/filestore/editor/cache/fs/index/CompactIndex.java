@@ -0,0 +1,213 @@
+package rs2.filestore.editor.cache.fs.index;
+
+import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * An {@link Index} that stores only the file size and first chunk position of each entry, in parallel primitive arrays
+ * with a {@link BitSet} marking the non-empty entries. {@link IndexEntry}s are created on demand by following the
+ * entry's chunk chain, or by reading its resolved positions from a {@link ChainTable}, so an empty entry costs nothing
+ * beyond its slots in the arrays. Entries that are set or added are kept as they are given, as their chunks need not
+ * be in the data file.
+ */
+public final class CompactIndex extends Index {
+
+	/**
+	 * The decoder used to follow chunk chains on demand.
+	 */
+	private final IndexDecoder decoder;
+
+	/**
+	 * The file size of each entry, in bytes.
+	 */
+	private int[] fileSizes;
+
+	/**
+	 * The position, in the data file, of the first chunk of each entry.
+	 */
+	private int[] initialChunkPositions;
+
+	/**
+	 * The ids of the non-empty entries.
+	 */
+	private final BitSet present;
+
+	/**
+	 * Entries that have been set or added since decoding, by file id.
+	 */
+	private final Map<Integer, IndexEntry> modified = new HashMap<>();
+
+	/**
+	 * The number of entries in this index.
+	 */
+	private int size;
+
+	/**
+	 * The resolved chunk positions of each entry, or <code>null</code> if chains are followed on demand.
+	 */
+	private final ChainTable chains;
+
+	CompactIndex(int id, IndexDecoder decoder, int[] fileSizes, int[] initialChunkPositions, BitSet present, int length) {
+		this(id, decoder, fileSizes, initialChunkPositions, present, length, null);
+	}
+
+	CompactIndex(int id, IndexDecoder decoder, int[] fileSizes, int[] initialChunkPositions, BitSet present, int length,
+			ChainTable chains) {
+		super(id, length);
+		this.decoder = decoder;
+		this.fileSizes = fileSizes;
+		this.initialChunkPositions = initialChunkPositions;
+		this.present = present;
+		this.size = fileSizes.length;
+		this.chains = chains;
+	}
+
+	/**
+	 * Gets a particular entry in this index, following its chunk chain if it has not been modified.
+	 *
+	 * @param index the index of the entry.
+	 * @return the {@link IndexEntry}.
+	 * @throws InvalidChunkException if the entry's chunk chain is broken.
+	 */
+	@Override
+	public IndexEntry getEntry(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+		IndexEntry entry = modified.get(index);
+		if (entry != null) {
+			return entry;
+		}
+
+		if (!present.get(index)) {
+			return IndexEntry.EMPTY_ENTRY;
+		}
+		if (chains != null) {
+			return decoder.decodeEntry(getId(), index, chains);
+		}
+		return decoder.decodeEntry(getId(), index, fileSizes[index], initialChunkPositions[index]);
+	}
+
+	@Override
+	public List<IndexEntry> getEntries() {
+		return new AbstractList<IndexEntry>() {
+
+			@Override
+			public IndexEntry get(int index) {
+				return getEntry(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+		};
+	}
+
+	/**
+	 * Sets the entry at the given index. The entry it replaces is not created to compare them, as that would follow
+	 * its chunk chain, so replacing a decoded entry always marks this index as changed; only replacing an empty entry
+	 * with an empty one, or a set entry with an equal one, does not.
+	 *
+	 * @param index the index to place the given entry.
+	 * @param entry the entry to replace the entry at the given index.
+	 */
+	@Override
+	public void setEntry(int index, IndexEntry entry) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+		IndexEntry previous = modified.get(index);
+		boolean unchanged = previous != null ? entry.equals(previous) : entry.isEmpty() && !present.get(index);
+
+		put(index, entry);
+		if (!unchanged) {
+			markChanged();
+		}
+	}
+
+	@Override
+	public boolean addEntry(IndexEntry entry) {
+		if (size == fileSizes.length) {
+			int capacity = Math.max(16, size + (size >> 1));
+			fileSizes = Arrays.copyOf(fileSizes, capacity);
+			initialChunkPositions = Arrays.copyOf(initialChunkPositions, capacity);
+		}
+		put(size++, entry);
+		markChanged();
+		return true;
+	}
+
+	private void put(int index, IndexEntry entry) {
+		modified.put(index, entry);
+		fileSizes[index] = entry.getFileSize();
+		initialChunkPositions[index] = entry.getInitialChunkPosition();
+		present.set(index, !entry.isEmpty());
+	}
+
+	/**
+	 * Creates a copy of this index that later changes to this index do not affect. Entries are still created on
+	 * demand, so copying costs only the arrays of file sizes and positions.
+	 *
+	 * @return a copy of this index.
+	 */
+	@Override
+	public CompactIndex copy() {
+		CompactIndex copy = new CompactIndex(getId(), decoder, Arrays.copyOf(fileSizes, size),
+				Arrays.copyOf(initialChunkPositions, size), (BitSet) present.clone(), getLength(), chains);
+		copy.modified.putAll(modified);
+		if (hasChanged()) {
+			copy.markChanged();
+		}
+		return copy;
+	}
+
+	@Override
+	public boolean isEmpty(int index) {
+		return !present.get(index);
+	}
+
+	@Override
+	public int getFileSize(int index) {
+		return present.get(index) ? fileSizes[index] : 0;
+	}
+
+	@Override
+	public int getInitialChunkPosition(int index) {
+		return present.get(index) ? initialChunkPositions[index] : 0;
+	}
+
+	@Override
+	public IntStream nonEmptyFileIds() {
+		return present.stream();
+	}
+
+	/**
+	 * @return the number of non-empty entries in this index.
+	 */
+	public int getNonEmptyCount() {
+		return present.cardinality();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Iterator<IndexEntry> iterator() {
+		return getEntries().iterator();
+	}
+
+}
@@ -1,11 +1,14 @@
 package rs2.filestore.editor.cache.fs.index;
 
-import rs2.filestore.editor.io.ReadOnlyBuffer;
+import rs2.filestore.editor.cache.fs.ChunkFault;
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Represents a chunk of data from a file stored in a local file store.
@@ -52,7 +55,7 @@ public final class DataChunk {
 	 */
 	private final byte[] data;
 	
-	private DataChunk(int fileId, int chunkId, int nextChunkId, int dataType, byte[] data) {
+	DataChunk(int fileId, int chunkId, int nextChunkId, int dataType, byte[] data) {
 		this.fileId = fileId;
 		this.chunkId = chunkId;
 		this.nextChunkId = nextChunkId;
@@ -60,6 +63,14 @@ public final class DataChunk {
 		this.data = data;
 	}
 	
+	public int getFileId() {
+		return fileId;
+	}
+
+	public int getChunkId() {
+		return chunkId;
+	}
+
 	public int getNextChunkId() {
 		return nextChunkId;
 	}
@@ -111,36 +122,137 @@ public final class DataChunk {
 	}
 
 	/**
-	 * Decodes a {@link DataChunk} from the given {@link ReadOnlyBuffer}.
+	 * Splits a payload into the bodies of the {@link DataChunk}s needed to store it. The chunks are not yet placed in
+	 * a data file, so each has a next chunk id of 0.
 	 *
-	 * @param dataBuffer the data buffer to decode from.
-	 * @param fileSize the size of the file the chunk belongs to, in bytes.
-	 * @param expectedFileId if this doesn't match with decoded fileId exception is thrown.
-	 * @param expectedChunkId if this doesn't match with decoded chunkId exception is thrown.
-	 * @return a {@link DataChunk} instance.
+	 * @param indexId the id of the index the file belongs to.
+	 * @param fileId the id of the file.
+	 * @param payload the contents of the file.
+	 * @return the chunks, in order; always at least one.
 	 */
-	static DataChunk decode(ReadOnlyBuffer dataBuffer, int fileSize, int expectedFileId, int expectedChunkId) {
-		int actualFileId = dataBuffer.getUnsignedShort();
-		int actualChunkId = dataBuffer.getUnsignedShort();
-		int nextChunkId = dataBuffer.getUnsigned24BitInt();
-		int dataType = dataBuffer.getUnsigned();
-
-		if (nextChunkId < 0 || nextChunkId > dataBuffer.length() / DataChunk.DATA_CHUNK_BODY_SIZE) {
-			throw new RuntimeException("Invalid Index format! Invalid nextChunkId");
-		}
+	public static List<DataChunk> split(int indexId, int fileId, byte[] payload) {
+		int chunkCount = chunkCount(payload.length);
+		List<DataChunk> chunks = new ArrayList<>(chunkCount);
 
-		if (expectedFileId != actualFileId) {
-			throw new RuntimeException("Invalid Index format! Incorrect expectedFileId");
+		for (int chunkId = 0; chunkId < chunkCount; chunkId++) {
+			int offset = chunkId * DATA_CHUNK_BODY_SIZE;
+			byte[] data = Arrays.copyOfRange(payload, offset, Math.min(payload.length, offset + DATA_CHUNK_BODY_SIZE));
+			chunks.add(new DataChunk(fileId, chunkId, 0, indexId + 1, data));
 		}
+		return chunks;
+	}
+
+	/**
+	 * Gets the number of chunks a file of the given size is stored in. Even an empty file has one chunk.
+	 *
+	 * @param fileSize the size of the file, in bytes.
+	 * @return the number of chunks in the file's chain.
+	 */
+	public static int chunkCount(int fileSize) {
+		return Math.max(1, (fileSize + DATA_CHUNK_BODY_SIZE - 1) / DATA_CHUNK_BODY_SIZE);
+	}
+
+	/**
+	 * Determines whether a chunk at the given position can be part of a chain: position 0 marks an empty entry, and
+	 * the whole header of the chunk must lie within the data file. An index entry whose first chunk is not at a valid
+	 * position is empty.
+	 *
+	 * @param position the position of the chunk.
+	 * @param dataLength the length of the data file, in bytes.
+	 * @return <code>true</code> if the position is valid.
+	 */
+	public static boolean isValidPosition(int position, long dataLength) {
+		return position > 0 && (long) position * DATA_CHUNK_SIZE + DATA_CHUNK_HEADER_SIZE <= dataLength;
+	}
 
-		if (expectedChunkId != actualChunkId) {
-			throw new RuntimeException("Invalid Index format! Incorrect expectedChunkId");
+	/**
+	 * Reads the header of a chunk, the counterpart of
+	 * {@link ChunkEncoder#encode(ByteBuffer, int, int, int, int, byte[], int, int)}, and checks that it continues the
+	 * chain of a file. This defines a broken chain for every reader of the data file, so that decoding, tolerant
+	 * loading, scrubbing and writing agree on which chains are broken. The buffer's position is not changed.
+	 *
+	 * @param buffer the buffer holding the chunk.
+	 * @param offset the offset of the chunk within the buffer.
+	 * @param indexId the id of the index the file is stored in.
+	 * @param fileId the id of the file.
+	 * @param chunkId the position of the chunk within the chain.
+	 * @param chunkCount the number of chunks the file is stored in, see {@link #chunkCount(int)}.
+	 * @param dataLength the length of the data file, in bytes.
+	 * @return the position of the next chunk, or <code>0</code> if this is the last.
+	 * @throws InvalidChunkException if the header does not continue the chain.
+	 */
+	public static int readHeader(ByteBuffer buffer, int offset, int indexId, int fileId, int chunkId, int chunkCount,
+			long dataLength) {
+		int actualFileId = buffer.getShort(offset) & 0xFFFF;
+		int actualChunkId = buffer.getShort(offset + 2) & 0xFFFF;
+		int nextChunkId = getNextChunkId(buffer, offset);
+		int dataType = buffer.get(offset + 7) & 0xFF;
+
+		if (actualFileId != (fileId & 0xFFFF)) {
+			throw new InvalidChunkException(ChunkFault.Type.FILE_ID_MISMATCH,
+					"Invalid Index format! Expected file " + fileId + " but was " + actualFileId);
+		}
+		if (actualChunkId != (chunkId & 0xFFFF)) {
+			throw new InvalidChunkException(ChunkFault.Type.CHUNK_ID_MISMATCH,
+					"Invalid Index format! Expected chunk " + chunkId + " but was " + actualChunkId + " for file " + fileId);
+		}
+		if (dataType != indexId + 1) {
+			throw new InvalidChunkException(ChunkFault.Type.DATA_TYPE_MISMATCH,
+					"Invalid Index format! Expected type " + (indexId + 1) + " but was " + dataType + " for file " + fileId);
+		}
+		if (chunkId + 1 >= chunkCount) {
+			if (nextChunkId != 0) {
+				throw new InvalidChunkException(ChunkFault.Type.CHAIN_TOO_LONG,
+						"Invalid Index format! Chain of file " + fileId + " continues to " + nextChunkId + " after " + chunkCount + " chunks");
+			}
+		} else if (nextChunkId == 0) {
+			throw new InvalidChunkException(ChunkFault.Type.CHAIN_TOO_SHORT,
+					"Invalid Index format! Chain of file " + fileId + " ends after " + (chunkId + 1) + " of " + chunkCount + " chunks");
+		} else if (!isValidPosition(nextChunkId, dataLength)) {
+			throw new InvalidChunkException(ChunkFault.Type.INVALID_POSITION,
+					"Invalid Index format! Chunk " + nextChunkId + " of file " + fileId + " lies outside of the data file");
 		}
+		return nextChunkId;
+	}
+
+	/**
+	 * Reads the position of the next chunk from the header of a chunk, without checking the rest of the header.
+	 *
+	 * @param buffer the buffer holding the chunk.
+	 * @param offset the offset of the chunk within the buffer.
+	 * @return the position of the next chunk, or <code>0</code> if the chunk claims to be the last.
+	 */
+	public static int getNextChunkId(ByteBuffer buffer, int offset) {
+		return (buffer.getShort(offset + 4) & 0xFFFF) << 8 | buffer.get(offset + 6) & 0xFF;
+	}
+
+	/**
+	 * Decodes the {@link DataChunk} at the given position of the data file.
+	 *
+	 * @param dataBuffer the data file.
+	 * @param position the position of the chunk, which must be valid, see {@link #isValidPosition(int, long)}.
+	 * @param indexId the id of the index the file is stored in.
+	 * @param fileSize the size of the file the chunk belongs to, in bytes.
+	 * @param fileId the id of the file the chunk belongs to.
+	 * @param chunkId the position of the chunk within the file's chain.
+	 * @return a {@link DataChunk} instance.
+	 * @throws InvalidChunkException if the header does not continue the chain, see
+	 * {@link #readHeader(ByteBuffer, int, int, int, int, int, long)}.
+	 */
+	static DataChunk decode(ByteBuffer dataBuffer, int position, int indexId, int fileSize, int fileId, int chunkId) {
+		int offset = position * DATA_CHUNK_SIZE;
+		int nextChunkId = readHeader(dataBuffer, offset, indexId, fileId, chunkId, chunkCount(fileSize), dataBuffer.limit());
 
 		int remainder = fileSize % DATA_CHUNK_BODY_SIZE;
-		int bytesToRead = (actualChunkId + 1) * DATA_CHUNK_BODY_SIZE > fileSize ? remainder : DataChunk.DATA_CHUNK_BODY_SIZE;
+		int bytesToRead = (chunkId + 1) * DATA_CHUNK_BODY_SIZE > fileSize ? remainder : DataChunk.DATA_CHUNK_BODY_SIZE;
+
+		// the body of the final chunk may be cut short by the end of the data file, and is read as zeroes
+		byte[] data = new byte[bytesToRead];
+		ByteBuffer body = dataBuffer.duplicate();
+		body.position(offset + DATA_CHUNK_HEADER_SIZE);
+		body.get(data, 0, Math.min(bytesToRead, body.remaining()));
 
-		return new DataChunk(actualFileId, actualChunkId, nextChunkId, dataType, dataBuffer.getBytes(bytesToRead));
+		return new DataChunk(fileId & 0xFFFF, chunkId & 0xFFFF, nextChunkId, indexId + 1, data);
 	}
 
 }
\ No newline at end of file
@@ -2,9 +2,11 @@ package rs2.filestore.editor.cache.fs.index;
 
 import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * Represents an index within a file store. An index contains a set of items each of which has a pointer to a position
@@ -39,6 +41,17 @@ public class Index implements Iterable<IndexEntry> {
 		this.length = length;
 	}
 
+	/**
+	 * Constructs an {@link Index} for a subclass that stores its own entries, and so must override every method that
+	 * accesses {@link #entries}.
+	 *
+	 * @param id the identifier of this index.
+	 * @param length the length of this index in bytes.
+	 */
+	protected Index(int id, int length) {
+		this(id, null, length);
+	}
+
 	public int getId() {
 		return id;
 	}
@@ -87,6 +100,45 @@ public class Index implements Iterable<IndexEntry> {
 		return indexChanged = entries.add(entry);
 	}
 	
+	/**
+	 * Determines whether the entry at the given index is empty, without necessarily creating the entry.
+	 *
+	 * @param index the index of the entry.
+	 * @return <code>true</code> if there is no file at the given index.
+	 */
+	public boolean isEmpty(int index) {
+		return getEntry(index).isEmpty();
+	}
+
+	/**
+	 * Gets the file size of the entry at the given index, without necessarily creating the entry.
+	 *
+	 * @param index the index of the entry.
+	 * @return the file size in bytes.
+	 */
+	public int getFileSize(int index) {
+		return getEntry(index).getFileSize();
+	}
+
+	/**
+	 * Gets the position of the first chunk of the entry at the given index, without necessarily creating the entry.
+	 *
+	 * @param index the index of the entry.
+	 * @return the position, in the data file, of the first chunk.
+	 */
+	public int getInitialChunkPosition(int index) {
+		return getEntry(index).getInitialChunkPosition();
+	}
+
+	/**
+	 * Gets the ids of the non-empty entries in this index, in ascending order.
+	 *
+	 * @return an {@link IntStream} of file ids.
+	 */
+	public IntStream nonEmptyFileIds() {
+		return IntStream.range(0, size()).filter(index -> !isEmpty(index));
+	}
+
 	/**
 	 * @return the number of entries in this index.
 	 */
@@ -94,9 +146,28 @@ public class Index implements Iterable<IndexEntry> {
 		return entries.size();
 	}
 	
+	/**
+	 * Creates a copy of this index that later changes to this index do not affect. Entries are immutable, so they are
+	 * shared rather than copied.
+	 *
+	 * @return a copy of this index.
+	 */
+	public Index copy() {
+		Index copy = new Index(id, new ArrayList<>(getEntries()), length);
+		copy.indexChanged = hasChanged();
+		return copy;
+	}
+
 	public boolean hasChanged() {
 		return indexChanged;
 	}
+
+	/**
+	 * Sets {@link #indexChanged} to true, for subclasses that store their own entries.
+	 */
+	protected void markChanged() {
+		indexChanged = true;
+	}
 	
 	public int getLength() {
 		return length;
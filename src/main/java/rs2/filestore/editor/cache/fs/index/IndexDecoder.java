@@ -1,11 +1,18 @@
 package rs2.filestore.editor.cache.fs.index;
 
+import rs2.filestore.editor.cache.fs.ChunkFault;
 import rs2.filestore.editor.cache.fs.FileStore;
 import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
 import rs2.filestore.editor.io.ReadOnlyBuffer;
+import rs2.filestore.editor.metrics.FileStoreMetrics;
+import rs2.filestore.editor.metrics.Metrics;
 
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -18,13 +25,36 @@ public final class IndexDecoder {
      */
     private static final int INDEX_ENTRY_SIZE = 6;
 
+    /**
+     * The extension of index files, which is followed by the id of the index.
+     */
+    private static final String INDEX_FILE_EXTENSION = ".idx";
+
     /**
      * The {@link ReadOnlyBuffer} containing all the file data for a {@link FileStore}
      */
     private final ReadOnlyBuffer dataBuffer;
 
+    /**
+     * A view of {@link #dataBuffer} that chunks are read from. Reads are made at absolute positions, so the view is
+     * shared by every thread.
+     */
+    private final ByteBuffer data;
+
+    /**
+     * Whether entries with broken chunk chains are decoded as {@link IndexEntry#EMPTY_ENTRY}, rather than failing
+     * the whole decode.
+     */
+    private final boolean tolerant;
+
     public IndexDecoder(ReadOnlyBuffer dataBuffer) {
+        this(dataBuffer, false);
+    }
+
+    public IndexDecoder(ReadOnlyBuffer dataBuffer, boolean tolerant) {
         this.dataBuffer = dataBuffer;
+        this.data = dataBuffer.asByteBuffer();
+        this.tolerant = tolerant;
     }
 
     /**
@@ -34,20 +64,49 @@ public final class IndexDecoder {
      * @return an {@link Index} decoded from the index file and {@link #dataBuffer}.
      */
     public Index decode(Path path) {
-        String extension = path.getFileName().toString();
-        int id = Integer.parseInt(extension.substring(extension.length() - 1));
+        return decode(getIndexId(path), ReadOnlyBuffer.fromPath(path));
+    }
 
-        return decode(id, ReadOnlyBuffer.fromPath(path));
+    /**
+     * Gets the id of the index stored in the index file at the specified {@link Path}.
+     *
+     * @param path the path to the index file.
+     * @return the id of the index.
+     */
+    public static int getIndexId(Path path) {
+        String fileName = path.getFileName().toString();
+        int extension = fileName.lastIndexOf(INDEX_FILE_EXTENSION);
+        if (extension < 0) {
+            throw new IllegalArgumentException(path + ": not an index file");
+        }
+        return Integer.parseInt(fileName.substring(extension + INDEX_FILE_EXTENSION.length()));
     }
 
     /**
-     * Decodes an index from the given buffer.
+     * Decodes an index from the given buffer. This is safe to call from multiple threads.
      *
      * @param indexId the id of the index to decode.
      * @param indexBuffer the buffer containing index data.
      * @return an instance of {@link Index}.
      */
     public Index decode(int indexId, ReadOnlyBuffer indexBuffer) {
+        return decode(indexId, indexBuffer, new Index(indexId, Collections.emptyList(), 0), new BitSet());
+    }
+
+    /**
+     * Decodes an index from the given buffer, reusing the entries of a previous decode of the same index where they
+     * are known to be unchanged. An entry is reused when its index record, its size and initial chunk position, is
+     * the same as before and none of the chunks along its chain have changed; any other entry is decoded again.
+     *
+     * @param indexId the id of the index to decode.
+     * @param indexBuffer the buffer containing index data.
+     * @param previous the index previously decoded from the same index file.
+     * @param changedChunks the positions of the chunks that have changed in the data file since the previous decode.
+     * @return an instance of {@link Index}, holding the reused entries of the previous index.
+     */
+    public Index decode(int indexId, ReadOnlyBuffer indexBuffer, Index previous, BitSet changedChunks) {
+        final FileStoreMetrics metrics = Metrics.get();
+        final long start = metrics == Metrics.NONE ? 0 : System.nanoTime();
         final List<IndexEntry> entries = new ArrayList<>();
 
         int totalSize = 0;
@@ -57,33 +116,221 @@ public final class IndexDecoder {
             final int fileSize = indexBuffer.getUnsigned24BitInt();
             final int initialChunkId = indexBuffer.getUnsigned24BitInt();
 
-            if (initialChunkId <= 0 || initialChunkId > dataBuffer.length() / DataChunk.DATA_CHUNK_BODY_SIZE) {
+            if (!isPresent(initialChunkId)) {
                 entries.add(IndexEntry.EMPTY_ENTRY);
                 continue;
             }
 
-            List<DataChunk> entryData = new ArrayList<>((fileSize / DataChunk.DATA_CHUNK_BODY_SIZE) + 1);
+            IndexEntry entry = fileId < previous.size() ? previous.getEntry(fileId) : IndexEntry.EMPTY_ENTRY;
+            if (entry.isEmpty() || entry.getFileSize() != fileSize || entry.getInitialChunkPosition() != initialChunkId
+                    || touches(entry, changedChunks)) {
+                try {
+                    entry = new IndexEntry(indexId, fileId, fileSize, initialChunkId,
+                            decodeChain(data, metrics, indexId, fileId, fileSize, initialChunkId));
+                } catch (InvalidChunkException e) {
+                    if (!tolerant) {
+                        throw e;
+                    }
+                    entries.add(IndexEntry.EMPTY_ENTRY);
+                    continue;
+                }
+            }
+            totalSize += fileSize;
 
-            for (int chunkId = 0, currentChunkIndex = initialChunkId; chunkId < (fileSize / DataChunk.DATA_CHUNK_BODY_SIZE) + 1; chunkId++) {
-                dataBuffer.seek(currentChunkIndex * DataChunk.DATA_CHUNK_SIZE);
+            entries.add(entry);
+        }
 
-                DataChunk dataChunk = DataChunk.decode(dataBuffer, fileSize, fileId, chunkId);
+        if (metrics != Metrics.NONE) {
+            metrics.indexDecoded(indexId, entries.size(), totalSize, System.nanoTime() - start);
+        }
+        return new Index(indexId, entries, totalSize);
+    }
 
-                entryData.add(dataChunk);
+    /**
+     * Determines whether any chunk along the chain of an entry is one of the given chunks.
+     *
+     * @param entry the entry, whose chain is read from the next chunk ids of its chunks.
+     * @param chunks the positions of the chunks.
+     * @return <code>true</code> if the chain passes through one of the chunks.
+     */
+    private static boolean touches(IndexEntry entry, BitSet chunks) {
+        if (chunks.isEmpty()) {
+            return false;
+        }
 
-                final int nextChunkId = dataChunk.getNextChunkId();
-                if (nextChunkId == 0) {
-                    break;
-                }
+        int position = entry.getInitialChunkPosition();
+        for (DataChunk chunk : entry.getChunks()) {
+            if (chunks.get(position)) {
+                return true;
+            }
+            position = chunk.getNextChunkId();
+        }
+        return false;
+    }
 
-                currentChunkIndex = nextChunkId;
+    /**
+     * Decodes an index from the given buffer into a {@link CompactIndex}. Only the index file is read; the chunk chain
+     * of each entry is followed when the entry is requested.
+     *
+     * @param indexId the id of the index to decode.
+     * @param indexBuffer the buffer containing index data.
+     * @return an instance of {@link CompactIndex}.
+     */
+    public CompactIndex decodeCompact(int indexId, ReadOnlyBuffer indexBuffer) {
+        final FileStoreMetrics metrics = Metrics.get();
+        final long start = metrics == Metrics.NONE ? 0 : System.nanoTime();
+
+        int entryCount = indexBuffer.length() / INDEX_ENTRY_SIZE;
+        int[] fileSizes = new int[entryCount];
+        int[] initialChunkPositions = new int[entryCount];
+        BitSet present = new BitSet(entryCount);
+        int totalSize = 0;
+
+        for (int fileId = 0; fileId < entryCount; fileId++) {
+            final int fileSize = indexBuffer.getUnsigned24BitInt();
+            final int initialChunkId = indexBuffer.getUnsigned24BitInt();
+
+            if (!isPresent(initialChunkId)) {
+                continue;
             }
+
+            fileSizes[fileId] = fileSize;
+            initialChunkPositions[fileId] = initialChunkId;
+            present.set(fileId);
             totalSize += fileSize;
+        }
 
-            entries.add(new IndexEntry(indexId, fileId, fileSize, initialChunkId, entryData));
+        if (metrics != Metrics.NONE) {
+            metrics.indexDecoded(indexId, entryCount, totalSize, System.nanoTime() - start);
         }
+        return new CompactIndex(indexId, this, fileSizes, initialChunkPositions, present, totalSize);
+    }
 
-        return new Index(indexId, entries, totalSize);
+    /**
+     * Calls {@link #decodeCompact(int, ReadOnlyBuffer)} with the specified {@link Path}, as a {@link ReadOnlyBuffer}.
+     *
+     * @param path the path to the index file.
+     * @return a {@link CompactIndex} decoded from the index file.
+     */
+    public CompactIndex decodeCompact(Path path) {
+        return decodeCompact(getIndexId(path), ReadOnlyBuffer.fromPath(path));
+    }
+
+    /**
+     * Creates a {@link CompactIndex} from the given {@link ChainTable}, without reading the index file. Entries are
+     * read from the resolved chunk positions when requested, rather than by following their chains.
+     *
+     * @param indexId the id of the index.
+     * @param chains the resolved chunk positions of the index.
+     * @return an instance of {@link CompactIndex}.
+     */
+    public CompactIndex decodeCompact(int indexId, ChainTable chains) {
+        int entryCount = chains.size();
+        int[] fileSizes = Arrays.copyOf(chains.getFileSizes(), entryCount);
+        int[] initialChunkPositions = new int[entryCount];
+        BitSet present = new BitSet(entryCount);
+        int totalSize = 0;
+
+        for (int fileId = 0; fileId < entryCount; fileId++) {
+            if (chains.getChunkCount(fileId) == 0) {
+                continue;
+            }
+            initialChunkPositions[fileId] = chains.getPosition(fileId, 0);
+            present.set(fileId);
+            totalSize += fileSizes[fileId];
+        }
+
+        return new CompactIndex(indexId, this, fileSizes, initialChunkPositions, present, totalSize, chains);
+    }
+
+    /**
+     * Decodes a single entry by reading the chunks at its resolved positions. This is safe to call from multiple
+     * threads.
+     *
+     * @param indexId the id of the index the file is stored in.
+     * @param fileId the id of the file.
+     * @param chains the resolved chunk positions of the index.
+     * @return the decoded {@link IndexEntry}.
+     * @throws InvalidChunkException if a chunk header does not match.
+     */
+    IndexEntry decodeEntry(int indexId, int fileId, ChainTable chains) {
+        int fileSize = chains.getFileSize(fileId);
+        int chunkCount = chains.getChunkCount(fileId);
+        List<DataChunk> entryData = new ArrayList<>(chunkCount);
+
+        for (int chunkId = 0; chunkId < chunkCount; chunkId++) {
+            entryData.add(DataChunk.decode(data, chains.getPosition(fileId, chunkId), indexId, fileSize, fileId, chunkId));
+        }
+
+        return new IndexEntry(indexId, fileId, fileSize, chains.getPosition(fileId, 0), entryData);
+    }
+
+    /**
+     * Decodes a single entry by following its chunk chain. This is safe to call from multiple threads.
+     *
+     * @param indexId the id of the index the file is stored in.
+     * @param fileId the id of the file.
+     * @param fileSize the size of the file, in bytes.
+     * @param initialChunkId the position of the first chunk in the data file.
+     * @return the decoded {@link IndexEntry}.
+     * @throws InvalidChunkException if the chain is broken.
+     */
+    IndexEntry decodeEntry(int indexId, int fileId, int fileSize, int initialChunkId) {
+        List<DataChunk> entryData = decodeChain(data, Metrics.get(), indexId, fileId, fileSize, initialChunkId);
+
+        return new IndexEntry(indexId, fileId, fileSize, initialChunkId, entryData);
+    }
+
+    /**
+     * Determines whether an index entry pointing at the given chunk refers to a file.
+     *
+     * @param initialChunkId the position of the first chunk in the data file.
+     * @return <code>true</code> if the position lies within the data file.
+     * @see DataChunk#isValidPosition(int, long)
+     */
+    private boolean isPresent(int initialChunkId) {
+        return DataChunk.isValidPosition(initialChunkId, dataBuffer.length());
+    }
+
+    /**
+     * Follows the chain of {@link DataChunk}s for a file, starting at the given chunk.
+     *
+     * @param data the data file to read chunks from.
+     * @param metrics the metrics to report the chain to.
+     * @param indexId the id of the index the file is stored in.
+     * @param fileId the id of the file.
+     * @param fileSize the size of the file, in bytes.
+     * @param initialChunkId the position of the first chunk in the data file.
+     * @return the decoded chunks, in order.
+     * @throws InvalidChunkException if the chain is broken, see
+     * {@link DataChunk#readHeader(ByteBuffer, int, int, int, int, int, long)}.
+     */
+    private static List<DataChunk> decodeChain(ByteBuffer data, FileStoreMetrics metrics, int indexId, int fileId, int fileSize, int initialChunkId) {
+        final int chunkCount = DataChunk.chunkCount(fileSize);
+        List<DataChunk> entryData = new ArrayList<>(chunkCount);
+        int fragmentedHops = 0;
+
+        for (int chunkId = 0, currentChunkIndex = initialChunkId; chunkId < chunkCount; chunkId++) {
+            if (!DataChunk.isValidPosition(currentChunkIndex, data.limit())) {
+                throw new InvalidChunkException(ChunkFault.Type.INVALID_POSITION,
+                        "Invalid Index format! Chunk " + currentChunkIndex + " out of bounds for file " + fileId);
+            }
+            DataChunk dataChunk = DataChunk.decode(data, currentChunkIndex, indexId, fileSize, fileId, chunkId);
+
+            entryData.add(dataChunk);
+
+            final int nextChunkId = dataChunk.getNextChunkId();
+            if (nextChunkId == 0) {
+                break;
+            }
+            if (nextChunkId != currentChunkIndex + 1) {
+                fragmentedHops++;
+            }
+
+            currentChunkIndex = nextChunkId;
+        }
+        metrics.chainRead(indexId, entryData.size(), fileSize, fragmentedHops);
+        return entryData;
     }
 
 }
\ No newline at end of file
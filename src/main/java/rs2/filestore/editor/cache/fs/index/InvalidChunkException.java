@@ -0,0 +1,32 @@
+package rs2.filestore.editor.cache.fs.index;
+
+import rs2.filestore.editor.cache.fs.ChunkFault;
+
+/**
+ * Thrown when a {@link DataChunk} header does not agree with the index entry it is decoded for.
+ */
+@SuppressWarnings("serial")
+public class InvalidChunkException extends RuntimeException {
+
+	/**
+	 * The kind of fault, or <code>null</code> if it is not a fault of a chunk chain.
+	 */
+	private final ChunkFault.Type type;
+
+	public InvalidChunkException(String message) {
+		this(null, message);
+	}
+
+	public InvalidChunkException(ChunkFault.Type type, String message) {
+		super(message);
+		this.type = type;
+	}
+
+	/**
+	 * @return the kind of fault, or <code>null</code> if it is not a fault of a chunk chain.
+	 */
+	public ChunkFault.Type getType() {
+		return type;
+	}
+
+}
@@ -50,6 +50,18 @@ public final class IndexEntry {
 		this.data = data;
 	}
 
+	/**
+	 * Creates an entry holding the given payload, not yet placed in a data file.
+	 *
+	 * @param indexId the id of the index the entry belongs to.
+	 * @param id the identifier for the entry.
+	 * @param payload the contents of the file.
+	 * @return an {@link IndexEntry} with an initial chunk position of 0.
+	 */
+	public static IndexEntry of(int indexId, int id, byte[] payload) {
+		return new IndexEntry(indexId, id, payload.length, 0, DataChunk.split(indexId, id, payload));
+	}
+
 	public int getIndexId() {
 	    return indexId;
     }
@@ -66,8 +78,34 @@ public final class IndexEntry {
 		return initialChunkPosition;
 	}
 
+	/**
+	 * Gets the {@link DataChunk}s that make up the file this represents.
+	 *
+	 * @return an unmodifiable list of chunks, in order.
+	 */
+	public List<DataChunk> getChunks() {
+		return Collections.unmodifiableList(data);
+	}
+
+	/**
+	 * Gets the contiguous payload of this entry, the data of each {@link DataChunk} in order.
+	 *
+	 * @return a new byte array, {@link #fileSize} in length, containing the file data.
+	 */
+	public byte[] getData() {
+		byte[] payload = new byte[fileSize];
+		int position = 0;
+		for (DataChunk chunk : data) {
+			byte[] chunkData = chunk.getData();
+			int length = Math.min(chunkData.length, fileSize - position);
+			System.arraycopy(chunkData, 0, payload, position, length);
+			position += length;
+		}
+		return payload;
+	}
+
 	public boolean isEmpty() {
-		return this.equals(EMPTY_ENTRY);
+		return this == EMPTY_ENTRY || (id == -1 && indexId == -1 && fileSize == 0 && initialChunkPosition == 0 && data.isEmpty());
 	}
 	
 	@Override
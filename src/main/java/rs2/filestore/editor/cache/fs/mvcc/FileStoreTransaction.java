@@ -0,0 +1,126 @@
+package rs2.filestore.editor.cache.fs.mvcc;
+
+import rs2.filestore.editor.cache.archive.Archive;
+import rs2.filestore.editor.cache.archive.ArchiveCodec;
+import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
+
+import java.io.IOException;
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A set of changes to a {@link VersionedFileStore}, staged over the view it began with and made visible to readers
+ * all at once by {@link #commit()}. Reads through a transaction see its own writes. Instances are not thread-safe,
+ * and can only be committed once.
+ * <p>
+ * An {@link Archive} is edited by decoding it from {@link #getEntry(int, int)}, changing it, and writing it back
+ * with {@link #putArchive(int, int, Archive)}.
+ */
+public final class FileStoreTransaction {
+
+	private final VersionedFileStore store;
+
+	/**
+	 * The view this transaction began with.
+	 */
+	private final FileStoreView base;
+
+	/**
+	 * The entries written, by index id then file id.
+	 */
+	private final Map<Integer, Map<Integer, IndexEntry>> writes = new TreeMap<>();
+
+	private boolean committed;
+
+	FileStoreTransaction(VersionedFileStore store, FileStoreView base) {
+		this.store = store;
+		this.base = base;
+	}
+
+	/**
+	 * Gets an entry, as written by this transaction or else as of the view it began with.
+	 *
+	 * @param indexId the id of the index.
+	 * @param fileId the id of the file.
+	 * @return the {@link IndexEntry}, or {@link IndexEntry#EMPTY_ENTRY} if there is none.
+	 */
+	public IndexEntry getEntry(int indexId, int fileId) {
+		Map<Integer, IndexEntry> index = writes.get(indexId);
+		IndexEntry entry = index == null ? null : index.get(fileId);
+		return entry != null ? entry : base.getEntry(indexId, fileId);
+	}
+
+	/**
+	 * Writes an entry.
+	 *
+	 * @param indexId the id of the index.
+	 * @param fileId the id of the file.
+	 * @param entry the new entry.
+	 */
+	public void setEntry(int indexId, int fileId, IndexEntry entry) {
+		if (committed) {
+			throw new IllegalStateException("Transaction has already been committed");
+		}
+		if (fileId < 0) {
+			throw new IllegalArgumentException("Invalid file id " + fileId);
+		}
+		writes.computeIfAbsent(indexId, id -> new TreeMap<>()).put(fileId, entry);
+	}
+
+	/**
+	 * Writes a file.
+	 *
+	 * @param indexId the id of the index.
+	 * @param fileId the id of the file.
+	 * @param payload the contents of the file.
+	 */
+	public void put(int indexId, int fileId, byte[] payload) {
+		setEntry(indexId, fileId, IndexEntry.of(indexId, fileId, payload));
+	}
+
+	/**
+	 * Encodes an archive and writes it as a file.
+	 *
+	 * @param indexId the id of the index.
+	 * @param fileId the id of the file.
+	 * @param archive the archive.
+	 * @throws IOException if the archive cannot be encoded.
+	 */
+	public void putArchive(int indexId, int fileId, Archive archive) throws IOException {
+		put(indexId, fileId, ArchiveCodec.encode(archive));
+	}
+
+	/**
+	 * Removes a file.
+	 *
+	 * @param indexId the id of the index.
+	 * @param fileId the id of the file.
+	 */
+	public void remove(int indexId, int fileId) {
+		setEntry(indexId, fileId, IndexEntry.EMPTY_ENTRY);
+	}
+
+	/**
+	 * @return the view this transaction began with.
+	 */
+	public FileStoreView getBase() {
+		return base;
+	}
+
+	/**
+	 * Makes every write of this transaction visible at once.
+	 *
+	 * @return the committed view, including this transaction's writes.
+	 * @throws ConcurrentModificationException if another transaction has committed an entry this one writes since
+	 * it began; none of this transaction's writes are then visible.
+	 */
+	public FileStoreView commit() {
+		if (committed) {
+			throw new IllegalStateException("Transaction has already been committed");
+		}
+		committed = true;
+		return writes.isEmpty() ? store.current() : store.commit(base, writes);
+	}
+
+}
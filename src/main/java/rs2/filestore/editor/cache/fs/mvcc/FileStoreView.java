@@ -0,0 +1,123 @@
+package rs2.filestore.editor.cache.fs.mvcc;
+
+import rs2.filestore.editor.cache.fs.FileStore;
+import rs2.filestore.editor.cache.fs.IndexProvider;
+import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An immutable view of a {@link VersionedFileStore} at one version. A view never changes once it has been committed,
+ * so a reader holding one, such as a long running export, sees a consistent file store however many changes are
+ * committed meanwhile.
+ */
+public final class FileStoreView implements IndexProvider {
+
+	/**
+	 * The version of this view; the view of the file store as loaded is version 0.
+	 */
+	private final long version;
+
+	/**
+	 * The snapshot of each index, by id, or <code>null</code> for ids with no index.
+	 */
+	private final SnapshotIndex[] indices;
+
+	private FileStoreView(long version, SnapshotIndex[] indices) {
+		this.version = version;
+		this.indices = indices;
+	}
+
+	/**
+	 * Creates the view of a file store as loaded. Every index is captured now, opening any the file store has not yet
+	 * decoded, so that later changes to the file store are not seen by any view.
+	 */
+	static FileStoreView of(FileStore base) {
+		SnapshotIndex[] indices = new SnapshotIndex[base.getIndexCount()];
+		for (int indexId = 0; indexId < indices.length; indexId++) {
+			if (base.getIndex(indexId) != null) {
+				indices[indexId] = SnapshotIndex.of(indexId, base.getIndex(indexId));
+			}
+		}
+		return new FileStoreView(0, indices);
+	}
+
+	/**
+	 * Creates a new view with the given entries written over this one, at the next version. This view is left
+	 * unchanged.
+	 *
+	 * @param writes the entries to write, by index id then file id.
+	 * @return the new view.
+	 */
+	FileStoreView with(Map<Integer, Map<Integer, IndexEntry>> writes) {
+		long next = version + 1;
+		int indexCount = indices.length;
+		for (int indexId : writes.keySet()) {
+			indexCount = Math.max(indexCount, indexId + 1);
+		}
+
+		SnapshotIndex[] newIndices = Arrays.copyOf(indices, indexCount);
+		for (Map.Entry<Integer, Map<Integer, IndexEntry>> write : writes.entrySet()) {
+			int indexId = write.getKey();
+			SnapshotIndex index = newIndices[indexId] != null ? newIndices[indexId] : SnapshotIndex.of(indexId, null);
+			newIndices[indexId] = index.with(write.getValue(), next);
+		}
+
+		return new FileStoreView(next, newIndices);
+	}
+
+	/**
+	 * Gets the index with the specified id.
+	 *
+	 * @param index the id of the index.
+	 * @return the read-only {@link SnapshotIndex}, or <code>null</code> if there is no index with that id.
+	 */
+	@Override
+	public SnapshotIndex getIndex(int index) {
+		return index < 0 || index >= indices.length ? null : indices[index];
+	}
+
+	/**
+	 * Gets an entry, or {@link IndexEntry#EMPTY_ENTRY} if the index or file does not exist.
+	 *
+	 * @param indexId the id of the index.
+	 * @param fileId the id of the file.
+	 * @return the {@link IndexEntry}.
+	 */
+	public IndexEntry getEntry(int indexId, int fileId) {
+		SnapshotIndex index = getIndex(indexId);
+		if (index == null || fileId < 0 || fileId >= index.size()) {
+			return IndexEntry.EMPTY_ENTRY;
+		}
+		return index.getEntry(fileId);
+	}
+
+	/**
+	 * Gets the version at which an entry was last written.
+	 *
+	 * @return the version, or <code>0</code> if the entry has not been written since loading.
+	 */
+	long getWriteVersion(int indexId, int fileId) {
+		SnapshotIndex index = getIndex(indexId);
+		return index == null ? 0 : index.getWriteVersion(fileId);
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the number of indices in this view.
+	 */
+	@Override
+	public int getIndexCount() {
+		return indices.length;
+	}
+
+	@Override
+	public String toString() {
+		return "version " + version;
+	}
+
+}
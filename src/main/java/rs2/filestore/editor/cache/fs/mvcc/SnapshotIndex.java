@@ -0,0 +1,243 @@
+package rs2.filestore.editor.cache.fs.mvcc;
+
+import rs2.filestore.editor.cache.fs.index.Index;
+import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable {@link Index} at one version of a {@link VersionedFileStore}. Entries written since the file store was
+ * loaded are held in fixed size pages over the original index; committing a change copies only the table of pages and
+ * the pages it touches, so every other page, and every unchanged entry of the original index, is shared between
+ * versions. Reads take no locks.
+ */
+public final class SnapshotIndex extends Index {
+
+	private static final int PAGE_BITS = 8;
+
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	/**
+	 * A private copy of the index as loaded, or <code>null</code> if the index did not exist.
+	 */
+	private final Index base;
+
+	/**
+	 * The pages of written entries, or <code>null</code> for a page with none.
+	 */
+	private final Slot[][] pages;
+
+	/**
+	 * The number of entries in this index.
+	 */
+	private final int size;
+
+	private SnapshotIndex(int id, Index base, Slot[][] pages, int size) {
+		super(id, base == null ? 0 : base.getLength());
+		this.base = base;
+		this.pages = pages;
+		this.size = size;
+	}
+
+	/**
+	 * Creates a snapshot of an index with no written entries. The index is copied, so later changes to it are not
+	 * seen by the snapshot.
+	 *
+	 * @param id the id of the index.
+	 * @param base the index as loaded, or <code>null</code> if it does not exist.
+	 */
+	static SnapshotIndex of(int id, Index base) {
+		Index copy = base == null ? null : base.copy();
+		int size = copy == null ? 0 : copy.size();
+		return new SnapshotIndex(id, copy, new Slot[pageCount(size)][], size);
+	}
+
+	/**
+	 * Creates a new snapshot with the given entries written over this one. This snapshot is left unchanged.
+	 *
+	 * @param writes the entries to write, by file id.
+	 * @param version the version the entries are written at.
+	 * @return the new snapshot.
+	 */
+	SnapshotIndex with(Map<Integer, IndexEntry> writes, long version) {
+		int newSize = size;
+		for (int fileId : writes.keySet()) {
+			newSize = Math.max(newSize, fileId + 1);
+		}
+
+		Slot[][] newPages = Arrays.copyOf(pages, pageCount(newSize));
+		BitSet copied = new BitSet(newPages.length);
+
+		for (Map.Entry<Integer, IndexEntry> write : writes.entrySet()) {
+			int page = write.getKey() >>> PAGE_BITS;
+			if (!copied.get(page)) {
+				newPages[page] = newPages[page] == null ? new Slot[PAGE_SIZE] : newPages[page].clone();
+				copied.set(page);
+			}
+			newPages[page][write.getKey() & PAGE_MASK] = new Slot(write.getValue(), version);
+		}
+
+		return new SnapshotIndex(getId(), base, newPages, newSize);
+	}
+
+	/**
+	 * Gets the version at which an entry was last written.
+	 *
+	 * @param fileId the id of the file.
+	 * @return the version, or <code>0</code> if the entry has not been written since loading.
+	 */
+	long getWriteVersion(int fileId) {
+		Slot slot = slot(fileId);
+		return slot == null ? 0 : slot.version;
+	}
+
+	private Slot slot(int fileId) {
+		int page = fileId >>> PAGE_BITS;
+		if (page >= pages.length || pages[page] == null) {
+			return null;
+		}
+		return pages[page][fileId & PAGE_MASK];
+	}
+
+	private boolean inBase(int fileId) {
+		return base != null && fileId < base.size();
+	}
+
+	private static int pageCount(int size) {
+		return (size + PAGE_SIZE - 1) >>> PAGE_BITS;
+	}
+
+	@Override
+	public IndexEntry getEntry(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+		Slot slot = slot(index);
+		if (slot != null) {
+			return slot.entry;
+		}
+		return inBase(index) ? base.getEntry(index) : IndexEntry.EMPTY_ENTRY;
+	}
+
+	@Override
+	public List<IndexEntry> getEntries() {
+		return new AbstractList<IndexEntry>() {
+
+			@Override
+			public IndexEntry get(int index) {
+				return getEntry(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+		};
+	}
+
+	/**
+	 * Snapshots are read-only; write through a {@link FileStoreTransaction}.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void setEntry(int index, IndexEntry entry) {
+		throw new UnsupportedOperationException("Snapshots are read-only, write through a FileStoreTransaction");
+	}
+
+	/**
+	 * Snapshots are read-only; write through a {@link FileStoreTransaction}.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public boolean addEntry(IndexEntry entry) {
+		throw new UnsupportedOperationException("Snapshots are read-only, write through a FileStoreTransaction");
+	}
+
+	@Override
+	public boolean isEmpty(int index) {
+		Slot slot = slot(index);
+		if (slot != null) {
+			return slot.entry.isEmpty();
+		}
+		return !inBase(index) || base.isEmpty(index);
+	}
+
+	@Override
+	public int getFileSize(int index) {
+		Slot slot = slot(index);
+		if (slot != null) {
+			return slot.entry.getFileSize();
+		}
+		return inBase(index) ? base.getFileSize(index) : 0;
+	}
+
+	@Override
+	public int getInitialChunkPosition(int index) {
+		Slot slot = slot(index);
+		if (slot != null) {
+			return slot.entry.getInitialChunkPosition();
+		}
+		return inBase(index) ? base.getInitialChunkPosition(index) : 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return <code>true</code> if any entry has been written since loading.
+	 */
+	@Override
+	public boolean hasChanged() {
+		for (Slot[] page : pages) {
+			if (page != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Snapshots are immutable, so need no copy.
+	 *
+	 * @return this snapshot.
+	 */
+	@Override
+	public SnapshotIndex copy() {
+		return this;
+	}
+
+	@Override
+	public Iterator<IndexEntry> iterator() {
+		return getEntries().iterator();
+	}
+
+	/**
+	 * A written entry and the version it was written at.
+	 */
+	private static final class Slot {
+
+		private final IndexEntry entry;
+
+		private final long version;
+
+		private Slot(IndexEntry entry, long version) {
+			this.entry = entry;
+			this.version = version;
+		}
+
+	}
+
+}
@@ -0,0 +1,103 @@
+package rs2.filestore.editor.cache.fs.mvcc;
+
+import rs2.filestore.editor.cache.fs.FileStore;
+import rs2.filestore.editor.cache.fs.FileStoreWatcher;
+import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
+
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Gives several editors isolated access to one {@link FileStore}. Readers take an immutable {@link FileStoreView} of
+ * the latest committed version with {@link #current()}, and writers stage changes in a {@link FileStoreTransaction}
+ * begun with {@link #begin()}, which become visible all at once when committed. Neither readers nor writers take locks.
+ * <p>
+ * Commits are optimistic: a transaction that writes an entry committed by another transaction since it began fails
+ * with a {@link ConcurrentModificationException}, while transactions writing different entries commit one after the
+ * other.
+ * <p>
+ * Every index of the wrapped file store is captured when it is wrapped, so changes made to the file store directly
+ * afterwards are not seen. Changes made on disk by other tools are committed like any other by a
+ * {@link FileStoreWatcher} started with {@link FileStoreWatcher#watch(java.nio.file.Path, VersionedFileStore,
+ * FileStoreWatcher.Listener)}.
+ */
+public final class VersionedFileStore {
+
+	/**
+	 * The latest committed view.
+	 */
+	private final AtomicReference<FileStoreView> current;
+
+	/**
+	 * The file store as loaded.
+	 */
+	private final FileStore fileStore;
+
+	public VersionedFileStore(FileStore fileStore) {
+		this.current = new AtomicReference<>(FileStoreView.of(fileStore));
+		this.fileStore = fileStore;
+	}
+
+	/**
+	 * Gets the file store as loaded, whose indices were captured as version 0. Changes made to it are not seen by any
+	 * view.
+	 *
+	 * @return the wrapped {@link FileStore}.
+	 */
+	public FileStore getFileStore() {
+		return fileStore;
+	}
+
+	/**
+	 * @return the latest committed view.
+	 */
+	public FileStoreView current() {
+		return current.get();
+	}
+
+	/**
+	 * Begins a transaction over the latest committed view.
+	 *
+	 * @return a new {@link FileStoreTransaction}.
+	 */
+	public FileStoreTransaction begin() {
+		return new FileStoreTransaction(this, current.get());
+	}
+
+	/**
+	 * Commits the writes of a transaction over the latest committed view.
+	 *
+	 * @param base the view the transaction began with.
+	 * @param writes the entries written, by index id then file id.
+	 * @return the committed view.
+	 * @throws ConcurrentModificationException if an entry written was committed by another transaction since
+	 * <code>base</code>.
+	 */
+	FileStoreView commit(FileStoreView base, Map<Integer, Map<Integer, IndexEntry>> writes) {
+		while (true) {
+			FileStoreView latest = current.get();
+			if (latest != base) {
+				checkConflicts(base, latest, writes);
+			}
+
+			FileStoreView next = latest.with(writes);
+			if (current.compareAndSet(latest, next)) {
+				return next;
+			}
+		}
+	}
+
+	private static void checkConflicts(FileStoreView base, FileStoreView latest, Map<Integer, Map<Integer, IndexEntry>> writes) {
+		for (Map.Entry<Integer, Map<Integer, IndexEntry>> index : writes.entrySet()) {
+			for (int fileId : index.getValue().keySet()) {
+				long written = latest.getWriteVersion(index.getKey(), fileId);
+				if (written > base.getVersion()) {
+					throw new ConcurrentModificationException("Entry " + index.getKey() + "/" + fileId + " was committed at version "
+							+ written + " after the transaction began at version " + base.getVersion());
+				}
+			}
+		}
+	}
+
+}
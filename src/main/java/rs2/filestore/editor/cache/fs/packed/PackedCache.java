@@ -0,0 +1,139 @@
+package rs2.filestore.editor.cache.fs.packed;
+
+import rs2.filestore.editor.cache.fs.IndexProvider;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file store exported by {@link PackedCacheWriter}. The whole file is memory mapped on opening and each file
+ * is located through its index's offset table, so reading a file is a single slice of the mapping, with no chunk
+ * chain to follow. Indices are {@link PackedIndex}es, which implement the read methods of the
+ * {@link rs2.filestore.editor.cache.fs.index.Index} API and are safe to read from multiple threads.
+ */
+public final class PackedCache implements IndexProvider, Closeable {
+
+	/**
+	 * Identifies a packed file, "RS2F".
+	 */
+	static final int MAGIC = 0x52533246;
+
+	/**
+	 * The version of the packed format.
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * The size of the header: magic, version, alignment and index count.
+	 */
+	static final int HEADER_SIZE = 16;
+
+	/**
+	 * The size of each index's directory entry: file count and table offset.
+	 */
+	static final int DIRECTORY_ENTRY_SIZE = 12;
+
+	/**
+	 * The size of each file's table entry: payload offset and length.
+	 */
+	static final int TABLE_ENTRY_SIZE = 12;
+
+	private final FileChannel channel;
+
+	/**
+	 * The indices, by id, or <code>null</code> for ids with no index.
+	 */
+	private final PackedIndex[] indices;
+
+	private PackedCache(FileChannel channel, PackedIndex[] indices) {
+		this.channel = channel;
+		this.indices = indices;
+	}
+
+	/**
+	 * Opens and maps a packed file.
+	 *
+	 * @param path the path of the packed file.
+	 * @return the {@link PackedCache}.
+	 * @throws IOException if the file cannot be mapped or is not a valid packed file.
+	 */
+	public static PackedCache open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(path + ": packed files over 2 GiB are not supported");
+			}
+			if (size < HEADER_SIZE) {
+				throw new IOException(path + ": not a packed file");
+			}
+
+			ByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (mapping.getInt(0) != MAGIC) {
+				throw new IOException(path + ": not a packed file");
+			}
+			if (mapping.getInt(4) != VERSION) {
+				throw new IOException(path + ": unsupported packed version " + mapping.getInt(4));
+			}
+
+			int indexCount = mapping.getInt(12);
+			if (indexCount < 0 || HEADER_SIZE + (long) indexCount * DIRECTORY_ENTRY_SIZE > size) {
+				throw new IOException(path + ": truncated index directory");
+			}
+
+			PackedIndex[] indices = new PackedIndex[indexCount];
+			for (int indexId = 0; indexId < indexCount; indexId++) {
+				int entry = HEADER_SIZE + indexId * DIRECTORY_ENTRY_SIZE;
+				int fileCount = mapping.getInt(entry);
+				long tableOffset = mapping.getLong(entry + 4);
+
+				if (fileCount < 0) {
+					continue;
+				}
+				if (tableOffset < 0 || tableOffset + (long) fileCount * TABLE_ENTRY_SIZE > size) {
+					throw new IOException(path + ": truncated table for index " + indexId);
+				}
+				indices[indexId] = PackedIndex.of(indexId, mapping, (int) tableOffset, fileCount);
+			}
+
+			return new PackedCache(channel, indices);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gets the index with the specified id.
+	 *
+	 * @param index the id of the index.
+	 * @return the read-only {@link PackedIndex}, or <code>null</code> if there is no index with that id.
+	 */
+	@Override
+	public PackedIndex getIndex(int index) {
+		if (index < 0 || index >= indices.length) {
+			return null;
+		}
+		return indices[index];
+	}
+
+	@Override
+	public int getIndexCount() {
+		return indices.length;
+	}
+
+	/**
+	 * Closes the packed file. The mapping, and so the indices, remain readable until garbage collected.
+	 *
+	 * @throws IOException if the file cannot be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
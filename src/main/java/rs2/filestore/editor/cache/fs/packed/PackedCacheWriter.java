@@ -0,0 +1,163 @@
+package rs2.filestore.editor.cache.fs.packed;
+
+import rs2.filestore.editor.cache.fs.IndexProvider;
+import rs2.filestore.editor.cache.fs.index.Index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Exports the files of a file store to the single file packed format read by {@link PackedCache}.
+ * <p>
+ * The file starts with a header of {@link PackedCache#MAGIC}, the format version, the payload alignment and the index
+ * count. It is followed by a directory giving, for each index, the number of files and the offset of its table. Each
+ * table holds an offset and length for every file, with a length of <code>-1</code> for an empty entry. Payloads
+ * follow, stored contiguously in index then file order, each starting on a multiple of the alignment.
+ */
+public final class PackedCacheWriter {
+
+	/**
+	 * The default alignment of each payload, in bytes.
+	 */
+	public static final int DEFAULT_ALIGNMENT = 8;
+
+	/**
+	 * The size of the buffer payloads are written through.
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Writes the given file store to a packed file, aligning payloads to {@link #DEFAULT_ALIGNMENT} bytes.
+	 *
+	 * @param fileStore the file store to export.
+	 * @param path the path of the packed file.
+	 * @throws IOException if the packed file cannot be written.
+	 */
+	public static void write(IndexProvider fileStore, Path path) throws IOException {
+		write(fileStore, path, DEFAULT_ALIGNMENT);
+	}
+
+	/**
+	 * Writes the given file store to a packed file.
+	 *
+	 * @param fileStore the file store to export.
+	 * @param path the path of the packed file.
+	 * @param alignment the alignment of each payload, in bytes; a power of two.
+	 * @throws IOException if the packed file cannot be written.
+	 */
+	public static void write(IndexProvider fileStore, Path path, int alignment) throws IOException {
+		if (alignment < 1 || Integer.bitCount(alignment) != 1) {
+			throw new IllegalArgumentException("alignment must be a power of two");
+		}
+
+		int indexCount = fileStore.getIndexCount();
+		long[][] offsets = new long[indexCount][];
+		int[][] lengths = new int[indexCount][];
+
+		long tablesEnd = PackedCache.HEADER_SIZE + (long) indexCount * PackedCache.DIRECTORY_ENTRY_SIZE;
+		for (int indexId = 0; indexId < indexCount; indexId++) {
+			Index index = fileStore.getIndex(indexId);
+			int fileCount = index == null ? 0 : index.size();
+			offsets[indexId] = new long[fileCount];
+			lengths[indexId] = new int[fileCount];
+			tablesEnd += (long) fileCount * PackedCache.TABLE_ENTRY_SIZE;
+		}
+
+		// lays the payloads out from their sizes alone, so the tables can be written first
+		long position = align(tablesEnd, alignment);
+		for (int indexId = 0; indexId < indexCount; indexId++) {
+			Index index = fileStore.getIndex(indexId);
+			for (int fileId = 0; fileId < lengths[indexId].length; fileId++) {
+				if (index.isEmpty(fileId)) {
+					lengths[indexId][fileId] = -1;
+					continue;
+				}
+				offsets[indexId][fileId] = position;
+				lengths[indexId][fileId] = index.getFileSize(fileId);
+				position = align(position + lengths[indexId][fileId], alignment);
+			}
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			buffer.putInt(PackedCache.MAGIC).putInt(PackedCache.VERSION).putInt(alignment).putInt(indexCount);
+
+			long tableOffset = PackedCache.HEADER_SIZE + (long) indexCount * PackedCache.DIRECTORY_ENTRY_SIZE;
+			for (int indexId = 0; indexId < indexCount; indexId++) {
+				buffer.putInt(fileStore.getIndex(indexId) == null ? -1 : lengths[indexId].length).putLong(tableOffset);
+				tableOffset += (long) lengths[indexId].length * PackedCache.TABLE_ENTRY_SIZE;
+			}
+
+			long written = 0;
+			for (int indexId = 0; indexId < indexCount; indexId++) {
+				for (int fileId = 0; fileId < lengths[indexId].length; fileId++) {
+					if (buffer.remaining() < PackedCache.TABLE_ENTRY_SIZE) {
+						written += flush(channel, buffer);
+					}
+					buffer.putLong(offsets[indexId][fileId]).putInt(lengths[indexId][fileId]);
+				}
+			}
+
+			for (int indexId = 0; indexId < indexCount; indexId++) {
+				Index index = fileStore.getIndex(indexId);
+				for (int fileId = 0; fileId < lengths[indexId].length; fileId++) {
+					if (lengths[indexId][fileId] < 0) {
+						continue;
+					}
+
+					byte[] payload = index.getEntry(fileId).getData();
+					if (payload.length != lengths[indexId][fileId]) {
+						throw new IOException("File " + indexId + "/" + fileId + " is " + payload.length + " bytes, but its entry gives "
+								+ lengths[indexId][fileId]);
+					}
+
+					long padding = offsets[indexId][fileId] - (written + buffer.position());
+					for (; padding > 0; padding--) {
+						if (!buffer.hasRemaining()) {
+							written += flush(channel, buffer);
+						}
+						buffer.put((byte) 0);
+					}
+
+					for (int offset = 0; offset < payload.length; ) {
+						if (!buffer.hasRemaining()) {
+							written += flush(channel, buffer);
+						}
+						int length = Math.min(buffer.remaining(), payload.length - offset);
+						buffer.put(payload, offset, length);
+						offset += length;
+					}
+				}
+			}
+			flush(channel, buffer);
+		}
+	}
+
+	private static long align(long position, int alignment) {
+		return (position + alignment - 1) & -alignment;
+	}
+
+	/**
+	 * Writes out the contents of the buffer.
+	 *
+	 * @return the number of bytes written.
+	 */
+	private static int flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		int length = buffer.remaining();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+		return length;
+	}
+
+	private PackedCacheWriter() {
+
+	}
+
+}
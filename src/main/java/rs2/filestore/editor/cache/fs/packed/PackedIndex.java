@@ -0,0 +1,168 @@
+package rs2.filestore.editor.cache.fs.packed;
+
+import rs2.filestore.editor.cache.fs.index.Index;
+import rs2.filestore.editor.cache.fs.index.InvalidChunkException;
+import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A read-only {@link Index} over an index of a {@link PackedCache}. Each file is found through the offset table, in
+ * constant time, and is a slice of the packed file's mapping. Entries are not stored in a data file, so each has an
+ * initial chunk position of 0.
+ */
+public final class PackedIndex extends Index {
+
+	/**
+	 * The mapping of the whole packed file; only read with absolute gets, so it can be shared between threads.
+	 */
+	private final ByteBuffer mapping;
+
+	/**
+	 * The offset of this index's table within the mapping.
+	 */
+	private final int tableOffset;
+
+	/**
+	 * The number of entries in this index.
+	 */
+	private final int size;
+
+	private PackedIndex(int id, ByteBuffer mapping, int tableOffset, int size, int length) {
+		super(id, length);
+		this.mapping = mapping;
+		this.tableOffset = tableOffset;
+		this.size = size;
+	}
+
+	/**
+	 * Creates an index over the table at the given offset, checking that each payload lies within the mapping.
+	 *
+	 * @throws InvalidChunkException if a payload lies outside of the mapping.
+	 */
+	static PackedIndex of(int id, ByteBuffer mapping, int tableOffset, int size) {
+		long length = 0;
+		for (int fileId = 0; fileId < size; fileId++) {
+			int entry = tableOffset + fileId * PackedCache.TABLE_ENTRY_SIZE;
+			long offset = mapping.getLong(entry);
+			int fileSize = mapping.getInt(entry + 8);
+
+			if (fileSize >= 0 && (offset < 0 || offset + fileSize > mapping.capacity())) {
+				throw new InvalidChunkException("File " + id + "/" + fileId + " lies outside of the packed file");
+			}
+			length += Math.max(0, fileSize);
+		}
+		return new PackedIndex(id, mapping, tableOffset, size, (int) Math.min(Integer.MAX_VALUE, length));
+	}
+
+	/**
+	 * Gets the payload of a file without copying it.
+	 *
+	 * @param index the index of the entry.
+	 * @return a read-only buffer over the payload, or an empty buffer if the entry is empty.
+	 */
+	public ByteBuffer getPayload(int index) {
+		checkIndex(index);
+		int fileSize = fileSize(index);
+		if (fileSize < 0) {
+			return ByteBuffer.allocate(0).asReadOnlyBuffer();
+		}
+
+		ByteBuffer payload = mapping.duplicate();
+		int offset = (int) mapping.getLong(tableOffset + index * PackedCache.TABLE_ENTRY_SIZE);
+		payload.limit(offset + fileSize).position(offset);
+		return payload.slice().asReadOnlyBuffer();
+	}
+
+	@Override
+	public IndexEntry getEntry(int index) {
+		checkIndex(index);
+		if (fileSize(index) < 0) {
+			return IndexEntry.EMPTY_ENTRY;
+		}
+
+		ByteBuffer payload = getPayload(index);
+		byte[] data = new byte[payload.remaining()];
+		payload.get(data);
+		return IndexEntry.of(getId(), index, data);
+	}
+
+	@Override
+	public List<IndexEntry> getEntries() {
+		return new AbstractList<IndexEntry>() {
+
+			@Override
+			public IndexEntry get(int index) {
+				return getEntry(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+		};
+	}
+
+	/**
+	 * Packed indices are read-only.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void setEntry(int index, IndexEntry entry) {
+		throw new UnsupportedOperationException("Packed indices are read-only");
+	}
+
+	/**
+	 * Packed indices are read-only.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public boolean addEntry(IndexEntry entry) {
+		throw new UnsupportedOperationException("Packed indices are read-only");
+	}
+
+	@Override
+	public boolean isEmpty(int index) {
+		checkIndex(index);
+		return fileSize(index) < 0;
+	}
+
+	@Override
+	public int getFileSize(int index) {
+		checkIndex(index);
+		return Math.max(0, fileSize(index));
+	}
+
+	@Override
+	public int getInitialChunkPosition(int index) {
+		checkIndex(index);
+		return 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Iterator<IndexEntry> iterator() {
+		return getEntries().iterator();
+	}
+
+	private int fileSize(int index) {
+		return mapping.getInt(tableOffset + index * PackedCache.TABLE_ENTRY_SIZE + 8);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+}
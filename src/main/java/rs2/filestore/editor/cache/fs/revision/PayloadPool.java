@@ -0,0 +1,128 @@
+package rs2.filestore.editor.cache.fs.revision;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds each distinct payload once, by its 128 bit hash, with a count of the references held on it. A payload is
+ * dropped once its last reference is released. Two payloads with the same hash but different contents are both kept,
+ * the second outside of the pool.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class PayloadPool {
+
+	private static final HashFunction CONTENT_HASH = Hashing.murmur3_128();
+
+	private final ConcurrentHashMap<HashCode, PooledPayload> payloads = new ConcurrentHashMap<>();
+
+	/**
+	 * The number of bytes held in the pool, counting each payload once.
+	 */
+	private final AtomicLong storedBytes = new AtomicLong();
+
+	/**
+	 * The number of bytes referred to, counting each payload once per reference.
+	 */
+	private final AtomicLong referencedBytes = new AtomicLong();
+
+	/**
+	 * Takes a reference on a payload, adding it to the pool if no equal payload is held.
+	 *
+	 * @param payload the payload, which must not be modified afterwards.
+	 * @return the pooled payload, which holds an equal array that may be shared.
+	 */
+	PooledPayload acquire(byte[] payload) {
+		HashCode hash = CONTENT_HASH.hashBytes(payload);
+		PooledPayload[] unpooled = new PooledPayload[1];
+
+		PooledPayload pooled = payloads.compute(hash, (key, existing) -> {
+			if (existing == null) {
+				existing = new PooledPayload(key, payload);
+			} else if (!Arrays.equals(existing.bytes, payload)) {
+				unpooled[0] = new PooledPayload(key, payload);
+				return existing;
+			}
+			if (existing.references++ == 0) {
+				storedBytes.addAndGet(payload.length);
+			}
+			return existing;
+		});
+
+		if (unpooled[0] != null) {
+			storedBytes.addAndGet(payload.length);
+			pooled = unpooled[0];
+		}
+		referencedBytes.addAndGet(payload.length);
+		return pooled;
+	}
+
+	/**
+	 * Releases a reference on a payload. Once the last reference is released, the payload is dropped, along with the
+	 * references it holds on the members of its archive.
+	 *
+	 * @param payload the payload, as returned by {@link #acquire(byte[])}.
+	 */
+	void release(PooledPayload payload) {
+		boolean[] retained = new boolean[1];
+		payloads.computeIfPresent(payload.hash, (key, existing) -> {
+			if (existing != payload) {
+				return existing;
+			}
+			if (--existing.references > 0) {
+				retained[0] = true;
+				return existing;
+			}
+			return null;
+		});
+
+		referencedBytes.addAndGet(-payload.bytes.length);
+		if (retained[0]) {
+			return;
+		}
+		storedBytes.addAndGet(-payload.bytes.length);
+
+		// released outside of compute, which must not update the map itself
+		PooledPayload[] members;
+		synchronized (payload) {
+			members = payload.members;
+		}
+		if (members != null) {
+			for (PooledPayload member : members) {
+				release(member);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of distinct payloads held.
+	 */
+	public int size() {
+		return payloads.size();
+	}
+
+	/**
+	 * @return the number of bytes held in the pool, counting each payload once.
+	 */
+	public long getStoredBytes() {
+		return storedBytes.get();
+	}
+
+	/**
+	 * @return the number of bytes referred to, counting each payload once per reference.
+	 */
+	public long getReferencedBytes() {
+		return referencedBytes.get();
+	}
+
+	@Override
+	public String toString() {
+		return payloads.size() + " payloads, " + storedBytes.get() + " bytes stored for " + referencedBytes.get() + " referenced";
+	}
+
+}
@@ -0,0 +1,57 @@
+package rs2.filestore.editor.cache.fs.revision;
+
+import com.google.common.hash.HashCode;
+import rs2.filestore.editor.cache.archive.ArchiveEntry;
+
+/**
+ * A payload held once in a {@link PayloadPool}, however many revisions refer to it.
+ */
+final class PooledPayload {
+
+	/**
+	 * The hash the payload is pooled by.
+	 */
+	final HashCode hash;
+
+	/**
+	 * The payload, shared by every reference and so never modified.
+	 */
+	final byte[] bytes;
+
+	/**
+	 * The number of references held on this payload, only changed while the pool holds it; a payload that is not in
+	 * the pool, because another payload has the same hash, is never counted.
+	 */
+	int references;
+
+	/**
+	 * The members of the archive this payload decodes to, once decoded, each holding a reference on its own payload.
+	 */
+	PooledPayload[] members;
+
+	/**
+	 * The members as {@link ArchiveEntry}s sharing the pooled payloads, in the order they were decoded.
+	 */
+	ArchiveEntry[] entries;
+
+	/**
+	 * Whether the archive is compressed whole.
+	 */
+	boolean archiveCompressed;
+
+	/**
+	 * The size of the archive decompressed.
+	 */
+	int archiveSize;
+
+	/**
+	 * The size of the archive compressed.
+	 */
+	int archiveCompressedSize;
+
+	PooledPayload(HashCode hash, byte[] bytes) {
+		this.hash = hash;
+		this.bytes = bytes;
+	}
+
+}
@@ -0,0 +1,134 @@
+package rs2.filestore.editor.cache.fs.revision;
+
+import rs2.filestore.editor.cache.archive.Archive;
+import rs2.filestore.editor.cache.archive.ArchiveCodec;
+import rs2.filestore.editor.cache.archive.ArchiveEntry;
+import rs2.filestore.editor.cache.fs.IndexProvider;
+import rs2.filestore.editor.cache.fs.index.Index;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+
+/**
+ * A single revision of a file store held by a {@link RevisionSet}. It can be read like any other file store, and its
+ * archives decoded, but its payloads, and the members of its archives, are shared with every other revision holding
+ * the same bytes.
+ */
+public final class Revision implements IndexProvider {
+
+	/**
+	 * The id of the index holding JAG archives.
+	 */
+	private static final int ARCHIVE_INDEX = 0;
+
+	/**
+	 * The name the revision was loaded under.
+	 */
+	private final String name;
+
+	/**
+	 * The indices, by id, with <code>null</code> for missing ids.
+	 */
+	private final RevisionIndex[] indices;
+
+	/**
+	 * The pool the payloads of this revision are held in.
+	 */
+	private final PayloadPool pool;
+
+	Revision(String name, RevisionIndex[] indices, PayloadPool pool) {
+		this.name = name;
+		this.indices = indices;
+		this.pool = pool;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the index with the specified id.
+	 *
+	 * @param index the id of the index.
+	 * @return the {@link RevisionIndex}, or <code>null</code> if there is no index with that id.
+	 */
+	@Override
+	public Index getIndex(int index) {
+		if (index < 0 || index >= indices.length) {
+			return null;
+		}
+		return indices[index];
+	}
+
+	@Override
+	public int getIndexCount() {
+		return indices.length;
+	}
+
+	/**
+	 * Decodes an archive from index 0. The members of each distinct archive are decoded once, whichever revision
+	 * first asks for them, and are pooled like any other payload, so a member unchanged across several archives or
+	 * revisions is held only once.
+	 *
+	 * @param fileId the id of the archive's file.
+	 * @return a new {@link Archive}, whose entries may be shared with other archives.
+	 * @throws NoSuchElementException if there is no such file.
+	 * @throws IOException if the file is not a valid archive.
+	 */
+	public Archive getArchive(int fileId) throws IOException {
+		RevisionIndex index = ARCHIVE_INDEX < indices.length ? indices[ARCHIVE_INDEX] : null;
+		if (index == null || fileId < 0 || fileId >= index.size() || index.isEmpty(fileId)) {
+			throw new NoSuchElementException("No archive " + fileId + " in revision " + name);
+		}
+
+		PooledPayload payload = index.getPooledPayload(fileId);
+		synchronized (payload) {
+			if (payload.entries == null) {
+				Archive archive = ArchiveCodec.decode(payload.bytes);
+				PooledPayload[] members = new PooledPayload[archive.getEntries().size()];
+				ArchiveEntry[] entries = new ArchiveEntry[members.length];
+
+				int member = 0;
+				for (ArchiveEntry entry : archive.getEntries()) {
+					members[member] = pool.acquire(entry.getBytes());
+					entries[member] = new ArchiveEntry(entry.getIdentifier(), members[member].bytes);
+					member++;
+				}
+
+				payload.members = members;
+				payload.entries = entries;
+				payload.archiveCompressed = archive.isCompressed();
+				payload.archiveSize = archive.getSize();
+				payload.archiveCompressedSize = archive.getCompressedSize();
+			}
+
+			return new Archive(new LinkedHashSet<>(Arrays.asList(payload.entries)), payload.archiveCompressed,
+					payload.archiveSize, payload.archiveCompressedSize);
+		}
+	}
+
+	/**
+	 * Releases every payload of this revision.
+	 */
+	void release() {
+		for (RevisionIndex index : indices) {
+			if (index == null) {
+				continue;
+			}
+			for (int fileId = 0; fileId < index.size(); fileId++) {
+				PooledPayload payload = index.getPooledPayload(fileId);
+				if (payload != null) {
+					pool.release(payload);
+				}
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "revision " + name;
+	}
+
+}
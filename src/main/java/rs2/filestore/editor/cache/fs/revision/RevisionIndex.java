@@ -0,0 +1,114 @@
+package rs2.filestore.editor.cache.fs.revision;
+
+import rs2.filestore.editor.cache.fs.index.Index;
+import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A read-only {@link Index} of a {@link Revision}, whose payloads are held in a {@link PayloadPool} and may be shared
+ * with other revisions. Entries are not stored in a data file, so each has an initial chunk position of 0.
+ */
+public final class RevisionIndex extends Index {
+
+	/**
+	 * The payload of each file, or <code>null</code> for an empty entry.
+	 */
+	private final PooledPayload[] files;
+
+	RevisionIndex(int id, PooledPayload[] files, int length) {
+		super(id, length);
+		this.files = files;
+	}
+
+	/**
+	 * Gets the payload of a file without copying it.
+	 *
+	 * @param index the index of the entry.
+	 * @return a read-only buffer over the payload, or an empty buffer if the entry is empty.
+	 */
+	public ByteBuffer getPayload(int index) {
+		PooledPayload payload = files[index];
+		return ByteBuffer.wrap(payload == null ? new byte[0] : payload.bytes).asReadOnlyBuffer();
+	}
+
+	PooledPayload getPooledPayload(int index) {
+		return files[index];
+	}
+
+	@Override
+	public IndexEntry getEntry(int index) {
+		PooledPayload payload = files[index];
+		return payload == null ? IndexEntry.EMPTY_ENTRY : IndexEntry.of(getId(), index, payload.bytes);
+	}
+
+	@Override
+	public List<IndexEntry> getEntries() {
+		return new AbstractList<IndexEntry>() {
+
+			@Override
+			public IndexEntry get(int index) {
+				return getEntry(index);
+			}
+
+			@Override
+			public int size() {
+				return files.length;
+			}
+
+		};
+	}
+
+	/**
+	 * Revision indices are read-only.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void setEntry(int index, IndexEntry entry) {
+		throw new UnsupportedOperationException("Revision indices are read-only");
+	}
+
+	/**
+	 * Revision indices are read-only.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public boolean addEntry(IndexEntry entry) {
+		throw new UnsupportedOperationException("Revision indices are read-only");
+	}
+
+	@Override
+	public boolean isEmpty(int index) {
+		return files[index] == null;
+	}
+
+	@Override
+	public int getFileSize(int index) {
+		PooledPayload payload = files[index];
+		return payload == null ? 0 : payload.bytes.length;
+	}
+
+	@Override
+	public int getInitialChunkPosition(int index) {
+		if (index < 0 || index >= files.length) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + files.length);
+		}
+		return 0;
+	}
+
+	@Override
+	public int size() {
+		return files.length;
+	}
+
+	@Override
+	public Iterator<IndexEntry> iterator() {
+		return getEntries().iterator();
+	}
+
+}
@@ -0,0 +1,122 @@
+package rs2.filestore.editor.cache.fs.revision;
+
+import rs2.filestore.editor.cache.fs.FileStore;
+import rs2.filestore.editor.cache.fs.index.Index;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Holds several revisions of a file store side by side, such as for comparison tools. Every payload, and every member
+ * of an archive that has been decoded, is held once in a shared {@link PayloadPool}, however many revisions contain
+ * it, so revisions that differ by little cost little more than one.
+ * <p>
+ * A revision is read from its data file once, as it is loaded, and the data file is not kept. Instances are
+ * thread-safe.
+ */
+public final class RevisionSet {
+
+	/**
+	 * The pool holding the payloads of every revision.
+	 */
+	private final PayloadPool pool = new PayloadPool();
+
+	/**
+	 * The loaded revisions, by name, in the order they were loaded.
+	 */
+	private final Map<String, Revision> revisions = new LinkedHashMap<>();
+
+	/**
+	 * Loads a revision from the file store in the given directory. Files are read and pooled in parallel.
+	 *
+	 * @param name the name to load the revision under.
+	 * @param fileStoreDirectory the directory in which the local file store files reside.
+	 * @return the loaded {@link Revision}.
+	 * @throws IOException if the file store cannot be loaded.
+	 * @throws IllegalArgumentException if a revision is already loaded under the name.
+	 */
+	public Revision load(String name, Path fileStoreDirectory) throws IOException {
+		synchronized (revisions) {
+			if (revisions.containsKey(name)) {
+				throw new IllegalArgumentException("A revision named " + name + " is already loaded");
+			}
+		}
+
+		FileStore fileStore = FileStore.loadCompact(fileStoreDirectory);
+		RevisionIndex[] indices = new RevisionIndex[fileStore.getIndexCount()];
+		for (int indexId = 0; indexId < indices.length; indexId++) {
+			Index index = fileStore.getIndex(indexId);
+			if (index == null) {
+				continue;
+			}
+
+			PooledPayload[] files = new PooledPayload[index.size()];
+			IntStream.range(0, files.length).parallel()
+					.filter(fileId -> !index.isEmpty(fileId))
+					.forEach(fileId -> files[fileId] = pool.acquire(index.getEntry(fileId).getData()));
+			indices[indexId] = new RevisionIndex(indexId, files, index.getLength());
+		}
+
+		Revision revision = new Revision(name, indices, pool);
+		synchronized (revisions) {
+			if (revisions.putIfAbsent(name, revision) != null) {
+				revision.release();
+				throw new IllegalArgumentException("A revision named " + name + " is already loaded");
+			}
+		}
+		return revision;
+	}
+
+	/**
+	 * Unloads a revision, dropping the payloads no other revision holds. The revision must not be used afterwards.
+	 *
+	 * @param name the name of the revision.
+	 * @return <code>true</code> if a revision was loaded under the name.
+	 */
+	public boolean unload(String name) {
+		Revision revision;
+		synchronized (revisions) {
+			revision = revisions.remove(name);
+		}
+		if (revision == null) {
+			return false;
+		}
+		revision.release();
+		return true;
+	}
+
+	/**
+	 * @param name the name of the revision.
+	 * @return the revision loaded under the name, or <code>null</code> if there is none.
+	 */
+	public Revision get(String name) {
+		synchronized (revisions) {
+			return revisions.get(name);
+		}
+	}
+
+	/**
+	 * @return the loaded revisions, in the order they were loaded.
+	 */
+	public List<Revision> getRevisions() {
+		synchronized (revisions) {
+			return Collections.unmodifiableList(new ArrayList<>(revisions.values()));
+		}
+	}
+
+	public PayloadPool getPool() {
+		return pool;
+	}
+
+	@Override
+	public String toString() {
+		return getRevisions().size() + " revisions, " + pool;
+	}
+
+}
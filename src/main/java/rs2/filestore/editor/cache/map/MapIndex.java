@@ -0,0 +1,179 @@
+package rs2.filestore.editor.cache.map;
+
+import rs2.filestore.editor.io.ReadOnlyBuffer;
+
+import java.util.Arrays;
+
+/**
+ * The map index of the "versionlist" archive, mapping each region to the files in index 4 holding its terrain and its
+ * objects, and whether it is members only. Regions are held in an open addressing table of primitive arrays, so a
+ * lookup neither allocates nor boxes.
+ * <p>
+ * A region id is the region's x coordinate shifted left by 8, or'd with its y coordinate, where a region covers 64 by
+ * 64 tiles. Each record of the encoded map index is 7 bytes: the region id, the terrain file id and the object file
+ * id as shorts, followed by a members flag byte.
+ */
+public final class MapIndex {
+
+	/**
+	 * The size of an encoded record, in bytes.
+	 */
+	private static final int RECORD_SIZE = 7;
+
+	/**
+	 * Marks an unused slot of {@link #regions}.
+	 */
+	private static final int NO_REGION = -1;
+
+	/**
+	 * The region id in each slot, or {@link #NO_REGION}.
+	 */
+	private final int[] regions;
+
+	/**
+	 * The terrain file id in each slot.
+	 */
+	private final int[] terrainFiles;
+
+	/**
+	 * The object file id in each slot.
+	 */
+	private final int[] objectFiles;
+
+	/**
+	 * Whether the region in each slot is members only.
+	 */
+	private final boolean[] members;
+
+	/**
+	 * The number of regions.
+	 */
+	private final int size;
+
+	private MapIndex(int[] regions, int[] terrainFiles, int[] objectFiles, boolean[] members, int size) {
+		this.regions = regions;
+		this.terrainFiles = terrainFiles;
+		this.objectFiles = objectFiles;
+		this.members = members;
+		this.size = size;
+	}
+
+	/**
+	 * Decodes the map index. A region listed more than once keeps its last record.
+	 *
+	 * @param buffer the buffer containing the "map_index" entry.
+	 * @return the decoded {@link MapIndex}.
+	 */
+	public static MapIndex decode(ReadOnlyBuffer buffer) {
+		int count = buffer.length() / RECORD_SIZE;
+
+		// keeps the table at most half full, so probe sequences stay short
+		int capacity = Integer.highestOneBit(Math.max(1, count) * 2 - 1) << 1;
+		int[] regions = new int[capacity];
+		int[] terrainFiles = new int[capacity];
+		int[] objectFiles = new int[capacity];
+		boolean[] members = new boolean[capacity];
+		Arrays.fill(regions, NO_REGION);
+
+		int size = 0;
+		for (int record = 0; record < count; record++) {
+			int region = buffer.getUnsignedShort();
+			int slot = slot(regions, region);
+			if (regions[slot] == NO_REGION) {
+				regions[slot] = region;
+				size++;
+			}
+			terrainFiles[slot] = buffer.getUnsignedShort();
+			objectFiles[slot] = buffer.getUnsignedShort();
+			members[slot] = buffer.getUnsigned() == 1;
+		}
+
+		return new MapIndex(regions, terrainFiles, objectFiles, members, size);
+	}
+
+	/**
+	 * Finds the slot holding the given region, or the empty slot it would be placed in.
+	 */
+	private static int slot(int[] regions, int region) {
+		int mask = regions.length - 1;
+		int slot = (region * 0x9E3779B9 >>> 16) & mask;
+		while (regions[slot] != NO_REGION && regions[slot] != region) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Gets the id of a region from its coordinates.
+	 *
+	 * @param regionX the x coordinate of the region.
+	 * @param regionY the y coordinate of the region.
+	 * @return the region id.
+	 */
+	public static int regionId(int regionX, int regionY) {
+		return regionX << 8 | regionY;
+	}
+
+	/**
+	 * Gets the id of the region containing a tile.
+	 *
+	 * @param x the absolute x coordinate of the tile.
+	 * @param y the absolute y coordinate of the tile.
+	 * @return the region id.
+	 */
+	public static int regionIdOfTile(int x, int y) {
+		return regionId(x >> 6, y >> 6);
+	}
+
+	/**
+	 * @param region the region id.
+	 * @return <code>true</code> if the map index lists the region.
+	 */
+	public boolean contains(int region) {
+		return regions[slot(regions, region)] == region;
+	}
+
+	/**
+	 * @param region the region id.
+	 * @return the id of the file in index 4 holding the region's terrain, or <code>-1</code> if the region is not
+	 * listed.
+	 */
+	public int getTerrainFile(int region) {
+		int slot = slot(regions, region);
+		return regions[slot] == region ? terrainFiles[slot] : -1;
+	}
+
+	/**
+	 * @param region the region id.
+	 * @return the id of the file in index 4 holding the region's objects, or <code>-1</code> if the region is not
+	 * listed.
+	 */
+	public int getObjectFile(int region) {
+		int slot = slot(regions, region);
+		return regions[slot] == region ? objectFiles[slot] : -1;
+	}
+
+	/**
+	 * @param region the region id.
+	 * @return <code>true</code> if the region is listed and members only.
+	 */
+	public boolean isMembers(int region) {
+		int slot = slot(regions, region);
+		return regions[slot] == region && members[slot];
+	}
+
+	/**
+	 * @return the ids of every listed region, in ascending order.
+	 */
+	public int[] getRegions() {
+		return Arrays.stream(regions).filter(region -> region != NO_REGION).sorted().toArray();
+	}
+
+	/**
+	 * @return the number of listed regions.
+	 */
+	public int size() {
+		return size;
+	}
+
+}
@@ -0,0 +1,70 @@
+package rs2.filestore.editor.cache.map;
+
+/**
+ * The decompressed terrain and object files of a map region.
+ */
+public final class MapRegion {
+
+	/**
+	 * The id of the region.
+	 */
+	private final int id;
+
+	/**
+	 * The decompressed terrain file.
+	 */
+	private final byte[] terrain;
+
+	/**
+	 * The decompressed object file.
+	 */
+	private final byte[] objects;
+
+	/**
+	 * Whether the region is members only.
+	 */
+	private final boolean members;
+
+	public MapRegion(int id, byte[] terrain, byte[] objects, boolean members) {
+		this.id = id;
+		this.terrain = terrain;
+		this.objects = objects;
+		this.members = members;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return the x coordinate of the region.
+	 */
+	public int getRegionX() {
+		return id >> 8;
+	}
+
+	/**
+	 * @return the y coordinate of the region.
+	 */
+	public int getRegionY() {
+		return id & 0xFF;
+	}
+
+	public byte[] getTerrain() {
+		return terrain;
+	}
+
+	public byte[] getObjects() {
+		return objects;
+	}
+
+	public boolean isMembers() {
+		return members;
+	}
+
+	@Override
+	public String toString() {
+		return "region " + getRegionX() + "," + getRegionY() + " (" + id + ")";
+	}
+
+}
@@ -0,0 +1,133 @@
+package rs2.filestore.editor.cache.map;
+
+import rs2.filestore.editor.cache.fs.IndexProvider;
+import rs2.filestore.editor.cache.fs.index.Index;
+import rs2.filestore.editor.io.util.GzipUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads map regions from index 4 of a file store, reading and decompressing a region's terrain and object files
+ * together. Regions can be prefetched asynchronously, such as those around a player ahead of their movement.
+ */
+public final class RegionLoader {
+
+	/**
+	 * The id of the index holding map files.
+	 */
+	public static final int MAP_INDEX = 4;
+
+	private final IndexProvider fileStore;
+
+	private final MapIndex mapIndex;
+
+	/**
+	 * The executor prefetches run on.
+	 */
+	private final Executor executor;
+
+	/**
+	 * Creates a loader that prefetches on the given executor.
+	 *
+	 * @param fileStore the file store holding the map files.
+	 * @param mapIndex the map index of the file store's version list.
+	 * @param executor the executor to read and decompress prefetched regions on.
+	 */
+	public RegionLoader(IndexProvider fileStore, MapIndex mapIndex, Executor executor) {
+		this.fileStore = fileStore;
+		this.mapIndex = mapIndex;
+		this.executor = executor;
+	}
+
+	/**
+	 * Reads and decompresses a region's files.
+	 *
+	 * @param region the region id.
+	 * @return the {@link MapRegion}.
+	 * @throws NoSuchElementException if the region, or one of its files, does not exist.
+	 * @throws IOException if one of the region's files cannot be decompressed.
+	 */
+	public MapRegion load(int region) throws IOException {
+		if (!mapIndex.contains(region)) {
+			throw new NoSuchElementException("No region " + region + " in the map index");
+		}
+
+		Index index = fileStore.getIndex(MAP_INDEX);
+		byte[] terrain = read(index, mapIndex.getTerrainFile(region));
+		byte[] objects = read(index, mapIndex.getObjectFile(region));
+		return new MapRegion(region, terrain, objects, mapIndex.isMembers(region));
+	}
+
+	/**
+	 * Reads and decompresses a region's files on the executor.
+	 *
+	 * @param region the region id.
+	 * @return a {@link CompletableFuture} completed with the {@link MapRegion}, or exceptionally if it cannot be loaded.
+	 */
+	public CompletableFuture<MapRegion> prefetch(int region) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return load(region);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Prefetches every listed region within the given distance, in regions, of the region containing a tile.
+	 * Unlisted regions, such as those past the edge of the map, are skipped.
+	 *
+	 * @param x the absolute x coordinate of the tile.
+	 * @param y the absolute y coordinate of the tile.
+	 * @param radius the distance in regions; 1 prefetches the 3 by 3 regions around the tile.
+	 * @return a {@link CompletableFuture} completed with the regions once all have loaded.
+	 */
+	public CompletableFuture<List<MapRegion>> prefetchAround(int x, int y, int radius) {
+		int regionX = x >> 6;
+		int regionY = y >> 6;
+
+		List<CompletableFuture<MapRegion>> futures = new ArrayList<>();
+		for (int dx = -radius; dx <= radius; dx++) {
+			for (int dy = -radius; dy <= radius; dy++) {
+				int rx = regionX + dx;
+				int ry = regionY + dy;
+				if (rx < 0 || rx > 0xFF || ry < 0 || ry > 0xFF) {
+					continue;
+				}
+
+				int region = MapIndex.regionId(rx, ry);
+				if (mapIndex.contains(region)) {
+					futures.add(prefetch(region));
+				}
+			}
+		}
+
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+			List<MapRegion> regions = new ArrayList<>(futures.size());
+			for (CompletableFuture<MapRegion> future : futures) {
+				regions.add(future.join());
+			}
+			return regions;
+		});
+	}
+
+	/**
+	 * Reads a map file and decompresses it, if it is gzipped.
+	 */
+	private static byte[] read(Index index, int fileId) throws IOException {
+		if (index == null || fileId < 0 || fileId >= index.size() || index.isEmpty(fileId)) {
+			throw new NoSuchElementException("No map file " + fileId + " in index " + MAP_INDEX);
+		}
+
+		byte[] payload = index.getEntry(fileId).getData();
+		return GzipUtil.isGzip(payload) ? GzipUtil.gunzipFile(payload) : payload;
+	}
+
+}
@@ -0,0 +1,274 @@
+package rs2.filestore.editor.cache.profile;
+
+import rs2.filestore.editor.cache.archive.Archive;
+import rs2.filestore.editor.cache.fs.IndexProvider;
+import rs2.filestore.editor.cache.fs.index.Index;
+import rs2.filestore.editor.cache.tiered.TieredCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The number of times each file, and each archive member, was read, as recorded by an {@link AccessRecorder}. A
+ * profile is saved as a server stops and replayed as it next starts, so that the files it used most are read and
+ * decoded before any request needs them.
+ * <p>
+ * The profile file starts with {@link #MAGIC} and a version, followed by the file counts and then the archive member
+ * counts, each as a count of records followed by the records: a key as a long, the index id or archive file id in its
+ * upper half and the file id or member identifier in its lower half, then the number of reads as a long.
+ */
+public final class AccessProfile {
+
+	/**
+	 * Identifies a profile file, "RS2A".
+	 */
+	private static final int MAGIC = 0x52533241;
+
+	/**
+	 * The version of the profile file format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The id of the index holding JAG archives.
+	 */
+	private static final int ARCHIVE_INDEX = 0;
+
+	/**
+	 * The number of reads of each file, by key.
+	 */
+	private final Map<Long, Long> files;
+
+	/**
+	 * The number of reads of each archive member, by key.
+	 */
+	private final Map<Long, Long> archiveEntries;
+
+	private AccessProfile(Map<Long, Long> files, Map<Long, Long> archiveEntries) {
+		this.files = files;
+		this.archiveEntries = archiveEntries;
+	}
+
+	static AccessProfile of(Map<Long, Long> files, Map<Long, Long> archiveEntries) {
+		return new AccessProfile(files, archiveEntries);
+	}
+
+	/**
+	 * @param indexId the id of the index the file is stored in.
+	 * @param fileId the id of the file.
+	 * @return the number of times the file was read.
+	 */
+	public long getCount(int indexId, int fileId) {
+		return files.getOrDefault(key(indexId, fileId), 0L);
+	}
+
+	/**
+	 * @param archiveId the file id of the archive.
+	 * @param identifier the identifier of the member.
+	 * @return the number of times the member was read.
+	 */
+	public long getArchiveEntryCount(int archiveId, int identifier) {
+		return archiveEntries.getOrDefault(key(archiveId, identifier), 0L);
+	}
+
+	/**
+	 * @return the number of distinct files read.
+	 */
+	public int getFileCount() {
+		return files.size();
+	}
+
+	/**
+	 * @return the number of distinct archive members read.
+	 */
+	public int getArchiveEntryCount() {
+		return archiveEntries.size();
+	}
+
+	/**
+	 * Chooses the most read files that together account for the given share of all reads. Reads of an archive's
+	 * members count as reads of the archive.
+	 *
+	 * @param coverage the share of reads, from 0 to 1.
+	 * @return the keys of the files, with the number of reads of each, most read first.
+	 */
+	List<Map.Entry<Long, Long>> getHotSet(double coverage) {
+		Map<Long, Long> counts = new HashMap<>(files);
+		archiveEntries.forEach((key, count) -> counts.merge(key(ARCHIVE_INDEX, (int) (key >>> 32)), count, Long::sum));
+
+		List<Map.Entry<Long, Long>> sorted = new ArrayList<>(counts.entrySet());
+		sorted.sort(Map.Entry.<Long, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+		long total = sorted.stream().mapToLong(Map.Entry::getValue).sum();
+
+		List<Map.Entry<Long, Long>> hot = new ArrayList<>();
+		long covered = 0;
+		for (Map.Entry<Long, Long> entry : sorted) {
+			if (covered >= coverage * total) {
+				break;
+			}
+			hot.add(entry);
+			covered += entry.getValue();
+		}
+		return hot;
+	}
+
+	/**
+	 * Reads the hot set of this profile ahead of time, on background threads. The files are read in order of their
+	 * position in the data file, with each thread taking a contiguous run, so the data file is read sequentially.
+	 * Archives are preloaded into the archive cache, and any other file into the file cache, each with its recorded
+	 * number of reads. Files with no cache to be preloaded into are skipped, as reading them would keep nothing; the
+	 * index of each file in the hot set is still decoded, if the file store was opened lazily.
+	 *
+	 * @param fileStore the file store to read from.
+	 * @param archives the cache to decode archives into, or <code>null</code> to skip archives.
+	 * @param files the cache to load other files into, keyed as by {@link TieredCache#forFiles}, or <code>null</code>
+	 * to skip them.
+	 * @param coverage the share of recorded reads the replayed files should account for, from 0 to 1.
+	 * @param threads the number of threads to read with.
+	 * @return a {@link CompletableFuture} completed with the number of files preloaded, once all have been.
+	 */
+	public CompletableFuture<Integer> replay(IndexProvider fileStore, TieredCache<Integer, Archive> archives,
+			TieredCache<Long, byte[]> files, double coverage, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+
+		List<long[]> hot = new ArrayList<>();
+		for (Map.Entry<Long, Long> entry : getHotSet(coverage)) {
+			long key = entry.getKey();
+			int indexId = (int) (key >>> 32);
+			int fileId = (int) key;
+			Index index = indexId < fileStore.getIndexCount() ? fileStore.getIndex(indexId) : null;
+			if ((indexId == ARCHIVE_INDEX ? archives : files) == null) {
+				continue;
+			}
+			if (index != null && fileId < index.size() && !index.isEmpty(fileId)) {
+				hot.add(new long[] { key, index.getInitialChunkPosition(fileId), entry.getValue() });
+			}
+		}
+		hot.sort(Comparator.comparingLong((long[] file) -> file[1]).thenComparingLong(file -> file[0]));
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "access-profile-replay");
+			thread.setDaemon(true);
+			return thread;
+		});
+		AtomicInteger read = new AtomicInteger();
+		int runLength = (hot.size() + threads - 1) / threads;
+
+		List<CompletableFuture<Void>> runs = new ArrayList<>();
+		for (int start = 0; start < hot.size(); start += runLength) {
+			List<long[]> run = hot.subList(start, Math.min(hot.size(), start + runLength));
+			runs.add(CompletableFuture.runAsync(() -> {
+				for (long[] file : run) {
+					if (preload(archives, files, file[0], file[2])) {
+						read.incrementAndGet();
+					}
+				}
+			}, executor));
+		}
+		executor.shutdown();
+
+		return CompletableFuture.allOf(runs.toArray(new CompletableFuture<?>[0])).thenApply(done -> read.get());
+	}
+
+	/**
+	 * Preloads a single file into its cache, skipping it if it cannot be read, such as a file that has since become
+	 * invalid.
+	 *
+	 * @return <code>true</code> if the file was preloaded.
+	 */
+	private static boolean preload(TieredCache<Integer, Archive> archives, TieredCache<Long, byte[]> files, long key, long reads) {
+		int requests = (int) Math.min(Integer.MAX_VALUE, reads);
+		try {
+			if ((int) (key >>> 32) == ARCHIVE_INDEX) {
+				archives.preload((int) key, requests);
+			} else {
+				files.preload(key, requests);
+			}
+			return true;
+		} catch (IOException | RuntimeException e) {
+			return false;
+		}
+	}
+
+	private static long key(int high, int low) {
+		return (long) high << 32 | (low & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Writes this profile to a file.
+	 *
+	 * @param path the path of the profile file.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public void write(Path path) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			write(out, files);
+			write(out, archiveEntries);
+		}
+	}
+
+	private static void write(DataOutputStream out, Map<Long, Long> counts) throws IOException {
+		out.writeInt(counts.size());
+		for (Map.Entry<Long, Long> count : counts.entrySet()) {
+			out.writeLong(count.getKey());
+			out.writeLong(count.getValue());
+		}
+	}
+
+	/**
+	 * Reads a profile from a file.
+	 *
+	 * @param path the path of the profile file.
+	 * @return the {@link AccessProfile}.
+	 * @throws IOException if the file cannot be read or is not a profile file.
+	 */
+	public static AccessProfile read(Path path) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(path + ": not an access profile");
+			}
+			int version = in.readUnsignedByte();
+			if (version != VERSION) {
+				throw new IOException(path + ": unsupported access profile version " + version);
+			}
+			return new AccessProfile(read(path, in), read(path, in));
+		}
+	}
+
+	private static Map<Long, Long> read(Path path, DataInputStream in) throws IOException {
+		int size = in.readInt();
+		if (size < 0) {
+			throw new IOException(path + ": invalid record count " + size);
+		}
+		// the count is not trusted to size the map, a corrupt profile ends early instead
+		Map<Long, Long> counts = new HashMap<>();
+		for (int record = 0; record < size; record++) {
+			counts.put(in.readLong(), in.readLong());
+		}
+		return counts;
+	}
+
+	@Override
+	public String toString() {
+		return files.size() + " files, " + archiveEntries.size() + " archive entries";
+	}
+
+}
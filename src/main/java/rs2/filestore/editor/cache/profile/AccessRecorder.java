@@ -0,0 +1,126 @@
+package rs2.filestore.editor.cache.profile;
+
+import rs2.filestore.editor.cache.fs.IndexProvider;
+import rs2.filestore.editor.cache.fs.index.Index;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the files, and the members of archives, read while a server runs, so that they can be read ahead of time
+ * at the next start with {@link AccessProfile#replay}. Files are recorded as they are read through
+ * {@link #wrap(IndexProvider)}, or explicitly with {@link #recordFile(int, int)}; archive members are recorded with
+ * {@link #recordArchiveEntry(int, int)}. Reads answered by a cache in front of the file store are not seen by the
+ * wrapper, so should be recorded explicitly if they are to count.
+ * <p>
+ * Instances are thread-safe, and recording only updates a counter once a file has been seen.
+ */
+public final class AccessRecorder {
+
+	/**
+	 * The number of reads of each file, by its index id shifted left by 32, or'd with its file id.
+	 */
+	private final Map<Long, LongAdder> files = new ConcurrentHashMap<>();
+
+	/**
+	 * The number of reads of each archive member, by its archive's file id shifted left by 32, or'd with its
+	 * identifier.
+	 */
+	private final Map<Long, LongAdder> archiveEntries = new ConcurrentHashMap<>();
+
+	/**
+	 * Wraps a file store so that every entry read from it is recorded.
+	 *
+	 * @param fileStore the file store.
+	 * @return an {@link IndexProvider} reading from the file store.
+	 */
+	public IndexProvider wrap(IndexProvider fileStore) {
+		AtomicReferenceArray<RecordingIndex> wrapped = new AtomicReferenceArray<>(fileStore.getIndexCount());
+		return new IndexProvider() {
+
+			@Override
+			public Index getIndex(int indexId) {
+				Index index = fileStore.getIndex(indexId);
+				if (index == null) {
+					return null;
+				}
+
+				// the index is wrapped again if the file store has replaced it, such as on a reload
+				RecordingIndex recording = wrapped.get(indexId);
+				if (recording == null || !recording.wraps(index)) {
+					recording = new RecordingIndex(index, AccessRecorder.this);
+					wrapped.set(indexId, recording);
+				}
+				return recording;
+			}
+
+			@Override
+			public int getIndexCount() {
+				return fileStore.getIndexCount();
+			}
+
+		};
+	}
+
+	/**
+	 * Records a read of a file.
+	 *
+	 * @param indexId the id of the index the file is stored in.
+	 * @param fileId the id of the file.
+	 */
+	public void recordFile(int indexId, int fileId) {
+		long key = key(indexId, fileId);
+		// computeIfAbsent locks its bin even when the key is present, so it is only called on a miss
+		LongAdder count = files.get(key);
+		if (count == null) {
+			count = files.computeIfAbsent(key, id -> new LongAdder());
+		}
+		count.increment();
+	}
+
+	/**
+	 * Records a read of a member of an archive in index 0.
+	 *
+	 * @param archiveId the file id of the archive.
+	 * @param identifier the identifier of the member.
+	 */
+	public void recordArchiveEntry(int archiveId, int identifier) {
+		long key = key(archiveId, identifier);
+		LongAdder count = archiveEntries.get(key);
+		if (count == null) {
+			count = archiveEntries.computeIfAbsent(key, id -> new LongAdder());
+		}
+		count.increment();
+	}
+
+	private static long key(int high, int low) {
+		return (long) high << 32 | (low & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Takes the counts recorded so far. Recording carries on unaffected.
+	 *
+	 * @return an {@link AccessProfile} of the counts.
+	 */
+	public AccessProfile snapshot() {
+		return AccessProfile.of(counts(files), counts(archiveEntries));
+	}
+
+	private static Map<Long, Long> counts(Map<Long, LongAdder> adders) {
+		Map<Long, Long> counts = new HashMap<>();
+		adders.forEach((key, adder) -> counts.put(key, adder.sum()));
+		return counts;
+	}
+
+	/**
+	 * Clears every count.
+	 */
+	public void reset() {
+		files.clear();
+		archiveEntries.clear();
+	}
+
+}
@@ -0,0 +1,105 @@
+package rs2.filestore.editor.cache.profile;
+
+import rs2.filestore.editor.cache.fs.index.Index;
+import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * An {@link Index} that records each entry read from another index with an {@link AccessRecorder}.
+ */
+final class RecordingIndex extends Index {
+
+	private final Index index;
+
+	private final AccessRecorder recorder;
+
+	RecordingIndex(Index index, AccessRecorder recorder) {
+		super(index.getId(), index.getLength());
+		this.index = index;
+		this.recorder = recorder;
+	}
+
+	/**
+	 * @param index an index.
+	 * @return <code>true</code> if this records reads of the given index.
+	 */
+	boolean wraps(Index index) {
+		return this.index == index;
+	}
+
+	@Override
+	public IndexEntry getEntry(int fileId) {
+		IndexEntry entry = index.getEntry(fileId);
+		if (!entry.isEmpty()) {
+			recorder.recordFile(getId(), fileId);
+		}
+		return entry;
+	}
+
+	@Override
+	public List<IndexEntry> getEntries() {
+		return new AbstractList<IndexEntry>() {
+
+			@Override
+			public IndexEntry get(int fileId) {
+				return getEntry(fileId);
+			}
+
+			@Override
+			public int size() {
+				return index.size();
+			}
+
+		};
+	}
+
+	@Override
+	public void setEntry(int fileId, IndexEntry entry) {
+		index.setEntry(fileId, entry);
+	}
+
+	@Override
+	public boolean addEntry(IndexEntry entry) {
+		return index.addEntry(entry);
+	}
+
+	@Override
+	public boolean isEmpty(int fileId) {
+		return index.isEmpty(fileId);
+	}
+
+	@Override
+	public int getFileSize(int fileId) {
+		return index.getFileSize(fileId);
+	}
+
+	@Override
+	public int getInitialChunkPosition(int fileId) {
+		return index.getInitialChunkPosition(fileId);
+	}
+
+	@Override
+	public IntStream nonEmptyFileIds() {
+		return index.nonEmptyFileIds();
+	}
+
+	@Override
+	public int size() {
+		return index.size();
+	}
+
+	@Override
+	public boolean hasChanged() {
+		return index.hasChanged();
+	}
+
+	@Override
+	public Iterator<IndexEntry> iterator() {
+		return getEntries().iterator();
+	}
+
+}
@@ -0,0 +1,145 @@
+package rs2.filestore.editor.cache.tiered;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed amount of memory outside of the heap, allocated in direct buffers and handed out in pages. A block of bytes
+ * is stored across as many pages as it needs, which need not be adjacent, so freed pages can always be reused.
+ * <p>
+ * Instances are not thread-safe.
+ */
+final class OffHeapArena {
+
+	/**
+	 * The size of a page, in bytes.
+	 */
+	static final int PAGE_SIZE = 4096;
+
+	/**
+	 * The number of pages in each direct buffer.
+	 */
+	private static final int PAGES_PER_SEGMENT = 1 << 14;
+
+	/**
+	 * The direct buffers holding the pages, each {@link #PAGES_PER_SEGMENT} pages long but for the last.
+	 */
+	private final ByteBuffer[] segments;
+
+	/**
+	 * The free pages, as a stack.
+	 */
+	private final int[] freePages;
+
+	/**
+	 * The number of free pages.
+	 */
+	private int freeCount;
+
+	/**
+	 * Allocates an arena.
+	 *
+	 * @param capacity the size of the arena, in bytes, rounded down to a whole number of pages.
+	 */
+	OffHeapArena(long capacity) {
+		long pages = capacity / PAGE_SIZE;
+		if (pages > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException(capacity + " bytes is too large for an arena");
+		}
+
+		int pageCount = (int) pages;
+		segments = new ByteBuffer[(pageCount + PAGES_PER_SEGMENT - 1) / PAGES_PER_SEGMENT];
+		for (int segment = 0; segment < segments.length; segment++) {
+			int segmentPages = Math.min(PAGES_PER_SEGMENT, pageCount - segment * PAGES_PER_SEGMENT);
+			segments[segment] = ByteBuffer.allocateDirect(segmentPages * PAGE_SIZE);
+		}
+
+		freePages = new int[pageCount];
+		for (int page = 0; page < pageCount; page++) {
+			freePages[page] = pageCount - 1 - page;
+		}
+		freeCount = pageCount;
+	}
+
+	/**
+	 * @param length a number of bytes.
+	 * @return the number of pages needed to store that many bytes.
+	 */
+	static int pagesFor(int length) {
+		return Math.max(1, (length + PAGE_SIZE - 1) / PAGE_SIZE);
+	}
+
+	/**
+	 * Stores a block of bytes.
+	 *
+	 * @param data the bytes.
+	 * @return the pages holding the bytes, in order, or <code>null</code> if there are not enough free pages.
+	 */
+	int[] store(byte[] data) {
+		int count = pagesFor(data.length);
+		if (count > freeCount) {
+			return null;
+		}
+
+		int[] pages = new int[count];
+		for (int index = 0; index < count; index++) {
+			int page = pages[index] = freePages[--freeCount];
+			int offset = index * PAGE_SIZE;
+			ByteBuffer segment = segment(page);
+			segment.position(offset(page));
+			segment.put(data, offset, Math.min(PAGE_SIZE, data.length - offset));
+		}
+		return pages;
+	}
+
+	/**
+	 * Reads a block of bytes back.
+	 *
+	 * @param pages the pages holding the bytes.
+	 * @param length the number of bytes.
+	 * @return a new array holding the bytes.
+	 */
+	byte[] read(int[] pages, int length) {
+		byte[] data = new byte[length];
+		for (int index = 0; index < pages.length; index++) {
+			int offset = index * PAGE_SIZE;
+			ByteBuffer segment = segment(pages[index]);
+			segment.position(offset(pages[index]));
+			segment.get(data, offset, Math.min(PAGE_SIZE, length - offset));
+		}
+		return data;
+	}
+
+	/**
+	 * Returns the pages of a block to the arena.
+	 *
+	 * @param pages the pages holding the block.
+	 */
+	void free(int[] pages) {
+		for (int page : pages) {
+			freePages[freeCount++] = page;
+		}
+	}
+
+	private ByteBuffer segment(int page) {
+		return segments[page / PAGES_PER_SEGMENT];
+	}
+
+	private static int offset(int page) {
+		return (page % PAGES_PER_SEGMENT) * PAGE_SIZE;
+	}
+
+	/**
+	 * @return the size of the arena, in bytes.
+	 */
+	long getCapacity() {
+		return (long) freePages.length * PAGE_SIZE;
+	}
+
+	/**
+	 * @return the number of bytes in pages in use.
+	 */
+	long getUsed() {
+		return (long) (freePages.length - freeCount) * PAGE_SIZE;
+	}
+
+}
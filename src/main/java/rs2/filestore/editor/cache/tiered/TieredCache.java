@@ -0,0 +1,487 @@
+package rs2.filestore.editor.cache.tiered;
+
+import rs2.filestore.editor.cache.archive.Archive;
+import rs2.filestore.editor.cache.archive.ArchiveCodec;
+import rs2.filestore.editor.cache.archive.ArchiveEntry;
+import rs2.filestore.editor.cache.fs.IndexProvider;
+import rs2.filestore.editor.cache.fs.index.Index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.ToLongFunction;
+
+/**
+ * A two tier cache of objects decoded from a file store. The hot tier holds decoded objects on the heap, and the warm
+ * tier holds the encoded, usually compressed, bytes they were decoded from in an arena outside of the heap, so that
+ * only the most used objects take up heap space. Each tier has its own budget in bytes.
+ * <p>
+ * Every request counts towards an entry's frequency. A loaded entry starts in the warm tier, and is promoted to the
+ * hot tier when it is requested again, if the hot tier has room for it or it has been requested more often than the
+ * entry it would displace. Displaced entries are demoted back to the warm tier, and the warm tier drops its least
+ * requested entries to make room. Victims are the least requested of the least recently used few entries of a tier,
+ * and frequencies are halved from time to time, so that entries that are no longer used lose their place.
+ * <p>
+ * Cached objects are shared by every caller, so must not be modified. Instances are thread-safe; objects are decoded
+ * without holding the cache's lock.
+ *
+ * @param <K> the type of key.
+ * @param <V> the type of decoded object.
+ */
+public final class TieredCache<K, V> {
+
+	/**
+	 * Reads the encoded bytes of an entry from a file store.
+	 *
+	 * @param <K> the type of key.
+	 */
+	@FunctionalInterface
+	public interface Loader<K> {
+
+		/**
+		 * @param key the key of the entry.
+		 * @return the encoded bytes of the entry.
+		 * @throws IOException if the entry cannot be read.
+		 */
+		byte[] load(K key) throws IOException;
+
+	}
+
+	/**
+	 * Decodes the encoded bytes of an entry.
+	 *
+	 * @param <V> the type of decoded object.
+	 */
+	@FunctionalInterface
+	public interface Decoder<V> {
+
+		/**
+		 * @param bytes the encoded bytes of the entry.
+		 * @return the decoded object.
+		 * @throws IOException if the bytes cannot be decoded.
+		 */
+		V decode(byte[] bytes) throws IOException;
+
+	}
+
+	/**
+	 * The number of least recently used entries a victim is chosen from.
+	 */
+	private static final int EVICTION_SAMPLE = 8;
+
+	/**
+	 * The fewest requests between each halving of the frequencies.
+	 */
+	private static final int MINIMUM_AGING_PERIOD = 1024;
+
+	/**
+	 * The highest frequency an entry can be preloaded with, so that preloaded entries can still be displaced once
+	 * they stop being used.
+	 */
+	private static final int MAXIMUM_PRELOAD_FREQUENCY = 16;
+
+	/**
+	 * The estimated heap size of an archive's bookkeeping, and of each of its entries, in bytes.
+	 */
+	private static final int ARCHIVE_OVERHEAD = 64;
+
+	/**
+	 * The estimated heap size of a byte array's header, in bytes.
+	 */
+	private static final int ARRAY_OVERHEAD = 16;
+
+	private static final class Node<V> {
+
+		/**
+		 * The decoded object, while in the hot tier.
+		 */
+		V value;
+
+		/**
+		 * The estimated size of {@link #value}, in bytes, while in the hot tier.
+		 */
+		long weight;
+
+		/**
+		 * The arena pages holding the encoded bytes, while in the warm tier.
+		 */
+		int[] pages;
+
+		/**
+		 * The number of encoded bytes, while in the warm tier.
+		 */
+		int length;
+
+		/**
+		 * The number of requests for the entry, halved every aging period.
+		 */
+		int frequency;
+
+	}
+
+	private final Loader<K> loader;
+
+	private final Decoder<V> decoder;
+
+	/**
+	 * Estimates the heap size of a decoded object, in bytes.
+	 */
+	private final ToLongFunction<V> weigher;
+
+	/**
+	 * The hot tier, in access order.
+	 */
+	private final LinkedHashMap<K, Node<V>> hot = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The warm tier, in access order.
+	 */
+	private final LinkedHashMap<K, Node<V>> warm = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The arena holding the encoded bytes of the warm tier.
+	 */
+	private final OffHeapArena arena;
+
+	/**
+	 * The budget of the hot tier, in bytes.
+	 */
+	private final long hotBudget;
+
+	/**
+	 * The estimated size of the objects in the hot tier, in bytes.
+	 */
+	private long hotWeight;
+
+	/**
+	 * The number of requests since the frequencies were last halved.
+	 */
+	private int requestsSinceAging;
+
+	private long hotHits;
+
+	private long warmHits;
+
+	private long misses;
+
+	private long promotions;
+
+	private long demotions;
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param loader reads the encoded bytes of an entry.
+	 * @param decoder decodes the encoded bytes of an entry.
+	 * @param weigher estimates the heap size of a decoded object, in bytes.
+	 * @param hotBudget the budget of the heap tier, in bytes.
+	 * @param warmBudget the budget of the off-heap tier, in bytes, which is allocated up front.
+	 */
+	public TieredCache(Loader<K> loader, Decoder<V> decoder, ToLongFunction<V> weigher, long hotBudget, long warmBudget) {
+		if (hotBudget < 0 || warmBudget < 0) {
+			throw new IllegalArgumentException("budgets must not be negative");
+		}
+		this.loader = loader;
+		this.decoder = decoder;
+		this.weigher = weigher;
+		this.hotBudget = hotBudget;
+		this.arena = new OffHeapArena(warmBudget);
+	}
+
+	/**
+	 * Creates a cache of the JAG archives in index 0 of a file store, keyed by file id.
+	 *
+	 * @param fileStore the file store.
+	 * @param hotBudget the budget of the heap tier, in bytes.
+	 * @param warmBudget the budget of the off-heap tier, in bytes, which is allocated up front.
+	 * @return the {@link TieredCache}.
+	 */
+	public static TieredCache<Integer, Archive> forArchives(IndexProvider fileStore, long hotBudget, long warmBudget) {
+		return new TieredCache<>(fileId -> {
+			Index index = fileStore.getIndexCount() > 0 ? fileStore.getIndex(0) : null;
+			if (index == null || fileId < 0 || fileId >= index.size() || index.isEmpty(fileId)) {
+				throw new NoSuchElementException("No archive " + fileId);
+			}
+			return index.getEntry(fileId).getData();
+		}, ArchiveCodec::decode, TieredCache::weigh, hotBudget, warmBudget);
+	}
+
+	/**
+	 * Creates a cache of the files of a file store, as stored, keyed by index id shifted left by 32 or'd with file id.
+	 * Files are not decoded, so the hot tier holds a copy of the stored bytes on the heap.
+	 *
+	 * @param fileStore the file store.
+	 * @param hotBudget the budget of the heap tier, in bytes.
+	 * @param warmBudget the budget of the off-heap tier, in bytes, which is allocated up front.
+	 * @return the {@link TieredCache}.
+	 */
+	public static TieredCache<Long, byte[]> forFiles(IndexProvider fileStore, long hotBudget, long warmBudget) {
+		return new TieredCache<>(key -> {
+			int indexId = (int) (key >>> 32);
+			int fileId = (int) (long) key;
+			Index index = indexId >= 0 && indexId < fileStore.getIndexCount() ? fileStore.getIndex(indexId) : null;
+			if (index == null || fileId < 0 || fileId >= index.size() || index.isEmpty(fileId)) {
+				throw new NoSuchElementException("No file " + fileId + " in index " + indexId);
+			}
+			return index.getEntry(fileId).getData();
+		}, bytes -> bytes, bytes -> ARRAY_OVERHEAD + bytes.length, hotBudget, warmBudget);
+	}
+
+	private static long weigh(Archive archive) {
+		long weight = ARCHIVE_OVERHEAD;
+		for (ArchiveEntry entry : archive.getEntries()) {
+			weight += ARCHIVE_OVERHEAD + entry.getBuffer().length();
+		}
+		return weight;
+	}
+
+	/**
+	 * Gets the decoded object for a key, loading and decoding it if it is not in the hot tier.
+	 *
+	 * @param key the key.
+	 * @return the decoded object, which must not be modified.
+	 * @throws IOException if the entry cannot be loaded or decoded.
+	 */
+	public V get(K key) throws IOException {
+		byte[] bytes = null;
+		synchronized (this) {
+			age();
+
+			Node<V> node = hot.get(key);
+			if (node != null) {
+				hotHits++;
+				node.frequency++;
+				return node.value;
+			}
+
+			node = warm.get(key);
+			if (node != null) {
+				warmHits++;
+				node.frequency++;
+				bytes = arena.read(node.pages, node.length);
+			} else {
+				misses++;
+			}
+		}
+
+		if (bytes == null) {
+			bytes = loader.load(key);
+		}
+		V value = decoder.decode(bytes);
+
+		admit(key, bytes, value, 1);
+		return value;
+	}
+
+	/**
+	 * Loads and decodes an entry ahead of any request for it, as though it had already been requested the given
+	 * number of times, so that an entry expected to be hot is placed straight into the hot tier if it has earned it.
+	 * Preloading is not counted as a request.
+	 *
+	 * @param key the key.
+	 * @param requests the number of requests expected, such as the number recorded in a previous run.
+	 * @throws IOException if the entry cannot be loaded or decoded.
+	 */
+	public void preload(K key, int requests) throws IOException {
+		byte[] bytes = null;
+		synchronized (this) {
+			if (hot.containsKey(key)) {
+				return;
+			}
+			Node<V> node = warm.get(key);
+			if (node != null) {
+				bytes = arena.read(node.pages, node.length);
+			}
+		}
+
+		if (bytes == null) {
+			bytes = loader.load(key);
+		}
+		admit(key, bytes, decoder.decode(bytes), Math.min(requests, MAXIMUM_PRELOAD_FREQUENCY));
+	}
+
+	/**
+	 * Admits a requested entry and demotes any entries it displaced.
+	 */
+	private void admit(K key, byte[] bytes, V value, int requests) {
+		List<Map.Entry<K, Node<V>>> demoted;
+		synchronized (this) {
+			demoted = admit(key, bytes, value, requests, new ArrayList<>());
+		}
+		for (Map.Entry<K, Node<V>> entry : demoted) {
+			demote(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Places a requested entry in the warm tier, if it is not already cached, and promotes it if it has earned it.
+	 *
+	 * @param requests the number of requests the entry is known to have had, at least.
+	 * @return the entries displaced from the hot tier, to be demoted.
+	 */
+	private List<Map.Entry<K, Node<V>>> admit(K key, byte[] bytes, V value, int requests, List<Map.Entry<K, Node<V>>> demoted) {
+		Node<V> hotNode = hot.get(key);
+		if (hotNode != null) {
+			// promoted by another request while this one was decoding
+			return demoted;
+		}
+
+		Node<V> node = warm.get(key);
+		if (node == null) {
+			node = new Node<>();
+			node.frequency = requests;
+			storeWarm(key, node, bytes);
+			if (requests < 2 || !warm.containsKey(key)) {
+				return demoted;
+			}
+		}
+		node.frequency = Math.max(node.frequency, requests);
+
+		long weight = weigher.applyAsLong(value);
+		if (node.frequency < 2 || weight > hotBudget) {
+			return demoted;
+		}
+
+		// a full hot tier only takes an entry requested more often than the one it would displace
+		while (hotWeight + weight > hotBudget) {
+			Map.Entry<K, Node<V>> victim = victim(hot);
+			if (victim.getValue().frequency >= node.frequency) {
+				break;
+			}
+			hot.remove(victim.getKey());
+			hotWeight -= victim.getValue().weight;
+			victim.getValue().value = null;
+			demoted.add(victim);
+		}
+		if (hotWeight + weight > hotBudget) {
+			return demoted;
+		}
+
+		warm.remove(key);
+		arena.free(node.pages);
+		node.pages = null;
+		node.value = value;
+		node.weight = weight;
+		hot.put(key, node);
+		hotWeight += weight;
+		promotions++;
+		return demoted;
+	}
+
+	/**
+	 * Returns an entry displaced from the hot tier to the warm tier, reading its encoded bytes again.
+	 */
+	private void demote(K key, Node<V> node) {
+		byte[] bytes;
+		try {
+			bytes = loader.load(key);
+		} catch (IOException | RuntimeException e) {
+			// the entry is dropped, and loaded again if it is requested
+			return;
+		}
+
+		synchronized (this) {
+			if (!hot.containsKey(key) && !warm.containsKey(key)) {
+				storeWarm(key, node, bytes);
+				demotions++;
+			}
+		}
+	}
+
+	/**
+	 * Stores an entry in the warm tier, dropping the least requested entries to make room. An entry too large for the
+	 * arena is not stored.
+	 */
+	private void storeWarm(K key, Node<V> node, byte[] bytes) {
+		int[] pages;
+		while ((pages = arena.store(bytes)) == null && !warm.isEmpty()) {
+			Map.Entry<K, Node<V>> victim = victim(warm);
+			warm.remove(victim.getKey());
+			arena.free(victim.getValue().pages);
+		}
+		if (pages == null) {
+			return;
+		}
+
+		node.pages = pages;
+		node.length = bytes.length;
+		warm.put(key, node);
+	}
+
+	/**
+	 * Chooses the least requested of the least recently used few entries of a tier.
+	 */
+	private static <K, V> Map.Entry<K, Node<V>> victim(LinkedHashMap<K, Node<V>> tier) {
+		Iterator<Map.Entry<K, Node<V>>> iterator = tier.entrySet().iterator();
+		Map.Entry<K, Node<V>> victim = iterator.next();
+		for (int sampled = 1; sampled < EVICTION_SAMPLE && iterator.hasNext(); sampled++) {
+			Map.Entry<K, Node<V>> candidate = iterator.next();
+			if (candidate.getValue().frequency < victim.getValue().frequency) {
+				victim = candidate;
+			}
+		}
+		return victim;
+	}
+
+	/**
+	 * Halves every frequency once enough requests have been made since it was last done.
+	 */
+	private void age() {
+		if (++requestsSinceAging < Math.max(MINIMUM_AGING_PERIOD, 8 * (hot.size() + warm.size()))) {
+			return;
+		}
+		requestsSinceAging = 0;
+		for (Node<V> node : hot.values()) {
+			node.frequency >>= 1;
+		}
+		for (Node<V> node : warm.values()) {
+			node.frequency >>= 1;
+		}
+	}
+
+	/**
+	 * Removes an entry from both tiers.
+	 *
+	 * @param key the key.
+	 */
+	public synchronized void invalidate(K key) {
+		Node<V> node = hot.remove(key);
+		if (node != null) {
+			hotWeight -= node.weight;
+		}
+		node = warm.remove(key);
+		if (node != null) {
+			arena.free(node.pages);
+		}
+	}
+
+	/**
+	 * Removes every entry from both tiers.
+	 */
+	public synchronized void invalidateAll() {
+		hot.clear();
+		hotWeight = 0;
+		for (Node<V> node : warm.values()) {
+			arena.free(node.pages);
+		}
+		warm.clear();
+	}
+
+	/**
+	 * @return a snapshot of the activity and occupancy of this cache.
+	 */
+	public synchronized TieredCacheStats getStats() {
+		return new TieredCacheStats(hotHits, warmHits, misses, promotions, demotions, hotWeight, arena.getUsed(),
+				hot.size(), warm.size());
+	}
+
+	@Override
+	public String toString() {
+		return getStats().toString();
+	}
+
+}
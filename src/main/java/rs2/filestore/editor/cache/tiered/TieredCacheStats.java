@@ -0,0 +1,136 @@
+package rs2.filestore.editor.cache.tiered;
+
+/**
+ * A snapshot of the activity and occupancy of a {@link TieredCache}.
+ */
+public final class TieredCacheStats {
+
+	/**
+	 * The number of requests answered from the heap tier.
+	 */
+	private final long hotHits;
+
+	/**
+	 * The number of requests answered from the off-heap tier.
+	 */
+	private final long warmHits;
+
+	/**
+	 * The number of requests that had to be loaded from the file store.
+	 */
+	private final long misses;
+
+	/**
+	 * The number of entries moved from the off-heap tier to the heap tier.
+	 */
+	private final long promotions;
+
+	/**
+	 * The number of entries moved from the heap tier to the off-heap tier.
+	 */
+	private final long demotions;
+
+	/**
+	 * The estimated size of the decoded objects in the heap tier, in bytes.
+	 */
+	private final long hotBytes;
+
+	/**
+	 * The size of the pages in use in the off-heap tier, in bytes.
+	 */
+	private final long warmBytes;
+
+	private final int hotEntries;
+
+	private final int warmEntries;
+
+	TieredCacheStats(long hotHits, long warmHits, long misses, long promotions, long demotions, long hotBytes,
+			long warmBytes, int hotEntries, int warmEntries) {
+		this.hotHits = hotHits;
+		this.warmHits = warmHits;
+		this.misses = misses;
+		this.promotions = promotions;
+		this.demotions = demotions;
+		this.hotBytes = hotBytes;
+		this.warmBytes = warmBytes;
+		this.hotEntries = hotEntries;
+		this.warmEntries = warmEntries;
+	}
+
+	public long getHotHits() {
+		return hotHits;
+	}
+
+	public long getWarmHits() {
+		return warmHits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getPromotions() {
+		return promotions;
+	}
+
+	public long getDemotions() {
+		return demotions;
+	}
+
+	public long getHotBytes() {
+		return hotBytes;
+	}
+
+	public long getWarmBytes() {
+		return warmBytes;
+	}
+
+	public int getHotEntries() {
+		return hotEntries;
+	}
+
+	public int getWarmEntries() {
+		return warmEntries;
+	}
+
+	/**
+	 * @return the number of requests made.
+	 */
+	public long getRequests() {
+		return hotHits + warmHits + misses;
+	}
+
+	/**
+	 * @return the fraction of requests answered from the heap tier.
+	 */
+	public double getHotHitRatio() {
+		return ratio(hotHits);
+	}
+
+	/**
+	 * @return the fraction of requests answered from the off-heap tier.
+	 */
+	public double getWarmHitRatio() {
+		return ratio(warmHits);
+	}
+
+	/**
+	 * @return the fraction of requests answered from either tier.
+	 */
+	public double getHitRatio() {
+		return ratio(hotHits + warmHits);
+	}
+
+	private double ratio(long hits) {
+		long requests = getRequests();
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d requests, hot %.1f%% (%d entries, %d bytes), warm %.1f%% (%d entries, %d bytes), "
+						+ "%d promotions, %d demotions", getRequests(), getHotHitRatio() * 100, hotEntries, hotBytes,
+				getWarmHitRatio() * 100, warmEntries, warmBytes, promotions, demotions);
+	}
+
+}
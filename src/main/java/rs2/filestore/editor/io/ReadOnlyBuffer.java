@@ -1,12 +1,16 @@
 package rs2.filestore.editor.io;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.nio.file.StandardOpenOption;
 
 /**
- * A simple read-only byte buffer.
+ * A simple read-only byte buffer, over either a byte array or a file mapped into memory. Every read is made at an
+ * absolute position of the underlying {@link ByteBuffer}, whose own position is never moved, so duplicates may read
+ * it concurrently.
  * 
  * @author Sam.
  */
@@ -15,7 +19,7 @@ public final class ReadOnlyBuffer {
 	/**
 	 * The bytes of data in this buffer.
 	 */
-	private byte[] bytes;
+	private final ByteBuffer bytes;
 
 	/**
 	 * The current index to read from.
@@ -23,11 +27,11 @@ public final class ReadOnlyBuffer {
 	private int readIndex;
 	
 	/**
-	 * Constructs a new {@link ReadOnlyBuffer} with the given byte array.
+	 * Constructs a new {@link ReadOnlyBuffer} with the given bytes.
 	 * 
 	 * @param buffer
 	 */
-	private ReadOnlyBuffer(byte[] buffer) {
+	private ReadOnlyBuffer(ByteBuffer buffer) {
 		this.bytes = buffer;
 		readIndex = 0;
 	}
@@ -39,7 +43,7 @@ public final class ReadOnlyBuffer {
 	 * @return {@code true} if there are >= bytes in this buffer
 	 */
 	public boolean hasRemainingBytes(int bytes) {
-		return readIndex <= (this.bytes.length - bytes);
+		return readIndex <= (this.bytes.limit() - bytes);
 	}
 	
 	/**
@@ -48,8 +52,8 @@ public final class ReadOnlyBuffer {
 	 * @param position the position to set {@link #readIndex} to.
 	 */
 	public void seek(int position) {
-		if (position >= bytes.length) {
-			throw new IndexOutOfBoundsException("position >= bytes.length, attempted to seek too far");
+		if (position >= bytes.limit()) {
+			throw new IndexOutOfBoundsException("position >= length(), attempted to seek too far");
 		}
 		this.readIndex = position;
 	}
@@ -60,11 +64,31 @@ public final class ReadOnlyBuffer {
 	 * @return the bytes.
 	 */
 	public byte[] getBytes() {
-		return Arrays.copyOf(bytes, bytes.length);
+		return copy(0, bytes.limit());
+	}
+	
+	/**
+	 * Creates a new {@link ReadOnlyBuffer} sharing the bytes of this buffer, with its own {@link #readIndex}. This
+	 * allows several threads to read the same bytes concurrently.
+	 *
+	 * @return a view of this buffer, reading from the start.
+	 */
+	public ReadOnlyBuffer duplicate() {
+		return new ReadOnlyBuffer(bytes);
+	}
+	
+	/**
+	 * Gets a read-only {@link ByteBuffer} view of the bytes in this buffer, without copying them. The view has its own
+	 * position, starting at zero, and does not move {@link #readIndex}.
+	 *
+	 * @return a view of the bytes in this buffer.
+	 */
+	public ByteBuffer asByteBuffer() {
+		return bytes.asReadOnlyBuffer();
 	}
 	
 	public ReadOnlyBuffer split(int offset) {
-		return new ReadOnlyBuffer(Arrays.copyOfRange(bytes, offset, bytes.length));
+		return new ReadOnlyBuffer(ByteBuffer.wrap(copy(offset, bytes.limit())));
 	}
 	
 	/**
@@ -74,23 +98,65 @@ public final class ReadOnlyBuffer {
 	 * @return a byte array of the next {@code length} bytes.
 	 */
 	public byte[] getBytes(int length) {
-		return Arrays.copyOfRange(bytes, readIndex, readIndex += length);
+		byte[] copy = copy(readIndex, readIndex + length);
+		readIndex += length;
+		return copy;
 	}
 	
+	/**
+	 * Gets the specified number of unsigned bytes and progresses the read pointer.
+	 *
+	 * @param length the number of unsigned bytes to get.
+	 * @return an array of the next {@code length} unsigned bytes.
+	 */
+	public int[] getUnsignedBytes(int length) {
+		int[] values = new int[length];
+		for (int index = 0, position = readIndex; index < length; index++) {
+			values[index] = bytes.get(position++) & 0xff;
+		}
+		readIndex += length;
+		return values;
+	}
+	
+	/**
+	 * Gets the specified number of unsigned shorts (16-bits) and progresses the read pointer.
+	 *
+	 * @param length the number of unsigned shorts to get.
+	 * @return an array of the next {@code length} unsigned shorts.
+	 */
 	public int[] getUnsignedShorts(int length) {
 		int[] shorts = new int[length];
-		for (int index = 0; index < length; index++) {
-			shorts[index] = (short) ((getUnsigned() << 8) | getUnsigned());
+		for (int index = 0, position = readIndex; index < length; index++, position += 2) {
+			shorts[index] = ((bytes.get(position) & 0xff) << 8) | (bytes.get(position + 1) & 0xff);
 		}
+		readIndex += length * 2;
 		return shorts;
 	}
 	
+	/**
+	 * Gets the specified number of 32-bit integers and progresses the read pointer.
+	 *
+	 * @param length the number of integers to get.
+	 * @return an array of the next {@code length} integers.
+	 */
+	public int[] getInts(int length) {
+		int[] ints = new int[length];
+		for (int index = 0, position = readIndex; index < length; index++, position += 4) {
+			ints[index] = ((bytes.get(position) & 0xff) << 24)
+					| ((bytes.get(position + 1) & 0xff) << 16)
+					| ((bytes.get(position + 2) & 0xff) << 8)
+					| (bytes.get(position + 3) & 0xff);
+		}
+		readIndex += length * 4;
+		return ints;
+	}
+	
 	/**
 	 * Get the length of the under-lying byte buffer.
 	 * @return
 	 */
 	public int length() {
-		return bytes.length;
+		return bytes.limit();
 	}
 	
 	/**
@@ -98,7 +164,9 @@ public final class ReadOnlyBuffer {
 	 * @return the remaining bytes to be read.
 	 */
 	public byte[] getRemaining() {
-		return Arrays.copyOfRange(bytes, readIndex = bytes.length, bytes.length);
+		int from = readIndex;
+		readIndex = bytes.limit();
+		return copy(from, bytes.limit());
 	}
 	
 	/**
@@ -116,7 +184,7 @@ public final class ReadOnlyBuffer {
 	 * @return an unsigned byte.
 	 */
 	public int getUnsigned() {
-		return bytes[readIndex++] & 0xff;
+		return bytes.get(readIndex++) & 0xff;
 	}
 
 	/**
@@ -126,7 +194,7 @@ public final class ReadOnlyBuffer {
 	 */
 	public int getUnsignedShort() {
 		readIndex += 2;
-		return ((bytes[readIndex - 2] & 0xff) << 8) + (bytes[readIndex - 1] & 0xff);
+		return ((bytes.get(readIndex - 2) & 0xff) << 8) + (bytes.get(readIndex - 1) & 0xff);
 	}
 	
 	/**
@@ -136,9 +204,9 @@ public final class ReadOnlyBuffer {
 	 */
 	public int getUnsigned24BitInt() {
 		readIndex += 3;
-		return ((bytes[readIndex - 3] & 0xff) << 16)
-			 + ((bytes[readIndex - 2] & 0xff) << 8)
-			  + (bytes[readIndex - 1] & 0xff);
+		return ((bytes.get(readIndex - 3) & 0xff) << 16)
+			 + ((bytes.get(readIndex - 2) & 0xff) << 8)
+			  + (bytes.get(readIndex - 1) & 0xff);
 	}
 	
 	/**
@@ -148,10 +216,10 @@ public final class ReadOnlyBuffer {
 	 */
 	public int getUnsignedInt() {
 		readIndex += 4;
-		return ((bytes[readIndex - 4] & 0xff) << 24)
-			 + ((bytes[readIndex - 3] & 0xff) << 16)
-			 + ((bytes[readIndex - 2] & 0xff) << 8)
-			  + (bytes[readIndex - 1] & 0xff);
+		return ((bytes.get(readIndex - 4) & 0xff) << 24)
+			 + ((bytes.get(readIndex - 3) & 0xff) << 16)
+			 + ((bytes.get(readIndex - 2) & 0xff) << 8)
+			  + (bytes.get(readIndex - 1) & 0xff);
 	}
 	
 	/**
@@ -169,7 +237,7 @@ public final class ReadOnlyBuffer {
 	 * @return a {@link ReadOnlyBuffer} instance wrapping the given array of bytes.
 	 */
 	public static ReadOnlyBuffer wrap(byte[] buffer) {
-		return new ReadOnlyBuffer(buffer);
+		return new ReadOnlyBuffer(ByteBuffer.wrap(buffer));
 	}
 	
 	/**
@@ -190,11 +258,40 @@ public final class ReadOnlyBuffer {
 		return ReadOnlyBuffer.wrap(buffer);
 	}
 
+	/**
+	 * Maps the file at the given path into memory, read-only, rather than reading it. Pages are read by the operating
+	 * system as they are first touched, so opening a large file costs next to nothing. The file must not be truncated
+	 * while the buffer is in use, and on some platforms cannot be written to until the buffer is garbage collected.
+	 *
+	 * @param path the path to map.
+	 * @return a {@link ReadOnlyBuffer} reading the mapped file.
+	 * @throws IOException if the file cannot be mapped.
+	 */
+	public static ReadOnlyBuffer map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new ReadOnlyBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Copies the bytes between the given positions. Bytes past the end of this buffer are copied as zero.
+	 */
+	private byte[] copy(int from, int to) {
+		if (from > bytes.limit()) {
+			throw new IndexOutOfBoundsException(from + " > " + bytes.limit());
+		}
+		byte[] copy = new byte[to - from];
+		ByteBuffer source = bytes.duplicate();
+		source.position(from);
+		source.get(copy, 0, Math.min(copy.length, source.remaining()));
+		return copy;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + Arrays.hashCode(bytes);
+		result = prime * result + bytes.hashCode();
 		result = prime * result + readIndex;
 		return result;
 	}
@@ -206,7 +303,7 @@ public final class ReadOnlyBuffer {
 		}
 		
 		ReadOnlyBuffer other = (ReadOnlyBuffer) obj;
-		return Arrays.equals(bytes, other.bytes)
+		return bytes.equals(other.bytes)
 				&& readIndex == other.readIndex;
 	}
 	
@@ -9,6 +9,9 @@ import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream
 import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Bytes;
 
+import rs2.filestore.editor.metrics.FileStoreMetrics;
+import rs2.filestore.editor.metrics.Metrics;
+
 public final class Bzip2Util {
 	
 	private static final byte[] BZIP2_HEADER = { 'B', 'Z', 'h', '9' };
@@ -26,12 +29,21 @@ public final class Bzip2Util {
 	 * @throws IOException 
 	 */
 	public static byte[] unbzip2(final byte[] input) throws IOException {
+		FileStoreMetrics metrics = Metrics.get();
+		long start = metrics == Metrics.NONE ? 0 : System.nanoTime();
 		byte[] concat = Bytes.concat(BZIP2_HEADER, input);
 
-		return ByteStreams.toByteArray(new BZip2CompressorInputStream(new ByteArrayInputStream(concat)));
+		byte[] output = ByteStreams.toByteArray(new BZip2CompressorInputStream(new ByteArrayInputStream(concat)));
+		
+		if (metrics != Metrics.NONE) {
+			metrics.inflated(input.length, output.length, System.nanoTime() - start);
+		}
+		return output;
 	}
 	
 	public static byte[] bzip2(final byte[] input) throws IOException {
+		FileStoreMetrics metrics = Metrics.get();
+		long start = metrics == Metrics.NONE ? 0 : System.nanoTime();
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		
 		try (BZip2CompressorOutputStream bz2Out = new BZip2CompressorOutputStream(out)) {
@@ -39,7 +51,12 @@ public final class Bzip2Util {
 		}
 		
 		byte[] output = out.toByteArray();
-		return Arrays.copyOfRange(output, BZIP2_HEADER_SIZE, output.length);
+		output = Arrays.copyOfRange(output, BZIP2_HEADER_SIZE, output.length);
+		
+		if (metrics != Metrics.NONE) {
+			metrics.deflated(input.length, output.length, System.nanoTime() - start);
+		}
+		return output;
 	}
 
 	private Bzip2Util() {
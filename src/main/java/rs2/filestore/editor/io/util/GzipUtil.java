@@ -0,0 +1,265 @@
+package rs2.filestore.editor.io.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import rs2.filestore.editor.metrics.FileStoreMetrics;
+import rs2.filestore.editor.metrics.Metrics;
+
+/**
+ * Compresses and decompresses gzip data, as used for the files in indices 1 to 4 (models, animations, midis and
+ * maps). Each thread keeps its own {@link Inflater} and {@link Deflater}, which are reset rather than reallocated
+ * between uses. Decompression inflates straight into an array sized from the gzip trailer, when the size it records is
+ * plausible for the length of the compressed data.
+ */
+public final class GzipUtil {
+
+	/**
+	 * The size, in bytes, of the version trailing each file in indices 1 to 4, after the gzip member.
+	 */
+	public static final int VERSION_TRAILER_SIZE = 2;
+
+	/**
+	 * The size of the fixed part of a gzip header, in bytes.
+	 */
+	private static final int HEADER_SIZE = 10;
+
+	/**
+	 * The size of a gzip trailer (CRC32 and input size), in bytes.
+	 */
+	private static final int TRAILER_SIZE = 8;
+
+	private static final int GZIP_MAGIC = 0x8b1f;
+
+	/**
+	 * The most a deflate stream can expand its input by, about 1032:1. A trailer size beyond this is not trusted.
+	 */
+	private static final int MAX_INFLATE_RATIO = 1032;
+
+	/**
+	 * The size of the array inflated into when the trailer size is not trusted, relative to the compressed length.
+	 */
+	private static final int FALLBACK_INFLATE_RATIO = 4;
+
+	private static final int FHCRC = 2;
+
+	private static final int FEXTRA = 4;
+
+	private static final int FNAME = 8;
+
+	private static final int FCOMMENT = 16;
+
+	/**
+	 * The header written by {@link #gzip(byte[])}: magic, deflate, no flags, no time, no extra flags, unknown OS.
+	 */
+	private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+
+	private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(
+			() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+	/**
+	 * Determines whether the given data starts with a gzip header.
+	 *
+	 * @param input the data.
+	 * @return <code>true</code> if the data starts with the gzip magic number and deflate method.
+	 */
+	public static boolean isGzip(final byte[] input) {
+		return input.length >= HEADER_SIZE + TRAILER_SIZE && readUnsignedShortLE(input, 0) == GZIP_MAGIC
+				&& input[2] == Deflater.DEFLATED;
+	}
+
+	/**
+	 * Decompresses the given gzip data.
+	 *
+	 * @param input the gzip data.
+	 * @return the decompressed data.
+	 * @throws IOException if the input is not valid gzip data.
+	 */
+	public static byte[] gunzip(final byte[] input) throws IOException {
+		return gunzip(input, 0, input.length);
+	}
+
+	/**
+	 * Decompresses a file from indices 1 to 4, whose gzip member is followed by a 2 byte version.
+	 *
+	 * @param payload the contiguous file payload, as given by the file store.
+	 * @return the decompressed file.
+	 * @throws IOException if the payload is not valid gzip data.
+	 */
+	public static byte[] gunzipFile(final byte[] payload) throws IOException {
+		return gunzip(payload, 0, payload.length - VERSION_TRAILER_SIZE);
+	}
+
+	/**
+	 * Decompresses the gzip member occupying the given range of the input. The member's trailer must end at the end of
+	 * the range, as the decompressed size is taken from it.
+	 *
+	 * @param input the buffer containing the gzip member.
+	 * @param offset the offset of the gzip member in the buffer.
+	 * @param length the length of the gzip member.
+	 * @return the decompressed data.
+	 * @throws IOException if the range is not a valid gzip member.
+	 */
+	public static byte[] gunzip(final byte[] input, final int offset, final int length) throws IOException {
+		FileStoreMetrics metrics = Metrics.get();
+		long start = metrics == Metrics.NONE ? 0 : System.nanoTime();
+		if (length < HEADER_SIZE + TRAILER_SIZE || readUnsignedShortLE(input, offset) != GZIP_MAGIC
+				|| input[offset + 2] != Deflater.DEFLATED) {
+			throw new ZipException("Not in gzip format");
+		}
+
+		int end = offset + length;
+		int dataStart = skipHeader(input, offset, end);
+		int expectedCrc = readIntLE(input, end - TRAILER_SIZE);
+		int size = readIntLE(input, end - Integer.BYTES);
+
+		Inflater inflater = INFLATERS.get();
+		try {
+			inflater.setInput(input, dataStart, end - TRAILER_SIZE - dataStart);
+
+			// the trailer size is only a hint, as a corrupt or crafted file may claim any size
+			long maxSize = Math.min((long) length * MAX_INFLATE_RATIO, Integer.MAX_VALUE - 8);
+			byte[] output = new byte[size >= 0 && size <= maxSize ? size
+					: (int) Math.min((long) length * FALLBACK_INFLATE_RATIO, maxSize)];
+			int inflated = 0;
+			while (true) {
+				int count = inflater.inflate(output, inflated, output.length - inflated);
+				inflated += count;
+				if (inflater.finished()) {
+					break;
+				}
+				if (count == 0) {
+					if (inflater.needsInput() || inflater.needsDictionary()) {
+						throw new ZipException("Unexpected end of gzip data");
+					}
+					// the trailer size is the input size modulo 2^32, so may be too small
+					output = Arrays.copyOf(output, Math.max(16, output.length * 2));
+				}
+			}
+			if (inflated != output.length) {
+				output = Arrays.copyOf(output, inflated);
+			}
+
+			CRC32 crc = new CRC32();
+			crc.update(output, 0, output.length);
+			if ((int) crc.getValue() != expectedCrc) {
+				throw new ZipException("Corrupt gzip data, CRC mismatch");
+			}
+
+			if (metrics != Metrics.NONE) {
+				metrics.inflated(length, output.length, System.nanoTime() - start);
+			}
+			return output;
+		} catch (DataFormatException e) {
+			throw new ZipException(e.getMessage());
+		} finally {
+			inflater.reset();
+		}
+	}
+
+	/**
+	 * Compresses the given data into a gzip member.
+	 *
+	 * @param input the data to compress.
+	 * @return the gzip member.
+	 */
+	public static byte[] gzip(final byte[] input) {
+		FileStoreMetrics metrics = Metrics.get();
+		long start = metrics == Metrics.NONE ? 0 : System.nanoTime();
+		Deflater deflater = DEFLATERS.get();
+		try {
+			deflater.setInput(input);
+			deflater.finish();
+
+			byte[] output = new byte[HEADER_SIZE + input.length / 2 + 64];
+			System.arraycopy(HEADER, 0, output, 0, HEADER_SIZE);
+			int length = HEADER_SIZE;
+			while (!deflater.finished()) {
+				if (length == output.length) {
+					output = Arrays.copyOf(output, output.length * 2);
+				}
+				length += deflater.deflate(output, length, output.length - length);
+			}
+
+			CRC32 crc = new CRC32();
+			crc.update(input, 0, input.length);
+
+			output = Arrays.copyOf(output, length + TRAILER_SIZE);
+			writeIntLE(output, length, (int) crc.getValue());
+			writeIntLE(output, length + Integer.BYTES, input.length);
+
+			if (metrics != Metrics.NONE) {
+				metrics.deflated(input.length, output.length, System.nanoTime() - start);
+			}
+			return output;
+		} finally {
+			deflater.reset();
+		}
+	}
+
+	/**
+	 * Skips the gzip header, including its optional fields.
+	 *
+	 * @return the offset of the deflate data.
+	 */
+	private static int skipHeader(byte[] input, int offset, int end) throws ZipException {
+		int flags = input[offset + 3] & 0xFF;
+		int position = offset + HEADER_SIZE;
+
+		if ((flags & FEXTRA) != 0) {
+			position += Short.BYTES + readUnsignedShortLE(input, position);
+		}
+		if ((flags & FNAME) != 0) {
+			position = skipZeroTerminated(input, position, end);
+		}
+		if ((flags & FCOMMENT) != 0) {
+			position = skipZeroTerminated(input, position, end);
+		}
+		if ((flags & FHCRC) != 0) {
+			position += Short.BYTES;
+		}
+
+		if (position > end - TRAILER_SIZE) {
+			throw new ZipException("Corrupt gzip header");
+		}
+		return position;
+	}
+
+	private static int skipZeroTerminated(byte[] input, int position, int end) throws ZipException {
+		while (position < end && input[position] != 0) {
+			position++;
+		}
+		if (position == end) {
+			throw new ZipException("Corrupt gzip header");
+		}
+		return position + 1;
+	}
+
+	private static int readUnsignedShortLE(byte[] input, int offset) {
+		return (input[offset] & 0xFF) | (input[offset + 1] & 0xFF) << 8;
+	}
+
+	private static int readIntLE(byte[] input, int offset) {
+		return (input[offset] & 0xFF) | (input[offset + 1] & 0xFF) << 8 | (input[offset + 2] & 0xFF) << 16
+				| (input[offset + 3] & 0xFF) << 24;
+	}
+
+	private static void writeIntLE(byte[] output, int offset, int value) {
+		output[offset] = (byte) value;
+		output[offset + 1] = (byte) (value >> 8);
+		output[offset + 2] = (byte) (value >> 16);
+		output[offset + 3] = (byte) (value >> 24);
+	}
+
+	private GzipUtil() {
+
+	}
+
+}
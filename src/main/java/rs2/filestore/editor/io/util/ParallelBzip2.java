@@ -0,0 +1,361 @@
+package rs2.filestore.editor.io.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+
+import com.google.common.io.ByteStreams;
+
+import rs2.filestore.editor.metrics.FileStoreMetrics;
+import rs2.filestore.editor.metrics.Metrics;
+
+/**
+ * A bzip2 codec that compresses and decompresses the independent blocks of a stream on separate threads. Input and
+ * output use the same headerless format as {@link Bzip2Util}, so data produced by either can be read by the other.
+ * <p>
+ * When compressing, the input is cut into slices small enough that each one fits in a single bzip2 block even after
+ * the initial run-length encoding. The slices are compressed concurrently and their blocks are spliced together at
+ * the bit level under a single end of stream marker and combined CRC.
+ * <p>
+ * When decompressing, the bit stream is scanned for block magic numbers. Every candidate block is wrapped in a stream
+ * of its own and decompressed concurrently. As the block magic may also occur by chance within compressed data, any
+ * failure to decode the candidate blocks falls back to sequential decompression of the whole input.
+ * <p>
+ * Inputs of a single block gain nothing from this and are passed straight to {@link Bzip2Util}.
+ */
+public final class ParallelBzip2 {
+
+	private static final byte[] BZIP2_HEADER = { 'B', 'Z', 'h', '9' };
+
+	private static final int BZIP2_HEADER_SIZE = 4;
+
+	private static final long BLOCK_MAGIC = 0x314159265359L;
+
+	private static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+
+	private static final int MAGIC_BITS = 48;
+
+	private static final int CRC_BITS = 32;
+
+	/**
+	 * The most data a single bzip2 block holds, after the initial run-length encoding.
+	 */
+	public static final int BLOCK_SIZE = 900_000;
+
+	/**
+	 * The largest slice of input compressed into one block. A block holds 900,000 bytes after run-length encoding,
+	 * which expands runs of four bytes to five in the worst case.
+	 */
+	static final int SLICE_SIZE = 700_000;
+
+	/**
+	 * Compresses the given input, omitting the bzip2 header.
+	 *
+	 * @param input the data to compress.
+	 * @return the compressed data.
+	 * @throws IOException
+	 */
+	public static byte[] bzip2(final byte[] input) throws IOException {
+		if (input.length <= SLICE_SIZE) {
+			return Bzip2Util.bzip2(input);
+		}
+
+		FileStoreMetrics metrics = Metrics.get();
+		long start = metrics == Metrics.NONE ? 0 : System.nanoTime();
+		int sliceCount = (input.length + SLICE_SIZE - 1) / SLICE_SIZE;
+		byte[][] streams = new byte[sliceCount][];
+
+		try {
+			IntStream.range(0, sliceCount).parallel().forEach(slice -> {
+				int offset = slice * SLICE_SIZE;
+				int length = Math.min(SLICE_SIZE, input.length - offset);
+				ByteArrayOutputStream out = new ByteArrayOutputStream(length / 4);
+
+				try (BZip2CompressorOutputStream bz2Out = new BZip2CompressorOutputStream(out)) {
+					bz2Out.write(input, offset, length);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				streams[slice] = out.toByteArray();
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		BitWriter writer = new BitWriter(Arrays.stream(streams).mapToInt(stream -> stream.length).sum());
+		int combinedCrc = 0;
+
+		for (byte[] stream : streams) {
+			int blockCrc = (int) readBits(stream, (BZIP2_HEADER_SIZE << 3) + MAGIC_BITS, CRC_BITS);
+			long blockEnd = findEndOfStream(stream, blockCrc);
+			if (blockEnd < 0) {
+				throw new IOException("Compressed slice does not end with a single block");
+			}
+
+			writer.copy(stream, BZIP2_HEADER_SIZE << 3, blockEnd);
+			combinedCrc = (combinedCrc << 1 | combinedCrc >>> 31) ^ blockCrc;
+		}
+
+		writer.write(END_OF_STREAM_MAGIC, MAGIC_BITS);
+		writer.write(combinedCrc & 0xFFFFFFFFL, CRC_BITS);
+
+		byte[] output = writer.toByteArray();
+		if (metrics != Metrics.NONE) {
+			metrics.deflated(input.length, output.length, System.nanoTime() - start);
+		}
+		return output;
+	}
+
+	/**
+	 * Decompresses the given input, of a known decompressed size. This function assumes that the bzip2 header is
+	 * missing. Data no larger than a single block is passed straight to {@link Bzip2Util}, without scanning for blocks.
+	 *
+	 * @param input compressed input byte array intended to be decompressed.
+	 * @param size the size of the decompressed data.
+	 * @return the decompressed input.
+	 * @throws IOException
+	 */
+	public static byte[] unbzip2(final byte[] input, final int size) throws IOException {
+		if (size <= BLOCK_SIZE) {
+			return Bzip2Util.unbzip2(input);
+		}
+		return unbzip2(input);
+	}
+
+	/**
+	 * Decompresses the given input. This function assumes that the bzip2 header is missing.
+	 *
+	 * @param input compressed input byte array intended to be decompressed.
+	 * @return the decompressed input.
+	 * @throws IOException
+	 */
+	public static byte[] unbzip2(final byte[] input) throws IOException {
+		FileStoreMetrics metrics = Metrics.get();
+		long start = metrics == Metrics.NONE ? 0 : System.nanoTime();
+		long[] boundaries = findBlocks(input);
+
+		if (boundaries == null || boundaries.length <= 2) {
+			return Bzip2Util.unbzip2(input);
+		}
+
+		int blockCount = boundaries.length - 1;
+		byte[][] blocks = new byte[blockCount][];
+		int[] crcs = new int[blockCount];
+
+		try {
+			IntStream.range(0, blockCount).parallel().forEach(block -> {
+				long from = boundaries[block];
+				int crc = (int) readBits(input, from + MAGIC_BITS, CRC_BITS);
+
+				BitWriter writer = new BitWriter((int) ((boundaries[block + 1] - from) >>> 3) + 16);
+				writer.write(BZIP2_HEADER);
+				writer.copy(input, from, boundaries[block + 1]);
+				writer.write(END_OF_STREAM_MAGIC, MAGIC_BITS);
+				writer.write(crc & 0xFFFFFFFFL, CRC_BITS);
+
+				try {
+					blocks[block] = ByteStreams.toByteArray(
+							new BZip2CompressorInputStream(new ByteArrayInputStream(writer.toByteArray())));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				crcs[block] = crc;
+			});
+		} catch (RuntimeException e) {
+			// a block boundary found by scanning may be a false match, which can fail in any way
+			return Bzip2Util.unbzip2(input);
+		}
+
+		int combinedCrc = 0;
+		for (int crc : crcs) {
+			combinedCrc = (combinedCrc << 1 | combinedCrc >>> 31) ^ crc;
+		}
+		if (combinedCrc != (int) readBits(input, boundaries[blockCount] + MAGIC_BITS, CRC_BITS)) {
+			return Bzip2Util.unbzip2(input);
+		}
+
+		int length = 0;
+		for (byte[] block : blocks) {
+			length += block.length;
+		}
+
+		byte[] output = new byte[length];
+		int offset = 0;
+		for (byte[] block : blocks) {
+			System.arraycopy(block, 0, output, offset, block.length);
+			offset += block.length;
+		}
+
+		if (metrics != Metrics.NONE) {
+			metrics.inflated(input.length, output.length, System.nanoTime() - start);
+		}
+		return output;
+	}
+
+	/**
+	 * Scans a headerless stream for the bit offsets of its block magic numbers, followed by the offset of the end of
+	 * stream marker.
+	 *
+	 * @return the boundaries, or {@code null} if the stream does not start with a block or has no end marker.
+	 */
+	private static long[] findBlocks(byte[] input) {
+		long totalBits = (long) input.length << 3;
+		if (totalBits < MAGIC_BITS + CRC_BITS || readBits(input, 0, MAGIC_BITS) != BLOCK_MAGIC) {
+			return null;
+		}
+
+		long[] boundaries = new long[16];
+		int count = 0;
+
+		long window = 0;
+		long mask = (1L << MAGIC_BITS) - 1;
+
+		for (int index = 0; index < input.length; index++) {
+			window = window << 8 | (input[index] & 0xFF);
+			if (index < MAGIC_BITS / 8 - 1) {
+				continue;
+			}
+
+			for (int shift = 7; shift >= 0; shift--) {
+				long candidate = window >>> shift & mask;
+				if (candidate != BLOCK_MAGIC && candidate != END_OF_STREAM_MAGIC) {
+					continue;
+				}
+
+				long magicStart = ((long) (index + 1) << 3) - shift - MAGIC_BITS;
+				if (magicStart < 0 || count > 0 && magicStart <= boundaries[count - 1]) {
+					continue;
+				}
+				if (count == boundaries.length) {
+					boundaries = Arrays.copyOf(boundaries, count * 2);
+				}
+				boundaries[count++] = magicStart;
+
+				if (candidate == END_OF_STREAM_MAGIC && magicStart + MAGIC_BITS + CRC_BITS + 8 > totalBits) {
+					return Arrays.copyOf(boundaries, count);
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Locates the end of the only block in a complete single block stream, by matching the end of stream marker and
+	 * stream CRC against each possible amount of trailing padding.
+	 *
+	 * @return the bit offset at which the block ends, or {@code -1} if it could not be found.
+	 */
+	private static long findEndOfStream(byte[] stream, int blockCrc) {
+		long totalBits = (long) stream.length << 3;
+
+		for (int padding = 0; padding < 8; padding++) {
+			long end = totalBits - padding - CRC_BITS - MAGIC_BITS;
+			if (end < (BZIP2_HEADER_SIZE << 3) + MAGIC_BITS) {
+				break;
+			}
+			if (readBits(stream, end, MAGIC_BITS) == END_OF_STREAM_MAGIC
+					&& (int) readBits(stream, end + MAGIC_BITS, CRC_BITS) == blockCrc) {
+				return end;
+			}
+		}
+
+		return -1;
+	}
+
+	private static long readBits(byte[] data, long offset, int count) {
+		long value = 0;
+		for (long bit = offset; bit < offset + count; bit++) {
+			value = value << 1 | (data[(int) (bit >>> 3)] >>> (7 - (bit & 7)) & 1);
+		}
+		return value;
+	}
+
+	/**
+	 * Appends bits most significant first to a growable byte array.
+	 */
+	private static final class BitWriter {
+
+		private byte[] buffer;
+
+		private int length;
+
+		private long pending;
+
+		private int pendingBits;
+
+		BitWriter(int capacity) {
+			buffer = new byte[Math.max(16, capacity)];
+		}
+
+		void write(long value, int count) {
+			for (int shift = count - 8; shift > -8; shift -= 8) {
+				int bits = Math.min(8, shift + 8);
+				writeByte((int) (shift >= 0 ? value >>> shift : value) & ((1 << bits) - 1), bits);
+			}
+		}
+
+		void write(byte[] bytes) {
+			for (byte b : bytes) {
+				writeByte(b & 0xFF, 8);
+			}
+		}
+
+		/**
+		 * Appends the bits of {@code source} from {@code from} inclusive to {@code to} exclusive.
+		 */
+		void copy(byte[] source, long from, long to) {
+			long bit = from;
+			int shift = (int) (from & 7);
+
+			if (shift == 0) {
+				for (; bit + 8 <= to; bit += 8) {
+					writeByte(source[(int) (bit >>> 3)] & 0xFF, 8);
+				}
+			} else {
+				for (; bit + 8 <= to; bit += 8) {
+					int index = (int) (bit >>> 3);
+					writeByte((source[index] << shift | (source[index + 1] & 0xFF) >>> (8 - shift)) & 0xFF, 8);
+				}
+			}
+
+			int remaining = (int) (to - bit);
+			if (remaining > 0) {
+				writeByte((int) readBits(source, bit, remaining), remaining);
+			}
+		}
+
+		private void writeByte(int value, int bits) {
+			pending = pending << bits | value;
+			pendingBits += bits;
+
+			if (pendingBits >= 8) {
+				pendingBits -= 8;
+				if (length == buffer.length) {
+					buffer = Arrays.copyOf(buffer, length * 2);
+				}
+				buffer[length++] = (byte) (pending >>> pendingBits);
+				pending &= (1L << pendingBits) - 1;
+			}
+		}
+
+		byte[] toByteArray() {
+			if (pendingBits > 0) {
+				writeByte(0, 8 - pendingBits);
+			}
+			return Arrays.copyOf(buffer, length);
+		}
+
+	}
+
+	private ParallelBzip2() {
+
+	}
+
+}
@@ -0,0 +1,81 @@
+package rs2.filestore.editor.metrics;
+
+/**
+ * Receives measurements from the file store hot paths: loading, index decoding, chunk chain reads, archive coding and
+ * bzip2 or gzip compression. Every method does nothing by default, so implementations need only override what they record.
+ * Implementations must be thread-safe. Install one with {@link Metrics#install(FileStoreMetrics)}.
+ */
+public interface FileStoreMetrics {
+
+	/**
+	 * Called once a file store has been loaded.
+	 *
+	 * @param indexCount the number of indices loaded.
+	 * @param nanos the time taken, in nanoseconds.
+	 */
+	default void fileStoreLoaded(int indexCount, long nanos) {
+	}
+
+	/**
+	 * Called once an index has been decoded.
+	 *
+	 * @param indexId the id of the index.
+	 * @param entryCount the number of entries in the index, including empty entries.
+	 * @param bytes the total size of the files in the index, in bytes.
+	 * @param nanos the time taken, in nanoseconds.
+	 */
+	default void indexDecoded(int indexId, int entryCount, long bytes, long nanos) {
+	}
+
+	/**
+	 * Called once the chunk chain of a file has been read.
+	 *
+	 * @param indexId the id of the index the file is stored in.
+	 * @param chunks the number of chunks in the chain.
+	 * @param bytes the size of the file, in bytes.
+	 * @param fragmentedHops the number of hops to a chunk not immediately following the previous one.
+	 */
+	default void chainRead(int indexId, int chunks, int bytes, int fragmentedHops) {
+	}
+
+	/**
+	 * Called once an archive has been decoded.
+	 *
+	 * @param entryCount the number of entries in the archive.
+	 * @param bytes the encoded size of the archive, in bytes.
+	 * @param nanos the time taken, in nanoseconds.
+	 */
+	default void archiveDecoded(int entryCount, int bytes, long nanos) {
+	}
+
+	/**
+	 * Called once an archive has been encoded.
+	 *
+	 * @param entryCount the number of entries in the archive.
+	 * @param bytes the encoded size of the archive, in bytes.
+	 * @param nanos the time taken, in nanoseconds.
+	 */
+	default void archiveEncoded(int entryCount, int bytes, long nanos) {
+	}
+
+	/**
+	 * Called once data has been decompressed with bzip2 or gzip.
+	 *
+	 * @param compressedBytes the size of the compressed data, in bytes.
+	 * @param decompressedBytes the size of the decompressed data, in bytes.
+	 * @param nanos the time taken, in nanoseconds.
+	 */
+	default void inflated(int compressedBytes, int decompressedBytes, long nanos) {
+	}
+
+	/**
+	 * Called once data has been compressed with bzip2 or gzip.
+	 *
+	 * @param decompressedBytes the size of the decompressed data, in bytes.
+	 * @param compressedBytes the size of the compressed data, in bytes.
+	 * @param nanos the time taken, in nanoseconds.
+	 */
+	default void deflated(int decompressedBytes, int compressedBytes, long nanos) {
+	}
+
+}
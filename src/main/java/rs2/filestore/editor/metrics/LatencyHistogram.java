@@ -0,0 +1,77 @@
+package rs2.filestore.editor.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies with power of two nanosecond buckets. Percentiles are therefore accurate to within
+ * a factor of two, which is enough to tell where time goes.
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * One bucket for zero and for each bit of a positive long.
+	 */
+	private static final int BUCKET_COUNT = Long.SIZE;
+
+	/**
+	 * The number of recordings in each bucket; bucket n holds latencies below 2^n nanoseconds.
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder totalNanos = new LongAdder();
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param nanos the latency, in nanoseconds.
+	 */
+	public void record(long nanos) {
+		buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(Math.max(nanos, 0)));
+		count.increment();
+		totalNanos.add(nanos);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	/**
+	 * @return the mean latency, in nanoseconds.
+	 */
+	public double getMeanNanos() {
+		long count = getCount();
+		return count == 0 ? 0 : (double) getTotalNanos() / count;
+	}
+
+	/**
+	 * Gets the upper bound of the bucket holding the given percentile.
+	 *
+	 * @param percentile the percentile, between 0 and 100.
+	 * @return the latency, in nanoseconds, at or below which the percentile of recordings fall.
+	 */
+	public long getPercentileNanos(double percentile) {
+		long target = (long) Math.ceil(getCount() * percentile / 100);
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			seen += buckets.get(bucket);
+			if (seen >= target && seen > 0) {
+				return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.0fns p50<=%dns p99<=%dns", getCount(), getMeanNanos(),
+				getPercentileNanos(50), getPercentileNanos(99));
+	}
+
+}
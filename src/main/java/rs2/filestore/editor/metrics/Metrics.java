@@ -0,0 +1,62 @@
+package rs2.filestore.editor.metrics;
+
+/**
+ * Holds the {@link FileStoreMetrics} that the file store hot paths report to. By default measurements are discarded;
+ * the hot paths compare the installed metrics with {@link #NONE} and then neither read the clock nor report.
+ */
+public final class Metrics {
+
+	/**
+	 * The {@link FileStoreMetrics} that discards every measurement.
+	 */
+	public static final FileStoreMetrics NONE = new FileStoreMetrics() {
+	};
+
+	/**
+	 * The name of the Flight Recorder metrics class, in the separate Java 11 source set.
+	 */
+	private static final String JFR_METRICS = "rs2.filestore.editor.metrics.JfrMetrics";
+
+	/**
+	 * The installed metrics.
+	 */
+	private static volatile FileStoreMetrics metrics = NONE;
+
+	/**
+	 * Gets the installed metrics.
+	 *
+	 * @return the installed {@link FileStoreMetrics}, or {@link #NONE}.
+	 */
+	public static FileStoreMetrics get() {
+		return metrics;
+	}
+
+	/**
+	 * Installs the given metrics, replacing those previously installed.
+	 *
+	 * @param metrics the metrics to report to, or {@link #NONE} to stop recording.
+	 */
+	public static void install(FileStoreMetrics metrics) {
+		Metrics.metrics = metrics == null ? NONE : metrics;
+	}
+
+	/**
+	 * Creates metrics that emit Java Flight Recorder events. These are compiled apart from the rest of the file store,
+	 * as they need Java 11, and are loaded reflectively so that the file store still runs on Java 8.
+	 *
+	 * @return the Flight Recorder metrics, to be installed with {@link #install(FileStoreMetrics)}.
+	 * @throws UnsupportedOperationException if Flight Recorder events are not available on this runtime.
+	 */
+	public static FileStoreMetrics jfr() {
+		try {
+			return (FileStoreMetrics) Class.forName(JFR_METRICS).getConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			throw new UnsupportedOperationException("Flight Recorder events need Java 11 or later", e);
+		}
+	}
+
+	private Metrics() {
+
+	}
+
+}
@@ -0,0 +1,167 @@
+package rs2.filestore.editor.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link FileStoreMetrics} that accumulates counters and {@link LatencyHistogram}s in memory, for inspection or
+ * export by the application.
+ */
+public final class RecordingMetrics implements FileStoreMetrics {
+
+	private final LatencyHistogram loadLatency = new LatencyHistogram();
+
+	private final LatencyHistogram indexDecodeLatency = new LatencyHistogram();
+
+	private final LatencyHistogram archiveDecodeLatency = new LatencyHistogram();
+
+	private final LatencyHistogram archiveEncodeLatency = new LatencyHistogram();
+
+	private final LatencyHistogram inflateLatency = new LatencyHistogram();
+
+	private final LatencyHistogram deflateLatency = new LatencyHistogram();
+
+	private final LongAdder bytesRead = new LongAdder();
+
+	private final LongAdder chunksRead = new LongAdder();
+
+	private final LongAdder chainsRead = new LongAdder();
+
+	private final LongAdder fragmentedHops = new LongAdder();
+
+	private final LongAdder inflatedCompressedBytes = new LongAdder();
+
+	private final LongAdder inflatedBytes = new LongAdder();
+
+	private final LongAdder deflatedBytes = new LongAdder();
+
+	private final LongAdder deflatedCompressedBytes = new LongAdder();
+
+	@Override
+	public void fileStoreLoaded(int indexCount, long nanos) {
+		loadLatency.record(nanos);
+	}
+
+	@Override
+	public void indexDecoded(int indexId, int entryCount, long bytes, long nanos) {
+		indexDecodeLatency.record(nanos);
+	}
+
+	@Override
+	public void chainRead(int indexId, int chunks, int bytes, int fragmentedHops) {
+		bytesRead.add(bytes);
+		chunksRead.add(chunks);
+		chainsRead.increment();
+		this.fragmentedHops.add(fragmentedHops);
+	}
+
+	@Override
+	public void archiveDecoded(int entryCount, int bytes, long nanos) {
+		archiveDecodeLatency.record(nanos);
+	}
+
+	@Override
+	public void archiveEncoded(int entryCount, int bytes, long nanos) {
+		archiveEncodeLatency.record(nanos);
+	}
+
+	@Override
+	public void inflated(int compressedBytes, int decompressedBytes, long nanos) {
+		inflatedCompressedBytes.add(compressedBytes);
+		inflatedBytes.add(decompressedBytes);
+		inflateLatency.record(nanos);
+	}
+
+	@Override
+	public void deflated(int decompressedBytes, int compressedBytes, long nanos) {
+		deflatedBytes.add(decompressedBytes);
+		deflatedCompressedBytes.add(compressedBytes);
+		deflateLatency.record(nanos);
+	}
+
+	public LatencyHistogram getLoadLatency() {
+		return loadLatency;
+	}
+
+	public LatencyHistogram getIndexDecodeLatency() {
+		return indexDecodeLatency;
+	}
+
+	public LatencyHistogram getArchiveDecodeLatency() {
+		return archiveDecodeLatency;
+	}
+
+	public LatencyHistogram getArchiveEncodeLatency() {
+		return archiveEncodeLatency;
+	}
+
+	public LatencyHistogram getInflateLatency() {
+		return inflateLatency;
+	}
+
+	public LatencyHistogram getDeflateLatency() {
+		return deflateLatency;
+	}
+
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	public long getChunksRead() {
+		return chunksRead.sum();
+	}
+
+	public long getChainsRead() {
+		return chainsRead.sum();
+	}
+
+	/**
+	 * @return the mean number of chunks in a chain.
+	 */
+	public double getMeanChainLength() {
+		long chains = getChainsRead();
+		return chains == 0 ? 0 : (double) getChunksRead() / chains;
+	}
+
+	public long getFragmentedHops() {
+		return fragmentedHops.sum();
+	}
+
+	/**
+	 * Gets the fraction of hops between chunks that were to a chunk other than the one immediately following.
+	 *
+	 * @return the fragmentation, between 0 and 1.
+	 */
+	public double getFragmentation() {
+		long hops = getChunksRead() - getChainsRead();
+		return hops <= 0 ? 0 : (double) getFragmentedHops() / hops;
+	}
+
+	/**
+	 * @return the ratio of decompressed to compressed size over all decompression.
+	 */
+	public double getInflateRatio() {
+		long compressed = inflatedCompressedBytes.sum();
+		return compressed == 0 ? 0 : (double) inflatedBytes.sum() / compressed;
+	}
+
+	/**
+	 * @return the ratio of decompressed to compressed size over all compression.
+	 */
+	public double getDeflateRatio() {
+		long compressed = deflatedCompressedBytes.sum();
+		return compressed == 0 ? 0 : (double) deflatedBytes.sum() / compressed;
+	}
+
+	@Override
+	public String toString() {
+		return "load: " + loadLatency
+				+ "\nindex decode: " + indexDecodeLatency
+				+ "\nchains: " + getChainsRead() + ", chunks: " + getChunksRead() + ", bytes: " + getBytesRead()
+				+ String.format(", mean chain length: %.2f, fragmentation: %.2f", getMeanChainLength(), getFragmentation())
+				+ "\narchive decode: " + archiveDecodeLatency
+				+ "\narchive encode: " + archiveEncodeLatency
+				+ "\ninflate: " + inflateLatency + String.format(", ratio: %.2f", getInflateRatio())
+				+ "\ndeflate: " + deflateLatency + String.format(", ratio: %.2f", getDeflateRatio());
+	}
+
+}
@@ -0,0 +1,129 @@
+package rs2.filestore.editor.cache.fs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import rs2.filestore.editor.cache.fs.index.DataChunk;
+
+/**
+ * Scrubs small file stores written with {@link FileStoreWriter}, checking that a broken chain is reported once, that
+ * the space normal edits leave behind is not reported as a fault, and that the scrubber and the tolerant loader agree
+ * on which entries are broken.
+ */
+public class FileStoreScrubberTest {
+
+	/**
+	 * The size of each file, long enough for a chain of 30 chunks.
+	 */
+	private static final int FILE_SIZE = DataChunk.DATA_CHUNK_BODY_SIZE * 30 - 100;
+
+	@Test
+	public void intactStoreIsClean() throws IOException {
+		Path directory = write(3);
+		try {
+			ScrubReport report = new FileStoreScrubber(directory).scrub();
+			assertTrue(report.toString(), report.isClean());
+			assertEquals(3, report.getScannedEntries());
+			assertEquals(0, report.getReclaimableChunks());
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void corruptMidChainChunkIsOneFault() throws IOException {
+		Path directory = write(3);
+		try {
+			int position = chainPosition(directory, 1, 15);
+			try (FileChannel data = FileChannel.open(FileStore.validCachePath(directory), StandardOpenOption.WRITE)) {
+				data.write(ByteBuffer.wrap(new byte[] { 9 }), (long) position * DataChunk.DATA_CHUNK_SIZE + 7);
+			}
+
+			ScrubReport report = new FileStoreScrubber(directory).scrub();
+			List<ChunkFault> faults = report.getFaults();
+			assertEquals(faults.toString(), 1, faults.size());
+			assertEquals(ChunkFault.Type.DATA_TYPE_MISMATCH, faults.get(0).getType());
+			assertEquals(position, faults.get(0).getChunkPosition());
+			assertTrue(report.isBroken(0, 1));
+			assertEquals(0, report.getReclaimableChunks());
+
+			FileStore fileStore = FileStore.load(directory, true);
+			assertTrue(fileStore.getIndex(0).isEmpty(1));
+			assertTrue(!fileStore.getIndex(0).isEmpty(0) && !fileStore.getIndex(0).isEmpty(2));
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void editsLeaveReclaimableSpace() throws IOException {
+		Path directory = write(3);
+		try {
+			try (FileStoreWriter writer = new FileStoreWriter(directory)) {
+				writer.remove(0, 0);
+				writer.put(0, 2, new byte[DataChunk.DATA_CHUNK_BODY_SIZE * 10]);
+			}
+
+			ScrubReport report = new FileStoreScrubber(directory).scrub();
+			assertTrue(report.toString(), report.isClean());
+			assertEquals(2, report.getScannedEntries());
+			assertEquals(30 + 20, report.getReclaimableChunks());
+		} finally {
+			delete(directory);
+		}
+	}
+
+	/**
+	 * Writes a file store with a single index holding the given number of files.
+	 */
+	private static Path write(int files) throws IOException {
+		Path directory = Files.createTempDirectory("scrub");
+		Files.createFile(directory.resolve("main_file_cache.dat"));
+		try (FileStoreWriter writer = new FileStoreWriter(directory)) {
+			for (int fileId = 0; fileId < files; fileId++) {
+				byte[] payload = new byte[FILE_SIZE];
+				payload[fileId] = (byte) fileId;
+				writer.put(0, fileId, payload);
+			}
+		}
+		return directory;
+	}
+
+	/**
+	 * Follows the chain of a file in index 0 to the position of one of its chunks.
+	 */
+	private static int chainPosition(Path directory, int fileId, int chunkId) throws IOException {
+		byte[] index = Files.readAllBytes(directory.resolve("main_file_cache.idx0"));
+		ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(FileStore.validCachePath(directory)));
+
+		int offset = fileId * 6 + 3;
+		int position = (index[offset] & 0xFF) << 16 | (index[offset + 1] & 0xFF) << 8 | index[offset + 2] & 0xFF;
+		for (int step = 0; step < chunkId; step++) {
+			int next = position * DataChunk.DATA_CHUNK_SIZE + 4;
+			position = (data.getShort(next) & 0xFFFF) << 8 | data.get(next + 2) & 0xFF;
+		}
+		return position;
+	}
+
+	private static void delete(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.delete(path);
+			}
+		}
+	}
+
+}
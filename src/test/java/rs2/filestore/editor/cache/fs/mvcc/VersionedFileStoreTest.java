@@ -0,0 +1,156 @@
+package rs2.filestore.editor.cache.fs.mvcc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import rs2.filestore.editor.cache.fs.FileStore;
+import rs2.filestore.editor.cache.fs.FileStoreWriter;
+import rs2.filestore.editor.cache.fs.index.entry.IndexEntry;
+
+/**
+ * Commits to a {@link VersionedFileStore} over a small file store written with {@link FileStoreWriter}, checking that
+ * conflicting commits fail and that views never change once taken.
+ */
+public class VersionedFileStoreTest {
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void conflictingCommitThrows() throws IOException {
+		Path directory = write();
+		try {
+			VersionedFileStore store = new VersionedFileStore(FileStore.load(directory));
+			FileStoreTransaction first = store.begin();
+			FileStoreTransaction second = store.begin();
+
+			first.put(1, 0, payload(1));
+			second.put(1, 0, payload(2));
+			first.commit();
+			second.commit();
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void disjointCommitsSucceed() throws IOException {
+		Path directory = write();
+		try {
+			VersionedFileStore store = new VersionedFileStore(FileStore.load(directory));
+			FileStoreTransaction first = store.begin();
+			FileStoreTransaction second = store.begin();
+
+			first.put(1, 0, payload(1));
+			second.put(1, 1, payload(2));
+			first.commit();
+			FileStoreView view = second.commit();
+
+			assertEquals(2, view.getVersion());
+			assertArrayEquals(payload(1), view.getEntry(1, 0).getData());
+			assertArrayEquals(payload(2), view.getEntry(1, 1).getData());
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void oldViewIsUnchangedAfterCommit() throws IOException {
+		Path directory = write();
+		try {
+			VersionedFileStore store = new VersionedFileStore(FileStore.load(directory));
+			FileStoreView before = store.current();
+
+			FileStoreTransaction transaction = store.begin();
+			transaction.put(1, 0, payload(9));
+			transaction.remove(1, 1);
+			transaction.put(1, 5, payload(10));
+			FileStoreView after = transaction.commit();
+
+			assertArrayEquals(payload(0), before.getEntry(1, 0).getData());
+			assertArrayEquals(payload(1), before.getEntry(1, 1).getData());
+			assertEquals(3, before.getIndex(1).size());
+			assertArrayEquals(payload(9), after.getEntry(1, 0).getData());
+			assertTrue(after.getEntry(1, 1).isEmpty());
+			assertEquals(6, after.getIndex(1).size());
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void viewsIgnoreChangesToTheFileStore() throws IOException {
+		Path directory = write();
+		try {
+			FileStore fileStore = FileStore.load(directory);
+			VersionedFileStore store = new VersionedFileStore(fileStore);
+			FileStoreView view = store.current();
+
+			fileStore.getIndex(1).setEntry(0, IndexEntry.of(1, 0, payload(7)));
+
+			assertArrayEquals(payload(0), view.getEntry(1, 0).getData());
+			assertArrayEquals(payload(0), store.begin().getEntry(1, 0).getData());
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void lazyIndicesAreCapturedWhenWrapped() throws IOException {
+		Path directory = write();
+		try {
+			FileStore fileStore = FileStore.open(directory);
+			VersionedFileStore store = new VersionedFileStore(fileStore);
+
+			for (int indexId = 0; indexId < fileStore.getIndexCount(); indexId++) {
+				assertTrue(fileStore.isIndexOpen(indexId));
+			}
+			assertArrayEquals(payload(2), store.current().getEntry(1, 2).getData());
+		} finally {
+			delete(directory);
+		}
+	}
+
+	/**
+	 * Writes a file store with two indices of three files each.
+	 */
+	private static Path write() throws IOException {
+		Path directory = Files.createTempDirectory("versioned");
+		Files.createFile(directory.resolve("main_file_cache.dat"));
+		try (FileStoreWriter writer = new FileStoreWriter(directory)) {
+			for (int indexId = 0; indexId < 2; indexId++) {
+				for (int fileId = 0; fileId < 3; fileId++) {
+					writer.put(indexId, fileId, payload(fileId));
+				}
+			}
+		}
+		return directory;
+	}
+
+	private static byte[] payload(int seed) {
+		byte[] payload = new byte[600 + seed];
+		for (int index = 0; index < payload.length; index++) {
+			payload[index] = (byte) (index * 31 + seed);
+		}
+		return payload;
+	}
+
+	private static void delete(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			List<Path> sorted = paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+			for (Path path : sorted) {
+				Files.delete(path);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+package rs2.filestore.editor.io.util;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Round trips data through {@link ParallelBzip2} and {@link Bzip2Util}, in both directions, at the sizes where the
+ * parallel codec changes how it cuts its input: empty, a single byte, either side of a slice, and several blocks.
+ */
+public class ParallelBzip2Test {
+
+	private static final int[] SIZES = { 0, 1, ParallelBzip2.SLICE_SIZE - 1, ParallelBzip2.SLICE_SIZE,
+			ParallelBzip2.SLICE_SIZE + 1, ParallelBzip2.SLICE_SIZE * 3 + 12_345 };
+
+	@Test
+	public void parallelDecodesParallel() throws IOException {
+		for (int size : SIZES) {
+			byte[] input = data(size);
+			assertArrayEquals("size " + size, input, ParallelBzip2.unbzip2(ParallelBzip2.bzip2(input)));
+		}
+	}
+
+	@Test
+	public void parallelDecodesSequential() throws IOException {
+		for (int size : SIZES) {
+			byte[] input = data(size);
+			assertArrayEquals("size " + size, input, ParallelBzip2.unbzip2(Bzip2Util.bzip2(input)));
+		}
+	}
+
+	@Test
+	public void sequentialDecodesParallel() throws IOException {
+		for (int size : SIZES) {
+			byte[] input = data(size);
+			assertArrayEquals("size " + size, input, Bzip2Util.unbzip2(ParallelBzip2.bzip2(input)));
+		}
+	}
+
+	@Test
+	public void knownSizeDecodesEither() throws IOException {
+		for (int size : SIZES) {
+			byte[] input = data(size);
+			assertArrayEquals("size " + size, input, ParallelBzip2.unbzip2(ParallelBzip2.bzip2(input), size));
+			assertArrayEquals("size " + size, input, ParallelBzip2.unbzip2(Bzip2Util.bzip2(input), size));
+		}
+	}
+
+	/**
+	 * Creates data that compresses about as well as cache files do: runs of repeated bytes between random ones.
+	 */
+	private static byte[] data(int size) {
+		Random random = new Random(size);
+		byte[] data = new byte[size];
+		for (int index = 0; index < size; index++) {
+			data[index] = random.nextInt(4) == 0 ? (byte) random.nextInt() : data[Math.max(0, index - 1)];
+		}
+		return data;
+	}
+
+}